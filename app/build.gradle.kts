@@ -24,6 +24,13 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // 宏基准测试使用：与release相同的优化配置，使用debug签名，并合并src/benchmark中的测试数据生成入口
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+            isDebuggable = false
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
@@ -36,6 +43,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
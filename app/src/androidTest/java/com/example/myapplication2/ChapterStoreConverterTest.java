@@ -0,0 +1,81 @@
+package com.example.myapplication2;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import nl.siegmann.epublib.domain.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// 书籍页分页使用的纯文本：有章节文件时读取章节文件，没有时直接解析章节，两者必须一致，否则页数会随转换前后变化
+@RunWith(AndroidJUnit4.class)
+public class ChapterStoreConverterTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ILLUSTRATED = "<html><body>"
+            + "<h1>Chapter 1</h1>"
+            + "<p>Before <img src=\"images/map.png\"/> after.</p>"
+            + "<p><img src=\"images/cover.jpg\"/></p>"
+            + "<p><b>Bold <img src=\"../images/icon.png\"/>text</b> and <a href=\"#n1\">note</a></p>"
+            + "</body></html>";
+
+    private File storeFile;
+
+    @After
+    public void tearDown() {
+        if (storeFile != null) {
+            storeFile.delete();
+        }
+    }
+
+    private ChapterStore convert(Resource resource) throws IOException {
+        storeFile = File.createTempFile("chapters", ".ecs");
+        try (ChapterStore.Writer writer = new ChapterStore.Writer(storeFile, 1, 1, 1)) {
+            writer.write(ChapterStoreConverter.toChapter(
+                    XhtmlDecoder.decode(resource, source -> new ColorDrawable(Color.TRANSPARENT))));
+            writer.commit();
+        }
+        return ChapterStore.open(storeFile, 1, 1);
+    }
+
+    @Test
+    public void plainTextMatchesStoreText() throws IOException {
+        Resource resource = new Resource(ILLUSTRATED.getBytes(UTF_8), "chapter.xhtml");
+
+        String decoded = ChapterStoreConverter.decodePlainText(resource);
+        CompactText stored = convert(resource).readText(0);
+
+        assertEquals(decoded, stored.toString());
+        assertFalse(decoded.indexOf('\uFFFC') >= 0);
+        // 去掉插图后全部是ASCII，章节文件的纯文本仍然直接引用映射的字节
+        assertTrue(stored.isLatin1());
+    }
+
+    @Test
+    public void storeChapterKeepsImages() throws IOException {
+        Resource resource = new Resource(ILLUSTRATED.getBytes(UTF_8), "chapter.xhtml");
+
+        ChapterStore.Chapter chapter = convert(resource).readChapter(0);
+
+        int images = 0;
+        for (int i = 0; i < chapter.getStyleCount(); i++) {
+            if (chapter.styles[i * 4 + 2] == ChapterStore.STYLE_IMAGE) {
+                assertEquals('\uFFFC', chapter.text.charAt(chapter.styles[i * 4]));
+                images++;
+            }
+        }
+        assertEquals(3, images);
+        assertEquals(ChapterStoreConverter.decodePlainText(resource), chapter.getPlainText());
+    }
+}
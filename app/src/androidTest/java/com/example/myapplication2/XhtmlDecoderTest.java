@@ -0,0 +1,113 @@
+package com.example.myapplication2;
+
+import android.text.Spanned;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import nl.siegmann.epublib.domain.Resource;
+
+import static org.junit.Assert.assertEquals;
+
+// XhtmlDecoder依赖系统的XML解析器，需要在设备上运行
+@RunWith(AndroidJUnit4.class)
+public class XhtmlDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset GBK = Charset.forName("GBK");
+    private static final String BODY = "<html><body><p>天色渐渐暗了</p></body></html>";
+    private static final String TEXT = "天色渐渐暗了";
+
+    private static String decode(String xhtml) throws IOException {
+        Spanned spanned = XhtmlDecoder.decode(new Resource(xhtml.getBytes(UTF_8), "chapter.xhtml"), null);
+        // 段落前的换行与实体无关
+        return spanned.toString().trim();
+    }
+
+    private static byte[] bytes(byte[] prefix, String text, Charset charset) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(prefix, 0, prefix.length);
+        byte[] body = text.getBytes(charset);
+        output.write(body, 0, body.length);
+        return output.toByteArray();
+    }
+
+    private static String decode(byte[] data, String inputEncoding) throws IOException {
+        Resource resource = new Resource(data, "chapter.xhtml");
+        resource.setInputEncoding(inputEncoding);
+        return XhtmlDecoder.decode(resource, null).toString().trim();
+    }
+
+    @Test
+    public void utf8BomWinsOverDeclaration() throws IOException {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        String xhtml = "<?xml version=\"1.0\" encoding=\"GBK\"?>" + BODY;
+        assertEquals(TEXT, decode(bytes(bom, xhtml, UTF_8), "GBK"));
+    }
+
+    @Test
+    public void utf16LittleEndianBom() throws IOException {
+        byte[] bom = {(byte) 0xFF, (byte) 0xFE};
+        assertEquals(TEXT, decode(bytes(bom, BODY, Charset.forName("UTF-16LE")), "UTF-8"));
+    }
+
+    @Test
+    public void utf16BigEndianBom() throws IOException {
+        byte[] bom = {(byte) 0xFE, (byte) 0xFF};
+        assertEquals(TEXT, decode(bytes(bom, BODY, Charset.forName("UTF-16BE")), "UTF-8"));
+    }
+
+    @Test
+    public void declarationWinsOverResourceEncoding() throws IOException {
+        String xhtml = "<?xml version=\"1.0\" encoding=\"GBK\"?>" + BODY;
+        assertEquals(TEXT, decode(bytes(new byte[0], xhtml, GBK), "UTF-8"));
+    }
+
+    @Test
+    public void resourceEncodingWithoutDeclaration() throws IOException {
+        assertEquals(TEXT, decode(bytes(new byte[0], BODY, GBK), "GBK"));
+    }
+
+    @Test
+    public void defaultsToUtf8() throws IOException {
+        assertEquals(TEXT, decode(bytes(new byte[0], BODY, UTF_8), null));
+    }
+
+    @Test
+    public void unsupportedDeclaredCharsetFallsBackToResourceEncoding() throws IOException {
+        String xhtml = "<?xml version=\"1.0\" encoding=\"no-such-charset\"?>" + BODY;
+        assertEquals(TEXT, decode(bytes(new byte[0], xhtml, GBK), "GBK"));
+    }
+
+    @Test
+    public void unterminatedDeclarationIsIgnored() throws IOException {
+        // 声明没有结束的“?>”时不采用其中的encoding
+        InputStream input = new BufferedInputStream(new ByteArrayInputStream(
+                "<?xml version=\"1.0\" encoding=\"GBK\"".getBytes(UTF_8)));
+        assertEquals(Charset.forName("Big5"), XhtmlDecoder.detectCharset(input, "Big5"));
+        assertEquals(UTF_8, XhtmlDecoder.detectCharset(input, null));
+    }
+
+    @Test
+    public void decodesNamedEntities() throws IOException {
+        String text = decode("<html><body><p>第一章&nbsp;开始&mdash;结束&hellip;</p></body></html>");
+        assertEquals("第一章\u00A0开始\u2014结束\u2026", text);
+    }
+
+    @Test
+    public void decodesNamedEntitiesAfterDoctype() throws IOException {
+        String text = decode("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.1//EN\" \"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd\">\n"
+                + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>标题</title></head>"
+                + "<body><p>A&nbsp;B&ldquo;C&rdquo;</p></body></html>");
+        assertEquals("A\u00A0B\u201CC\u201D", text);
+    }
+}
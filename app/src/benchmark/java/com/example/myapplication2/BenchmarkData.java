@@ -0,0 +1,182 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// 宏基准测试使用的合成数据：一本多章节EPUB、一本大TXT和指定数量书籍组成的书架
+// 内容由固定随机种子生成，不需要网络和外部文件
+public class BenchmarkData {
+    private static final String TAG = "BenchmarkData";
+
+    public static final String EXTRA_BOOK_COUNT = "book_count";
+    public static final int DEFAULT_BOOK_COUNT = 2000;
+
+    // 宏基准测试按这些文件名和标题定位书籍
+    public static final String EPUB_FILE_NAME = "benchmark.epub";
+    public static final String EPUB_TITLE = "基准测试EPUB";
+    public static final String TXT_FILE_NAME = "benchmark.txt";
+    public static final String TXT_TITLE = "基准测试TXT";
+    // 书架编号按生成顺序从1开始
+    public static final long EPUB_BOOK_ID = 1;
+    public static final long TXT_BOOK_ID = 2;
+
+    private static final int EPUB_CHAPTERS = 60;
+    private static final int EPUB_CHAPTER_CHARS = 20000;
+    private static final int TXT_CHARS = 3 * 1024 * 1024;
+    private static final int FILLER_BOOK_CHARS = 2000;
+    private static final long SEED = 20240601L;
+
+    private static final String HANZI = "的一是不在人有我他中大上年出生能子下自之后作用道行所方多去法如同起分面天心小"
+            + "日本月时见前间东今金入高外来气山话女北午书先名川水半男西电语土木闻食车何南白母火右友左休父雨";
+    private static final String PUNCTUATION = "，。！？：、";
+
+    // 生成全部数据并覆盖书架列表和阅读进度，保证每次测试从相同状态开始
+    public static void seed(Context context, int bookCount) throws IOException {
+        long startTime = System.currentTimeMillis();
+        File booksDirectory = new File(context.getFilesDir(), "books");
+        if (!booksDirectory.isDirectory() && !booksDirectory.mkdirs()) {
+            throw new IOException("无法创建书籍目录: " + booksDirectory);
+        }
+
+        Random random = new Random(SEED);
+        File epubFile = new File(booksDirectory, EPUB_FILE_NAME);
+        if (!epubFile.exists()) {
+            writeEpub(epubFile, random);
+        }
+        File txtFile = new File(booksDirectory, TXT_FILE_NAME);
+        if (!txtFile.exists()) {
+            writeTxt(txtFile, TXT_CHARS, random);
+        }
+
+        // 最近阅读的两本排在书架最前面，其余为小TXT
+        long now = System.currentTimeMillis();
+        List<BookRecord> records = new ArrayList<>(bookCount);
+        records.add(new BookRecord(EPUB_BOOK_ID, null, EPUB_TITLE, "基准测试", 0, EPUB_CHAPTERS, now,
+                EPUB_FILE_NAME, "", ""));
+        records.add(new BookRecord(TXT_BOOK_ID, null, TXT_TITLE, "基准测试", 0, 0, now - 1,
+                TXT_FILE_NAME, "", ""));
+        for (int i = records.size(); i < bookCount; i++) {
+            String fileName = "filler-" + i + ".txt";
+            File file = new File(booksDirectory, fileName);
+            if (!file.exists()) {
+                writeTxt(file, FILLER_BOOK_CHARS, random);
+            }
+            records.add(new BookRecord(i + 1, null, "书籍" + i, "作者" + (i % 100), 0, 0, now - 1000L * i,
+                    fileName, "", ""));
+        }
+
+        SharedPreferences bookListPrefs = context.getSharedPreferences(LibraryRepository.PREFS_NAME, Context.MODE_PRIVATE);
+        bookListPrefs.edit().clear().putString(LibraryRepository.BOOK_LIST_KEY, BookListCodec.encode(records)).commit();
+        // 清除阅读进度，打开书籍时总是从第一章开始
+        context.getSharedPreferences("ReadingProgress", Context.MODE_PRIVATE).edit().clear().commit();
+        // 首帧快照与预置的书架一致，冷启动走有快照的路径
+        LibraryRepository.writeSnapshot(context, LibraryRepository.encodeSnapshot(records));
+        // 书架数据已在进程内加载过时重新读取预置的列表
+        new Handler(Looper.getMainLooper()).post(() -> LibraryRepository.getInstance(context).reload());
+
+        Log.d(TAG, "seed: Seeded " + bookCount + " books in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    private static void writeTxt(File file, int chars, Random random) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)), Charset.forName("UTF-8"))) {
+            StringBuilder builder = new StringBuilder(chars + 256);
+            appendParagraphs(builder, chars, random);
+            writer.write(builder.toString());
+        }
+    }
+
+    // 按EPUB 2规范写出最小可用的书籍：mimetype（不压缩且位于开头）、container.xml、OPF、NCX和各章节XHTML
+    private static void writeEpub(File file, Random random) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            byte[] mimetype = "application/epub+zip".getBytes(Charset.forName("US-ASCII"));
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            writeEntry(zip, "META-INF/container.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">\n"
+                    + "<rootfiles><rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/></rootfiles>\n"
+                    + "</container>");
+
+            StringBuilder manifest = new StringBuilder();
+            StringBuilder spine = new StringBuilder();
+            StringBuilder navMap = new StringBuilder();
+            for (int i = 1; i <= EPUB_CHAPTERS; i++) {
+                String id = "chapter" + i;
+                String title = "第" + i + "章";
+                manifest.append("<item id=\"").append(id).append("\" href=\"").append(id)
+                        .append(".xhtml\" media-type=\"application/xhtml+xml\"/>\n");
+                spine.append("<itemref idref=\"").append(id).append("\"/>\n");
+                navMap.append("<navPoint id=\"nav").append(i).append("\" playOrder=\"").append(i).append("\"><navLabel><text>")
+                        .append(title).append("</text></navLabel><content src=\"").append(id).append(".xhtml\"/></navPoint>\n");
+
+                StringBuilder chapter = new StringBuilder(EPUB_CHAPTER_CHARS * 2);
+                chapter.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>")
+                        .append(title).append("</title></head><body>\n<h1>").append(title).append("</h1>\n");
+                StringBuilder text = new StringBuilder(EPUB_CHAPTER_CHARS + 256);
+                appendParagraphs(text, EPUB_CHAPTER_CHARS, random);
+                for (String paragraph : text.toString().split("\n")) {
+                    chapter.append("<p>").append(paragraph).append("</p>\n");
+                }
+                chapter.append("</body></html>");
+                writeEntry(zip, "OEBPS/" + id + ".xhtml", chapter.toString());
+            }
+
+            writeEntry(zip, "OEBPS/content.opf", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"2.0\" unique-identifier=\"bookid\">\n"
+                    + "<metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\"><dc:title>" + EPUB_TITLE + "</dc:title>"
+                    + "<dc:language>zh</dc:language><dc:identifier id=\"bookid\">benchmark-epub</dc:identifier></metadata>\n"
+                    + "<manifest>\n<item id=\"ncx\" href=\"toc.ncx\" media-type=\"application/x-dtbncx+xml\"/>\n" + manifest + "</manifest>\n"
+                    + "<spine toc=\"ncx\">\n" + spine + "</spine>\n</package>");
+            writeEntry(zip, "OEBPS/toc.ncx", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<ncx xmlns=\"http://www.daisy.org/z3986/2005/ncx/\" version=\"2005-1\">\n"
+                    + "<head><meta name=\"dtb:uid\" content=\"benchmark-epub\"/></head>\n"
+                    + "<docTitle><text>" + EPUB_TITLE + "</text></docTitle>\n<navMap>\n" + navMap + "</navMap>\n</ncx>");
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(Charset.forName("UTF-8")));
+        zip.closeEntry();
+    }
+
+    // 追加若干段随机中文，直到达到指定字符数
+    private static void appendParagraphs(StringBuilder builder, int chars, Random random) {
+        while (builder.length() < chars) {
+            builder.append("　　");
+            int sentences = 1 + random.nextInt(8);
+            for (int i = 0; i < sentences; i++) {
+                int length = 4 + random.nextInt(30);
+                for (int j = 0; j < length; j++) {
+                    builder.append(HANZI.charAt(random.nextInt(HANZI.length())));
+                }
+                builder.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            }
+            builder.append('\n');
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.myapplication2;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+// 宏基准测试通过 adb shell am broadcast 调用，生成合成书籍和书架数据
+// am broadcast 会等待接收器结束，测试开始前数据一定已经准备好
+public class BenchmarkSeedReceiver extends BroadcastReceiver {
+    private static final String TAG = "BenchmarkSeedReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        int bookCount = intent.getIntExtra(BenchmarkData.EXTRA_BOOK_COUNT, BenchmarkData.DEFAULT_BOOK_COUNT);
+        PendingResult pendingResult = goAsync();
+        new Thread(() -> {
+            try {
+                BenchmarkData.seed(context.getApplicationContext(), bookCount);
+                pendingResult.setResultCode(1);
+            } catch (Exception e) {
+                Log.e(TAG, "onReceive: Failed to seed benchmark data", e);
+                pendingResult.setResultCode(0);
+            } finally {
+                pendingResult.finish();
+            }
+        }, "benchmark-seed").start();
+    }
+}
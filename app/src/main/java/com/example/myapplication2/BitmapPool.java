@@ -0,0 +1,98 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+// 可复用位图池，解码插图时通过inBitmap复用已不再显示的位图内存，避免频繁分配大块内存
+public class BitmapPool implements MemoryGovernor.Trimmable {
+    private static final String TAG = "BitmapPool";
+
+    private static BitmapPool instance;
+
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private final long maxBytes;
+    private long currentBytes = 0;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // 全局共享的位图池，容量为最大堆内存的1/16
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+        }
+        return instance;
+    }
+
+    // 取出一个能容纳指定尺寸的位图，没有合适的则返回null
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long requiredBytes = (long) width * height * getBytesPerPixel(config);
+        Bitmap bestMatch = null;
+        for (Bitmap bitmap : bitmaps) {
+            int size = bitmap.getAllocationByteCount();
+            if (size >= requiredBytes && (bestMatch == null || size < bestMatch.getAllocationByteCount())) {
+                bestMatch = bitmap;
+            }
+        }
+        if (bestMatch != null) {
+            bitmaps.remove(bestMatch);
+            currentBytes -= bestMatch.getAllocationByteCount();
+        }
+        return bestMatch;
+    }
+
+    // 归还不再使用的位图
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addLast(bitmap);
+        currentBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    // 将池内位图总大小缩减到指定字节数以内，先丢弃最早放入的位图
+    public synchronized void trimToSize(long targetBytes) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (currentBytes > targetBytes && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            currentBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public synchronized void trim(float keepFraction) {
+        trimToSize((long) (maxBytes * keepFraction));
+    }
+
+    public synchronized void clear() {
+        Log.d(TAG, "clear: Releasing " + bitmaps.size() + " pooled bitmaps, bytes=" + currentBytes);
+        trimToSize(0);
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGBA_F16) {
+            return 8;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.myapplication2;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import nl.siegmann.epublib.domain.Book;
+
+// 已解析书籍的共享缓存，阅读页和目录页打开同一本书时不必重新解析
+// 按需读取章节的书籍同时持有打开的ZipFile，书籍被引用期间不会被释放，最后一个引用释放后才关闭
+public class BookCache implements MemoryGovernor.Trimmable {
+    private static final String TAG = "BookCache";
+    // 没有页面使用时最多保留的书籍数
+    private static final int MAX_IDLE_BOOKS = 1;
+
+    private static BookCache instance;
+
+    // 按访问顺序排列，最早访问的在前
+    private final Map<String, Entry> entries = new LinkedHashMap<>(4, 0.75f, true);
+    // 已移出缓存但仍有页面在使用的书籍
+    private final List<Entry> retiredEntries = new ArrayList<>();
+
+    public static synchronized BookCache getInstance() {
+        if (instance == null) {
+            instance = new BookCache();
+        }
+        return instance;
+    }
+
+    // 获取缓存的书籍并增加引用计数，未缓存时返回null
+    @Nullable
+    public synchronized Book acquire(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.refCount++;
+        return entry.book;
+    }
+
+    // 放入新解析的书籍并增加引用计数，zipFile在书籍被移出缓存且不再使用时关闭
+    public synchronized void putAndAcquire(String key, Book book, @Nullable ZipFile zipFile) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            retire(previous);
+        }
+        Entry entry = new Entry(book, zipFile);
+        entry.refCount = 1;
+        entries.put(key, entry);
+        trimIdle(MAX_IDLE_BOOKS);
+    }
+
+    // 释放一次引用
+    public synchronized void release(String key, Book book) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.book == book) {
+            entry.refCount = Math.max(0, entry.refCount - 1);
+            trimIdle(MAX_IDLE_BOOKS);
+            return;
+        }
+        // 已被替换或移出缓存，最后一个引用释放时关闭
+        for (Iterator<Entry> iterator = retiredEntries.iterator(); iterator.hasNext(); ) {
+            Entry retired = iterator.next();
+            if (retired.book == book) {
+                retired.refCount--;
+                if (retired.refCount <= 0) {
+                    iterator.remove();
+                    close(retired);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void trim(float keepFraction) {
+        trimIdle((int) (MAX_IDLE_BOOKS * keepFraction));
+    }
+
+    // 移除最早访问的空闲书籍，直到空闲书籍不超过指定数量
+    private void trimIdle(int maxIdle) {
+        int idle = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.refCount == 0) {
+                idle++;
+            }
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (idle > maxIdle && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if (entry.refCount == 0) {
+                Log.d(TAG, "trimIdle: Releasing book " + next.getKey());
+                iterator.remove();
+                retire(entry);
+                idle--;
+            }
+        }
+    }
+
+    // 移出缓存的书籍没有引用时立即关闭，否则等最后一个引用释放
+    private void retire(Entry entry) {
+        if (entry.refCount > 0) {
+            retiredEntries.add(entry);
+        } else {
+            close(entry);
+        }
+    }
+
+    private static void close(Entry entry) {
+        if (entry.zipFile == null) {
+            return;
+        }
+        try {
+            entry.zipFile.close();
+        } catch (IOException e) {
+            Log.w(TAG, "closeIfUnused: " + e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        final Book book;
+        final ZipFile zipFile;
+        int refCount = 0;
+
+        Entry(Book book, @Nullable ZipFile zipFile) {
+            this.book = book;
+            this.zipFile = zipFile;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 书籍文件的删除和重命名：书架立即更新，文件操作在后台按提交顺序逐个执行，主线程不再等待文件系统
+// 删除的书籍先从书架移除，撤销时间内可以恢复；连续删除的多本书在最后一次删除的撤销时间结束后一起删除文件，书架只保存一次
+// 所有方法都在主线程调用
+public class BookFileOperations {
+    private static final String TAG = "BookFileOperations";
+    // 删除后可以撤销的时间
+    public static final int UNDO_WINDOW_MS = 4000;
+
+    private static BookFileOperations instance;
+
+    public interface RenameCallback {
+        // 在主线程回调，失败时书名和作者已恢复为原值，message是失败原因
+        void onRenameFinished(boolean success, @Nullable String message);
+    }
+
+    // 在后台线程执行的文件操作，返回在主线程执行的后续处理
+    private interface FileOperation {
+        @Nullable
+        Runnable execute();
+    }
+
+    private final LibraryRepository libraryRepository;
+    private final File booksDirectory;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable commitRunnable = this::commitDeletes;
+    // 已从书架移除、文件尚未删除的书籍
+    private final List<EPUBBook> pendingDeletes = new ArrayList<>();
+    // 等待执行的文件操作，同一时间只有一个在后台执行
+    private final ArrayDeque<FileOperation> queue = new ArrayDeque<>();
+    private boolean running = false;
+    // 正在重命名的书籍和排在后面的重命名
+    private final Map<EPUBBook, ArrayDeque<Runnable>> waitingRenames = new HashMap<>();
+
+    private BookFileOperations(Context context) {
+        libraryRepository = LibraryRepository.getInstance(context);
+        booksDirectory = libraryRepository.getBooksDirectory();
+    }
+
+    @MainThread
+    public static BookFileOperations getInstance(Context context) {
+        if (instance == null) {
+            instance = new BookFileOperations(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // 从书架移除书籍，撤销时间结束后才删除文件
+    public void delete(EPUBBook book) {
+        // 撤销时间内可能恢复，期间其他删除触发的清理不能清除这本书的进度和附属文件
+        libraryRepository.retainState(book);
+        libraryRepository.removeBook(book);
+        pendingDeletes.add(book);
+        mainHandler.removeCallbacks(commitRunnable);
+        mainHandler.postDelayed(commitRunnable, UNDO_WINDOW_MS);
+        Log.d(TAG, "delete: " + book.getFileName() + ", pending=" + pendingDeletes.size());
+    }
+
+    // 撤销时间内删除的书籍数
+    public int getPendingDeleteCount() {
+        return pendingDeletes.size();
+    }
+
+    // 恢复撤销时间内删除的全部书籍，编号不变，阅读进度和附属文件仍然有效
+    public void undoDeletes() {
+        mainHandler.removeCallbacks(commitRunnable);
+        Log.d(TAG, "undoDeletes: Restored " + pendingDeletes.size() + " books");
+        for (EPUBBook book : pendingDeletes) {
+            libraryRepository.restoreBook(book);
+            libraryRepository.releaseState(book);
+        }
+        pendingDeletes.clear();
+    }
+
+    // 先更新书名和作者，文件改名在后台完成后再更新文件名和URI，失败时恢复原来的书名和作者
+    // 同一本书的多次重命名依次执行，前一次完成、文件名更新后才开始下一次
+    public void rename(EPUBBook book, String newTitle, String newAuthor, String newFileName, RenameCallback callback) {
+        String oldTitle = book.getTitle();
+        String oldAuthor = book.getAuthor();
+        book.setTitle(newTitle);
+        book.setAuthor(newAuthor);
+        libraryRepository.updateBook(book);
+
+        Runnable start = () -> startRename(book, oldTitle, oldAuthor, newFileName, callback);
+        ArrayDeque<Runnable> waiting = waitingRenames.get(book);
+        if (waiting != null) {
+            waiting.add(start);
+        } else {
+            waitingRenames.put(book, new ArrayDeque<>());
+            start.run();
+        }
+    }
+
+    private void startRename(EPUBBook book, String oldTitle, String oldAuthor, String newFileName, RenameCallback callback) {
+        String oldFileName = book.getFileName();
+        if (oldFileName.equals(newFileName)) {
+            // 前一次重命名已经改成了这个文件名
+            finishRename(book);
+            callback.onRenameFinished(true, null);
+            return;
+        }
+        File oldFile = new File(booksDirectory, oldFileName);
+        File newFile = new File(booksDirectory, newFileName);
+        libraryRepository.beginFileChange(oldFileName);
+        libraryRepository.beginFileChange(newFileName);
+        enqueue(() -> {
+            String error = null;
+            try {
+                if (!oldFile.exists()) {
+                    error = "原文件不存在";
+                } else if (newFile.exists()) {
+                    error = "已存在同名书籍";
+                } else if (!oldFile.renameTo(newFile)) {
+                    error = "文件重命名失败";
+                }
+            } catch (SecurityException e) {
+                // 后续处理必须执行，否则这本书之后的重命名会一直等待
+                Log.e(TAG, "rename: Failed to rename " + oldFile, e);
+                error = "文件重命名失败";
+            }
+            String message = error;
+            Log.d(TAG, "rename: " + oldFile.getName() + " -> " + newFile.getName() + ", error=" + message);
+            return () -> {
+                if (message == null) {
+                    book.setFileName(newFileName);
+                    book.setUri(Uri.fromFile(newFile));
+                } else {
+                    book.setTitle(oldTitle);
+                    book.setAuthor(oldAuthor);
+                }
+                libraryRepository.updateBook(book);
+                libraryRepository.endFileChange(oldFileName);
+                libraryRepository.endFileChange(newFileName);
+                callback.onRenameFinished(message == null, message);
+                finishRename(book);
+            };
+        });
+    }
+
+    // 开始这本书排队中的下一次重命名
+    private void finishRename(EPUBBook book) {
+        ArrayDeque<Runnable> waiting = waitingRenames.get(book);
+        Runnable next = waiting != null ? waiting.poll() : null;
+        if (next != null) {
+            next.run();
+        } else {
+            waitingRenames.remove(book);
+        }
+    }
+
+    // 撤销时间结束：保存一次书架，再在后台删除文件
+    private void commitDeletes() {
+        if (pendingDeletes.isEmpty()) {
+            return;
+        }
+        List<EPUBBook> committed = new ArrayList<>(pendingDeletes);
+        List<EPUBBook> books = new ArrayList<>();
+        for (EPUBBook book : pendingDeletes) {
+            // 撤销时间内又添加了同名文件的书籍时保留文件
+            if (libraryRepository.findByFileName(book.getFileName()) == null) {
+                books.add(book);
+            }
+        }
+        pendingDeletes.clear();
+        libraryRepository.flush();
+        enqueue(() -> {
+            int deleted = 0;
+            for (EPUBBook book : books) {
+                File bookFile = new File(booksDirectory, book.getFileName());
+                if (bookFile.delete()) {
+                    deleted++;
+                } else if (bookFile.exists()) {
+                    Log.w(TAG, "commitDeletes: Failed to delete " + bookFile);
+                }
+            }
+            Log.d(TAG, "commitDeletes: Deleted " + deleted + " of " + books.size() + " files");
+            // 文件删除后再清理这些书籍的阅读进度和附属文件
+            return () -> {
+                for (EPUBBook book : committed) {
+                    libraryRepository.releaseState(book);
+                }
+                libraryRepository.scheduleCompaction();
+            };
+        });
+    }
+
+    private void enqueue(FileOperation operation) {
+        queue.add(operation);
+        if (!running) {
+            runNext();
+        }
+    }
+
+    // 前一个操作的后续处理在主线程执行完后才开始下一个操作
+    @SuppressWarnings("try")
+    private void runNext() {
+        FileOperation operation = queue.poll();
+        if (operation == null) {
+            running = false;
+            return;
+        }
+        running = true;
+        TaskScheduler scheduler = TaskScheduler.getInstance();
+        scheduler.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+            Runnable result = null;
+            try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.BOOK_FILE_OPERATION)) {
+                result = operation.execute();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "runNext: File operation failed", e);
+            }
+            Runnable finish = result;
+            scheduler.postToUi(() -> {
+                if (finish != null) {
+                    finish.run();
+                }
+                runNext();
+            });
+        });
+    }
+}
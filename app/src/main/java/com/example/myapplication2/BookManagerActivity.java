@@ -34,22 +34,59 @@ public class BookManagerActivity extends AppCompatActivity {
     private ArrayAdapter<String> adapter;
     private List<String> bookList;
     private File bookDirectory;
+    private LibraryRepository libraryRepository; // 书籍目录的变化由书架监听后增量更新，这里不再列出目录
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_book_manager);
 
-        bookDirectory = new File(getFilesDir(), "books");
+        libraryRepository = LibraryRepository.getInstance(this);
+        bookDirectory = libraryRepository.getBooksDirectory();
         if (!bookDirectory.exists()) {
             bookDirectory.mkdirs();
         }
 
         initViews();
         checkPermissions();
+        libraryRepository.addListener(libraryListener);
         loadBooks();
     }
 
+    // 书籍目录中的文件被添加或删除后，书架通过监听更新，这里随之刷新
+    private final LibraryRepository.Listener libraryListener = new LibraryRepository.Listener() {
+        @Override
+        public void onBookInserted(int position) {
+            loadBooks();
+        }
+
+        @Override
+        public void onBookRemoved(int position) {
+            loadBooks();
+        }
+
+        @Override
+        public void onBookChanged(int position) {
+            loadBooks();
+        }
+
+        @Override
+        public void onBookMoved(int fromPosition, int toPosition) {
+            loadBooks();
+        }
+
+        @Override
+        public void onLibraryReloaded() {
+            loadBooks();
+        }
+    };
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        libraryRepository.removeListener(libraryListener);
+    }
+
     private void initViews() {
         bookListView = findViewById(R.id.bookListView);
         Button addBookButton = findViewById(R.id.addBookButton);
@@ -135,8 +172,8 @@ public class BookManagerActivity extends AppCompatActivity {
                 inputStream.close();
                 outputStream.close();
                 
+                // 书籍目录的监听把文件加入书架后刷新列表
                 Toast.makeText(this, "已添加书籍: " + fileName, Toast.LENGTH_SHORT).show();
-                loadBooks();
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -174,15 +211,11 @@ public class BookManagerActivity extends AppCompatActivity {
         return fileName;
     }
 
+    // 从内存中的书架读取文件名，完整列表加载完成前是快照中的书籍
     private void loadBooks() {
         bookList.clear();
-        File[] files = bookDirectory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isFile()) {
-                    bookList.add(file.getName());
-                }
-            }
+        for (EPUBBook book : libraryRepository.getBooks()) {
+            bookList.add(book.getFileName());
         }
         adapter.notifyDataSetChanged();
     }
@@ -219,8 +252,8 @@ public class BookManagerActivity extends AppCompatActivity {
         String bookName = bookList.get(position);
         File bookFile = new File(bookDirectory, bookName);
         if (bookFile.exists() && bookFile.delete()) {
+            // 书籍目录的监听把书籍移出书架后刷新列表
             Toast.makeText(this, "已删除书籍: " + bookName, Toast.LENGTH_SHORT).show();
-            loadBooks(); // 重新加载书籍列表
         } else {
             Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
         }
@@ -3,12 +3,16 @@ package com.example.myapplication2;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.TextPaint;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.GridLayout;
 import android.widget.ImageButton;
@@ -19,6 +23,7 @@ import android.widget.TextView;
 import android.widget.ViewFlipper;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AlertDialog;
+import androidx.annotation.Nullable;
 import nl.siegmann.epublib.domain.Book;
 import nl.siegmann.epublib.domain.Resource;
 import nl.siegmann.epublib.domain.Spine;
@@ -32,8 +37,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import android.os.AsyncTask;
+import java.util.Set;
 
 public class BookReaderActivity extends AppCompatActivity {
     private static final String TAG = "BookReaderActivity";
@@ -63,8 +69,20 @@ public class BookReaderActivity extends AppCompatActivity {
     private View menuBackground;
     
     // 分页相关变量
-    private List<String> pageContents = new ArrayList<>(); // 存储分页后的内容
+    private List<CharSequence> pageContents = new ArrayList<>(); // 存储分页后的内容，各页共用整章的紧凑存储
+    private volatile ChapterStore chapterStore; // 导入时预转换的章节文件，尚未转换完成时为null
     private int currentPageIndex = 0; // 当前页索引
+    
+    private TaskScope taskScope; // 与页面生命周期绑定的后台任务
+    
+    // 预渲染的页面位图（当前页及前后各一页），章节内翻页时直接播放滑动动画
+    private PageFlipView pageFlipView;
+    private final SparseArray<Bitmap> pageBitmaps = new SparseArray<>();
+    private final Set<Integer> pendingPageRenders = new HashSet<>();
+    private PageRenderer.Spec pageRenderSpec;
+    private int pageRenderGeneration = 0; // 章节或页面尺寸变化时递增，丢弃过期的渲染结果
+    // 内存紧张时释放预渲染的页面，下次翻页时重新渲染
+    private final MemoryGovernor.Trimmable pageBitmapTrimmer = keepFraction -> runOnUiThread(this::releasePageBitmaps);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,6 +90,8 @@ public class BookReaderActivity extends AppCompatActivity {
         setContentView(R.layout.activity_book_reader);
 
         Log.d(TAG, "onCreate: BookReaderActivity started");
+        taskScope = new TaskScope(this);
+        MemoryGovernor.getInstance(this).register(pageBitmapTrimmer, MemoryGovernor.Cost.CHEAP);
 
         // 确保ActionBar显示，以便菜单可以正常显示
         if (getSupportActionBar() != null) {
@@ -105,6 +125,7 @@ public class BookReaderActivity extends AppCompatActivity {
         titleTextView = findViewById(R.id.titleTextView);
         contentTextView = findViewById(R.id.contentTextView);
         scrollView = findViewById(R.id.scrollView); // 添加对ScrollView的引用
+        pageFlipView = findViewById(R.id.pageFlipView);
         clickDetectionLayer = findViewById(R.id.clickDetectionLayer);
 
         // 初始化翻页按钮
@@ -397,8 +418,15 @@ public class BookReaderActivity extends AppCompatActivity {
         if (bookPath != null) {
             // 显示加载提示
             contentTextView.setText("正在加载书籍...");
-            // 在后台线程加载书籍
-            new LoadBookTask().execute(bookPath);
+            // 书架上的书籍按编号共用章节文件，书架加载完成后才能查到编号
+            LibraryRepository libraryRepository = LibraryRepository.getInstance(this);
+            libraryRepository.runWhenLoaded(() -> {
+                File bookFile = new File(bookPath);
+                EPUBBook libraryBook = libraryRepository.findByFileName(bookFile.getName());
+                String bookKey = LibraryRepository.getStateKey(libraryBook != null ? libraryBook.getId() : 0, Uri.fromFile(bookFile));
+                // 在后台线程加载书籍
+                loadBook(bookPath, bookKey);
+            });
         }
     }
 
@@ -422,47 +450,66 @@ public class BookReaderActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    // 后台加载EPUB文件的任务
-    private class LoadBookTask extends AsyncTask<String, Void, Book> {
-        @Override
-        protected Book doInBackground(String... params) {
-            String path = params[0];
-            Log.d(TAG, "LoadBookTask: Loading book from " + path);
-            try (FileInputStream inputStream = new FileInputStream(new File(path))) {
-                // 使用try-with-resources确保资源正确关闭
-                Book book = (new EpubReader()).readEpub(inputStream);
-                return book;
-            } catch (OutOfMemoryError e) {
-                Log.e(TAG, "LoadBookTask: OutOfMemoryError loading book: " + e.getMessage());
-                return null;
-            } catch (IOException e) {
-                Log.e(TAG, "LoadBookTask: IOException loading book: " + e.getMessage());
-                return null;
-            } catch (Exception e) {
-                Log.e(TAG, "LoadBookTask: Unexpected error loading book: " + e.getMessage());
-                return null;
-            } catch (Throwable t) {
-                Log.e(TAG, "LoadBookTask: Unexpected throwable loading book: " + t.getMessage());
-                return null;
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Book book) {
+    // 在后台加载EPUB文件
+    private void loadBook(String path, String bookKey) {
+        taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+            Book book = readBook(path);
             if (book != null) {
-                epubBook = book;
-                Log.d(TAG, "LoadBookTask: Book loaded successfully. Title: " + epubBook.getTitle());
-                // 显示第一章
-                currentChapterIndex = 0;
-                displayCurrentPage();
-            } else {
-                Log.e(TAG, "LoadBookTask: Failed to load book");
-                contentTextView.setText("无法加载书籍");
+                openChapterStore(path, bookKey, book.getSpine().size());
             }
+            taskScope.postToUi(() -> onBookLoaded(book));
+        });
+    }
+
+    private Book readBook(String path) {
+        Log.d(TAG, "loadBook: Loading book from " + path);
+        try (FileInputStream inputStream = new FileInputStream(new File(path))) {
+            // 使用try-with-resources确保资源正确关闭
+            return (new EpubReader()).readEpub(inputStream);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "loadBook: OutOfMemoryError loading book: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "loadBook: IOException loading book: " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            Log.e(TAG, "loadBook: Unexpected error loading book: " + e.getMessage());
+            return null;
+        } catch (Throwable t) {
+            Log.e(TAG, "loadBook: Unexpected throwable loading book: " + t.getMessage());
+            return null;
         }
     }
 
-    private String getChapterContent(int chapterIndex) {
+    // 打开预转换的章节文件，没有或已过期时在后台转换，完成前章节仍从XHTML解析
+    private void openChapterStore(String path, String bookKey, int chapterCount) {
+        Uri bookUri = Uri.fromFile(new File(path));
+        ChapterStore store = ChapterStoreConverter.open(this, bookKey, bookUri);
+        if (store != null && store.getChapterCount() == chapterCount) {
+            chapterStore = store;
+            return;
+        }
+        ChapterStoreConverter.convertInBackground(getApplicationContext(), bookKey, bookUri, converted -> {
+            if (converted.getChapterCount() == chapterCount) {
+                chapterStore = converted;
+            }
+        });
+    }
+
+    private void onBookLoaded(Book book) {
+        if (book != null) {
+            epubBook = book;
+            Log.d(TAG, "loadBook: Book loaded successfully. Title: " + epubBook.getTitle());
+            // 显示第一章
+            currentChapterIndex = 0;
+            displayCurrentPage();
+        } else {
+            Log.e(TAG, "loadBook: Failed to load book");
+            contentTextView.setText("无法加载书籍");
+        }
+    }
+
+    private CharSequence getChapterContent(int chapterIndex) {
         Log.d(TAG, "getChapterContent: Getting content for chapter " + chapterIndex);
         if (epubBook == null) {
             Log.w(TAG, "getChapterContent: epubBook is null, returning empty string");
@@ -490,29 +537,22 @@ public class BookReaderActivity extends AppCompatActivity {
                 return "章节内容无法加载";
             }
             
-            // 获取资源数据
-            byte[] data = resource.getData();
-            if (data == null) {
-                Log.w(TAG, "getChapterContent: resource data is null");
-                return "章节内容无法加载";
-            }
-            
-            // 检查数据长度
-            if (data.length == 0) {
-                Log.w(TAG, "getChapterContent: resource data is empty");
-                return "章节内容为空";
+            CharSequence content;
+            ChapterStore store = chapterStore;
+            if (store != null) {
+                // 预转换的纯ASCII章节直接引用映射的文件，不占用堆内存
+                content = store.readText(chapterIndex);
+            } else {
+                // 按章节声明的编码解析，只保留纯文本用于分页，与章节文件的纯文本一致
+                content = CompactText.of(ChapterStoreConverter.decodePlainText(resource));
             }
             
-            String content = new String(data, "UTF-8");
-            
             // 检查内容是否为空
-            if (content == null || content.isEmpty()) {
-                Log.w(TAG, "getChapterContent: content is null or empty");
+            if (content.length() == 0) {
+                Log.w(TAG, "getChapterContent: content is empty");
                 return "章节内容为空";
             }
             
-            // 简单提取文本内容（实际应用中可能需要解析HTML）
-            content = content.replaceAll("<[^>]*>", "");
             Log.d(TAG, "getChapterContent: Chapter content length: " + content.length());
             return content;
         } catch (OutOfMemoryError e) {
@@ -532,50 +572,18 @@ public class BookReaderActivity extends AppCompatActivity {
      * @param content 章节完整内容
      * @return 分页后的内容列表
      */
-    private List<String> paginateChapterContent(String content) {
-        List<String> pages = new ArrayList<>();
-        try {
-            if (content == null || content.isEmpty()) {
-                pages.add("");
-                return pages;
-            }
-            
-            // 根据屏幕尺寸动态计算每页字符数
-            int charsPerPage = calculateCharsPerPage();
-            
-            // 分割内容为多页，确保句子完整性
-            int length = content.length();
-            int start = 0;
-            
-            while (start < length) {
-                int end = Math.min(start + charsPerPage, length);
-                
-                // 尽量在句号或段落结尾处分页
-                if (end < length) {
-                    // 向后查找句号或段落结尾
-                    while (end > start && content.charAt(end) != '。' && content.charAt(end) != '\n') {
-                        end--;
-                    }
-                    
-                    // 如果找不到句号或段落结尾，则在原位置分页
-                    if (end <= start) {
-                        end = start + charsPerPage;
-                    } else {
-                        // 包含句号或换行符
-                        end++;
-                    }
-                }
-                
-                if (end > start) {
-                    pages.add(content.substring(start, end));
-                }
-                
-                start = end;
-            }
-            
-            // 如果没有分页，则添加整个内容
-            if (pages.isEmpty()) {
-                pages.add(content);
+    private List<CharSequence> paginateChapterContent(CharSequence content) {
+        List<CharSequence> pages = new ArrayList<>();
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_PAGINATE)) {
+            section.setBytes(content.length() * 2L);
+            CjkLineBreaker lineBreaker = createLineBreaker();
+            int linesPerPage = calculateLinesPerPage();
+            if (lineBreaker != null && linesPerPage > 0 && CjkLineBreaker.isCjkDominant(content)) {
+                // 中文为主的章节按字宽直接计算断行，每页正好放满
+                pages = ChapterPaginator.paginateLines(content, lineBreaker.breakLines(content), linesPerPage);
+            } else {
+                // 根据屏幕尺寸动态计算每页字符数，分割内容为多页，确保句子完整性
+                pages = ChapterPaginator.paginate(content, calculateCharsPerPage());
             }
         } catch (Exception e) {
             Log.e(TAG, "paginateChapterContent: Error paginating content: " + e.getMessage());
@@ -590,6 +598,32 @@ public class BookReaderActivity extends AppCompatActivity {
         return pages;
     }
     
+    // 按正文控件的字体和宽度创建断行器，控件尚未完成布局时返回null
+    @Nullable
+    private CjkLineBreaker createLineBreaker() {
+        int lineWidth = contentTextView.getWidth() - contentTextView.getTotalPaddingLeft() - contentTextView.getTotalPaddingRight();
+        if (lineWidth <= 0) {
+            return null;
+        }
+        TextPaint paint = new TextPaint(contentTextView.getPaint());
+        return new CjkLineBreaker(paint.measureText("中"), lineWidth, paint::measureText);
+    }
+
+    // 正文在一屏内能显示的行数，控件尚未完成布局时返回0
+    private int calculateLinesPerPage() {
+        ViewGroup container = (ViewGroup) contentTextView.getParent();
+        ViewGroup.LayoutParams titleParams = titleTextView.getLayoutParams();
+        int titleMargin = titleParams instanceof ViewGroup.MarginLayoutParams ? ((ViewGroup.MarginLayoutParams) titleParams).bottomMargin : 0;
+        int height = scrollView.getHeight() - container.getPaddingTop() - container.getPaddingBottom()
+                - titleTextView.getHeight() - titleMargin
+                - contentTextView.getTotalPaddingTop() - contentTextView.getTotalPaddingBottom();
+        int lineHeight = contentTextView.getLineHeight();
+        if (scrollView.getHeight() <= 0 || lineHeight <= 0) {
+            return 0;
+        }
+        return Math.max(1, height / lineHeight);
+    }
+
     /**
      * 根据内容显示区域大小计算每页可显示的字符数
      * @return 每页字符数
@@ -672,8 +706,11 @@ public class BookReaderActivity extends AppCompatActivity {
         }
 
         try {
+            // 章节变化后原来预渲染的页面全部失效
+            releasePageBitmaps();
+            
             // 按需加载当前章节内容
-            String content = getChapterContent(currentChapterIndex);
+            CharSequence content = getChapterContent(currentChapterIndex);
             
             // 对内容进行分页处理
             pageContents = paginateChapterContent(content);
@@ -732,6 +769,8 @@ public class BookReaderActivity extends AppCompatActivity {
                     public void run() {
                         scrollView.scrollTo(0, 0);
                         Log.d(TAG, "displayCurrentPage: Scrolled to top");
+                        // 布局完成后预渲染相邻页面
+                        prerenderNeighborPages();
                     }
                 });
             }
@@ -780,8 +819,15 @@ public class BookReaderActivity extends AppCompatActivity {
         Spine spine = epubBook.getSpine();
         if (spine == null) return;
         
+        // 连续翻页时先完成上一次的翻页动画
+        pageFlipView.finishFlip();
+        
         // 如果当前页不是章节的最后一页，则显示下一页
         if (currentPageIndex < pageContents.size() - 1) {
+            if (flipToPage(currentPageIndex + 1, PageFlipView.DIRECTION_NEXT)) {
+                Log.d(TAG, "nextPage: 播放翻页动画，目标页索引: " + (currentPageIndex + 1));
+                return;
+            }
             currentPageIndex++;
             if (contentTextView != null) {
                 contentTextView.setText(pageContents.get(currentPageIndex));
@@ -802,6 +848,7 @@ public class BookReaderActivity extends AppCompatActivity {
             }
             
             Log.d(TAG, "nextPage: 显示章节内下一页，页索引: " + currentPageIndex);
+            prerenderNeighborPages();
         } 
         // 如果当前页是章节的最后一页，且不是最后一章，则跳转到下一章
         else if (currentChapterIndex < spine.size() - 1) {
@@ -821,9 +868,15 @@ public class BookReaderActivity extends AppCompatActivity {
 
     private void previousPage() {
         Log.d(TAG, "previousPage: 当前章节索引: " + currentChapterIndex + ", 当前页索引: " + currentPageIndex);
+        // 连续翻页时先完成上一次的翻页动画
+        pageFlipView.finishFlip();
         
         // 如果当前页不是章节的第一页，则显示上一页
         if (currentPageIndex > 0) {
+            if (flipToPage(currentPageIndex - 1, PageFlipView.DIRECTION_PREVIOUS)) {
+                Log.d(TAG, "previousPage: 播放翻页动画，目标页索引: " + (currentPageIndex - 1));
+                return;
+            }
             currentPageIndex--;
             if (contentTextView != null) {
                 contentTextView.setText(pageContents.get(currentPageIndex));
@@ -845,6 +898,7 @@ public class BookReaderActivity extends AppCompatActivity {
             }
             
             Log.d(TAG, "previousPage: 显示章节内上一页，页索引: " + currentPageIndex);
+            prerenderNeighborPages();
         } 
         // 如果当前页是章节的第一页，且不是第一章，则跳转到上一章
         else if (currentChapterIndex > 0) {
@@ -862,6 +916,120 @@ public class BookReaderActivity extends AppCompatActivity {
         updateButtonState();
     }
 
+    // 生成页面标题：书名（章节序号/总章节数） 第N页/M页
+    private String buildPageTitle(int pageIndex) {
+        String title = epubBook.getTitle();
+        String prefix = title != null && !title.isEmpty() ? title : "书籍内容";
+        return prefix + " (" + (currentChapterIndex + 1) + "/" + epubBook.getSpine().size() + ")" +
+                " 第" + (pageIndex + 1) + "页/" + pageContents.size() + "页";
+    }
+    
+    // 使用预渲染的页面位图播放翻页动画，位图尚未就绪或尺寸已变化时返回false，由调用方直接切换
+    private boolean flipToPage(int pageIndex, int direction) {
+        Bitmap bitmap = pageBitmaps.get(pageIndex);
+        if (bitmap == null || pageFlipView == null
+                || bitmap.getWidth() != scrollView.getWidth() || bitmap.getHeight() != scrollView.getHeight()) {
+            return false;
+        }
+        pageFlipView.flip(bitmap, scrollView, direction, () -> {
+            // 动画结束时真实内容切换为新页面，与位图内容一致
+            currentPageIndex = pageIndex;
+            contentTextView.setText(pageContents.get(pageIndex));
+            titleTextView.setText(buildPageTitle(pageIndex));
+            scrollView.scrollTo(0, 0);
+            updateButtonState();
+        }, this::prerenderNeighborPages);
+        return true;
+    }
+    
+    // 在后台渲染当前页及前后各一页，释放不再相邻的页面
+    private void prerenderNeighborPages() {
+        if (epubBook == null || pageContents == null || pageContents.isEmpty() || pageFlipView.isFlipping()) {
+            return;
+        }
+        PageRenderer.Spec spec = PageRenderer.Spec.from(scrollView, (ViewGroup) ((ScrollView) scrollView).getChildAt(0),
+                titleTextView, contentTextView);
+        if (spec == null) {
+            return;
+        }
+        if (!spec.sameSize(pageRenderSpec)) {
+            releasePageBitmaps();
+        }
+        pageRenderSpec = spec;
+        
+        for (int i = pageBitmaps.size() - 1; i >= 0; i--) {
+            if (Math.abs(pageBitmaps.keyAt(i) - currentPageIndex) > 1) {
+                releasePageBitmap(pageBitmaps.valueAt(i));
+                pageBitmaps.removeAt(i);
+            }
+        }
+        
+        // 下一页最常用，优先渲染
+        int[] pages = {currentPageIndex + 1, currentPageIndex - 1, currentPageIndex};
+        int generation = pageRenderGeneration;
+        for (int page : pages) {
+            if (page < 0 || page >= pageContents.size() || pageBitmaps.get(page) != null || pendingPageRenders.contains(page)) {
+                continue;
+            }
+            pendingPageRenders.add(page);
+            String title = buildPageTitle(page);
+            CharSequence content = pageContents.get(page);
+            taskScope.execute(TaskScheduler.Pool.CPU, TaskScheduler.Priority.PREFETCH, () -> {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = PageRenderer.render(spec, title, content, BitmapPool.getInstance());
+                } catch (OutOfMemoryError e) {
+                    Log.w(TAG, "prerenderNeighborPages: Out of memory rendering page " + page);
+                }
+                Bitmap rendered = bitmap;
+                taskScope.postToUi(() -> onPageRendered(generation, page, rendered));
+            });
+        }
+    }
+    
+    private void onPageRendered(int generation, int pageIndex, Bitmap bitmap) {
+        if (generation != pageRenderGeneration) {
+            // 章节或尺寸已变化，渲染结果作废
+            BitmapPool.getInstance().put(bitmap);
+            return;
+        }
+        pendingPageRenders.remove(pageIndex);
+        if (bitmap == null) {
+            return;
+        }
+        if (Math.abs(pageIndex - currentPageIndex) > 1 || pageBitmaps.get(pageIndex) != null) {
+            BitmapPool.getInstance().put(bitmap);
+            return;
+        }
+        pageBitmaps.put(pageIndex, bitmap);
+        Log.d(TAG, "onPageRendered: Page " + pageIndex + " prerendered");
+    }
+    
+    // 释放所有预渲染的页面并作废正在进行的渲染
+    private void releasePageBitmaps() {
+        pageRenderGeneration++;
+        pendingPageRenders.clear();
+        for (int i = 0; i < pageBitmaps.size(); i++) {
+            releasePageBitmap(pageBitmaps.valueAt(i));
+        }
+        pageBitmaps.clear();
+    }
+    
+    // 正在翻页动画中显示的位图不能复用，交给垃圾回收
+    private void releasePageBitmap(Bitmap bitmap) {
+        if (pageFlipView == null || !pageFlipView.isShowing(bitmap)) {
+            BitmapPool.getInstance().put(bitmap);
+        }
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        MemoryGovernor.getInstance(this).unregister(pageBitmapTrimmer);
+        pageFlipView.finishFlip();
+        releasePageBitmaps();
+    }
+
     // 显示目录
     private void showTableOfContents() {
         Log.d(TAG, "showTableOfContents: Showing table of contents");
@@ -0,0 +1,56 @@
+package com.example.myapplication2;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+// 监听书籍目录中文件的出现和消失，在主线程回调，书架据此增量更新，不再逐个检查文件
+// 只在写入完成（关闭文件）或移入时报告新文件，复制中途的文件不会加入书架
+// 需要保持引用，对象被回收后停止监听
+class BooksDirectoryWatcher extends FileObserver {
+    private static final String TAG = "BooksDirectoryWatcher";
+    private static final int EVENTS = CLOSE_WRITE | MOVED_TO | DELETE | MOVED_FROM;
+
+    interface Callback {
+        void onBookFileAdded(String fileName);
+
+        void onBookFileRemoved(String fileName);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Callback callback;
+
+    // FileObserver(File, int)需要API 29
+    @SuppressWarnings("deprecation")
+    BooksDirectoryWatcher(File directory, Callback callback) {
+        super(directory.getPath(), EVENTS);
+        this.callback = callback;
+    }
+
+    // 在FileObserver的线程中调用
+    @Override
+    public void onEvent(int event, @Nullable String path) {
+        if (path == null || path.endsWith(".tmp")) {
+            return;
+        }
+        switch (event & ALL_EVENTS) {
+            case CLOSE_WRITE:
+            case MOVED_TO:
+                Log.d(TAG, "onEvent: Added " + path);
+                mainHandler.post(() -> callback.onBookFileAdded(path));
+                break;
+            case DELETE:
+            case MOVED_FROM:
+                Log.d(TAG, "onEvent: Removed " + path);
+                mainHandler.post(() -> callback.onBookFileRemoved(path));
+                break;
+            default:
+                break;
+        }
+    }
+}
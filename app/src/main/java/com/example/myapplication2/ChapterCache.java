@@ -0,0 +1,123 @@
+package com.example.myapplication2;
+
+import android.util.LruCache;
+
+// 已解析章节的缓存，保存当前章节附近预加载好的内容
+// 章节内容引用着插图，所以只有既不在缓存中也不在显示时才释放其插图引用
+// 连续滚动模式下同时显示多个章节，按显示次数计数
+public class ChapterCache implements MemoryGovernor.Trimmable {
+    private final LruCache<Integer, Entry> cache;
+    private Entry displayedEntry;
+
+    public ChapterCache(int maxChapters) {
+        cache = new LruCache<Integer, Entry>(maxChapters) {
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Entry oldValue, Entry newValue) {
+                if (oldValue == newValue) {
+                    return;
+                }
+                synchronized (ChapterCache.this) {
+                    oldValue.inCache = false;
+                    if (oldValue.displayCount == 0) {
+                        oldValue.release();
+                    }
+                }
+            }
+        };
+    }
+
+    public synchronized Entry get(int chapterIndex) {
+        return cache.get(chapterIndex);
+    }
+
+    // 判断章节是否已缓存（不影响命中率统计和淘汰顺序）
+    public synchronized boolean contains(int chapterIndex) {
+        return cache.snapshot().containsKey(chapterIndex);
+    }
+
+    public synchronized void put(int chapterIndex, Entry entry) {
+        entry.inCache = true;
+        cache.put(chapterIndex, entry);
+    }
+
+    // 标记翻页模式下当前显示的章节，被替换下来且已不在缓存中的章节立即释放
+    public synchronized void setDisplayed(Entry entry) {
+        Entry previous = displayedEntry;
+        displayedEntry = entry;
+        if (entry != null && entry != previous) {
+            acquireDisplay(entry);
+        }
+        if (previous != null && previous != entry) {
+            releaseDisplay(previous);
+        }
+    }
+
+    // 章节开始显示，显示期间不会因移出缓存而释放插图
+    public synchronized void acquireDisplay(Entry entry) {
+        entry.displayCount++;
+    }
+
+    // 章节不再显示，已不在缓存中且没有其他地方显示时释放
+    public synchronized void releaseDisplay(Entry entry) {
+        entry.displayCount--;
+        if (entry.displayCount == 0 && !entry.inCache) {
+            entry.release();
+        }
+    }
+
+    // 翻页模式下当前显示的章节
+    public synchronized Entry getDisplayed() {
+        return displayedEntry;
+    }
+
+    // 当前章节按新的排版参数重新预计算后替换旧条目，插图加载器转交给新条目
+    // 其他章节按旧参数预计算，一并淘汰
+    public synchronized Entry replaceContent(Entry entry, CharSequence content) {
+        Entry replacement = new Entry(entry.chapterIndex, content, entry.imageGetter);
+        entry.ownsImages = false;
+        cache.evictAll();
+        put(entry.chapterIndex, replacement);
+        return replacement;
+    }
+
+    public synchronized void clear() {
+        cache.evictAll();
+        setDisplayed(null);
+    }
+
+    // 按比例淘汰预加载的章节，正在显示的章节不会被释放
+    @Override
+    public synchronized void trim(float keepFraction) {
+        cache.trimToSize((int) (cache.maxSize() * keepFraction));
+    }
+
+    public synchronized int hitCount() {
+        return cache.hitCount();
+    }
+
+    public synchronized int missCount() {
+        return cache.missCount();
+    }
+
+    // 一个章节解析后的内容及其插图加载器
+    public static class Entry {
+        final int chapterIndex;
+        final CharSequence content;
+        final EpubImageGetter imageGetter;
+        boolean inCache = false;
+        int displayCount = 0;
+        boolean ownsImages = true; // 插图加载器转交给重新排版后的条目后不再由本条目释放
+
+        public Entry(int chapterIndex, CharSequence content, EpubImageGetter imageGetter) {
+            this.chapterIndex = chapterIndex;
+            this.content = content;
+            this.imageGetter = imageGetter;
+        }
+
+        void release() {
+            if (ownsImages && imageGetter != null) {
+                imageGetter.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.text.Html;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ImageSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Resource;
+import nl.siegmann.epublib.domain.SpineReference;
+import nl.siegmann.epublib.epub.EpubReader;
+
+// 在导入书籍时把EPUB各章节转换为ChapterStore文件，阅读时按样式区间表直接生成Spanned，不再解析XHTML
+// 章节文件保存在 files/chapter_store/ 下，按书籍状态键（见LibraryRepository.getStateKey）命名，书籍文件的大小或修改时间变化后自动失效
+public class ChapterStoreConverter {
+    private static final String TAG = "ChapterStoreConverter";
+
+    // 转换时只记录插图路径，不解码图片
+    private static final Html.ImageGetter SOURCE_RECORDER = source -> new ColorDrawable(Color.TRANSPARENT);
+
+    // 正在转换的章节文件，导入和打开同一本书时不重复转换
+    private static final Set<String> converting = new HashSet<>();
+
+    public interface OnConvertedListener {
+        // 在后台线程回调
+        void onConverted(ChapterStore store);
+    }
+
+    public static File getStoreFile(Context context, String bookKey) {
+        return new File(new File(context.getFilesDir(), "chapter_store"), bookKey + ".ecs");
+    }
+
+    // 打开与书籍文件匹配的章节文件，不是本地文件或尚未转换时返回null
+    @Nullable
+    public static ChapterStore open(Context context, String bookKey, Uri bookUri) {
+        File bookFile = getLocalFile(bookUri);
+        if (bookFile == null) {
+            return null;
+        }
+        return ChapterStore.open(getStoreFile(context, bookKey), bookFile.length(), bookFile.lastModified());
+    }
+
+    // 在后台转换本地EPUB文件，已有最新的章节文件时直接跳过
+    public static void convertInBackground(Context context, String bookKey, Uri bookUri, @Nullable OnConvertedListener listener) {
+        File bookFile = getLocalFile(bookUri);
+        if (bookFile == null) {
+            return;
+        }
+        File storeFile = getStoreFile(context, bookKey);
+        synchronized (converting) {
+            if (!converting.add(storeFile.getPath())) {
+                Log.d(TAG, "convertInBackground: Already converting " + storeFile.getName());
+                return;
+            }
+        }
+        TaskScheduler.getInstance().execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.INDEXING, () -> {
+            try {
+                ChapterStore store = ChapterStore.open(storeFile, bookFile.length(), bookFile.lastModified());
+                if (store == null) {
+                    convert(bookKey, bookFile, storeFile);
+                    store = ChapterStore.open(storeFile, bookFile.length(), bookFile.lastModified());
+                }
+                if (store != null && listener != null) {
+                    listener.onConverted(store);
+                }
+            } catch (Exception | OutOfMemoryError e) {
+                // 转换失败不影响阅读，打开章节时继续解析XHTML
+                Log.e(TAG, "convertInBackground: Failed to convert " + bookFile.getName(), e);
+            } finally {
+                synchronized (converting) {
+                    converting.remove(storeFile.getPath());
+                }
+            }
+        });
+    }
+
+    // 书籍已被阅读页打开时共用缓存中的书籍，否则单独按需读取压缩包
+    private static void convert(String bookKey, File bookFile, File storeFile) throws IOException {
+        Book cachedBook = BookCache.getInstance().acquire(bookKey);
+        if (cachedBook != null) {
+            try {
+                convert(cachedBook, bookFile, storeFile);
+            } finally {
+                BookCache.getInstance().release(bookKey, cachedBook);
+            }
+            return;
+        }
+        try (ZipFile zipFile = new ZipFile(bookFile)) {
+            convert(new EpubReader().readEpubLazy(zipFile, "UTF-8"), bookFile, storeFile);
+        }
+    }
+
+    private static void convert(Book book, File bookFile, File storeFile) throws IOException {
+        List<SpineReference> spineReferences = book.getSpine().getSpineReferences();
+        Log.d(TAG, "convert: " + bookFile.getName() + ", chapters=" + spineReferences.size());
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_CONVERT);
+             ChapterStore.Writer writer = new ChapterStore.Writer(storeFile, bookFile.length(),
+                     bookFile.lastModified(), spineReferences.size())) {
+            section.setBytes(bookFile.length());
+            for (SpineReference spineReference : spineReferences) {
+                writer.write(toChapter(XhtmlDecoder.decode(spineReference.getResource(), SOURCE_RECORDER)));
+            }
+            writer.commit();
+        }
+        Log.d(TAG, "convert: Saved " + storeFile.getName() + ", size=" + storeFile.length());
+    }
+
+    // 尚未转换时直接解析章节得到纯文本，与转换后ChapterStore.readText的结果相同（不含插图占位字符）
+    public static String decodePlainText(Resource resource) throws IOException {
+        return toChapter(XhtmlDecoder.decode(resource, SOURCE_RECORDER)).getPlainText();
+    }
+
+    // 把XhtmlDecoder生成的样式转换为样式区间
+    static ChapterStore.Chapter toChapter(Spanned spanned) {
+        ChapterStore.Chapter.Builder builder = new ChapterStore.Chapter.Builder();
+        for (Object span : spanned.getSpans(0, spanned.length(), Object.class)) {
+            int start = spanned.getSpanStart(span);
+            int end = spanned.getSpanEnd(span);
+            if (span instanceof StyleSpan) {
+                int style = ((StyleSpan) span).getStyle();
+                if (style == Typeface.BOLD) {
+                    builder.addStyle(start, end, ChapterStore.STYLE_BOLD, 0);
+                } else if (style == Typeface.ITALIC) {
+                    builder.addStyle(start, end, ChapterStore.STYLE_ITALIC, 0);
+                }
+            } else if (span instanceof UnderlineSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_UNDERLINE, 0);
+            } else if (span instanceof StrikethroughSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_STRIKETHROUGH, 0);
+            } else if (span instanceof SuperscriptSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_SUPERSCRIPT, 0);
+            } else if (span instanceof SubscriptSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_SUBSCRIPT, 0);
+            } else if (span instanceof RelativeSizeSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_RELATIVE_SIZE,
+                        Float.floatToIntBits(((RelativeSizeSpan) span).getSizeChange()));
+            } else if (span instanceof TypefaceSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_MONOSPACE, 0);
+            } else if (span instanceof URLSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_URL, builder.addString(((URLSpan) span).getURL()));
+            } else if (span instanceof QuoteSpan) {
+                builder.addStyle(start, end, ChapterStore.STYLE_QUOTE, 0);
+            } else if (span instanceof ImageSpan) {
+                String source = ((ImageSpan) span).getSource();
+                if (source != null) {
+                    builder.addStyle(start, end, ChapterStore.STYLE_IMAGE, builder.addString(source));
+                }
+            }
+        }
+        return builder.build(spanned.toString());
+    }
+
+    // 按样式区间表生成Spanned，插图通过imageGetter获取
+    public static Spanned toSpanned(ChapterStore.Chapter chapter, @Nullable Html.ImageGetter imageGetter) {
+        SpannableString spanned = new SpannableString(chapter.text);
+        int length = chapter.text.length();
+        for (int i = 0; i < chapter.getStyleCount(); i++) {
+            int start = chapter.styles[i * 4];
+            int end = chapter.styles[i * 4 + 1];
+            if (end > length) {
+                continue;
+            }
+            Object span = createSpan(chapter.styles[i * 4 + 2], chapter.styles[i * 4 + 3], chapter.strings, imageGetter);
+            if (span != null) {
+                spanned.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        return spanned;
+    }
+
+    @Nullable
+    private static Object createSpan(int type, int arg, String[] strings, @Nullable Html.ImageGetter imageGetter) {
+        switch (type) {
+            case ChapterStore.STYLE_BOLD:
+                return new StyleSpan(Typeface.BOLD);
+            case ChapterStore.STYLE_ITALIC:
+                return new StyleSpan(Typeface.ITALIC);
+            case ChapterStore.STYLE_UNDERLINE:
+                return new UnderlineSpan();
+            case ChapterStore.STYLE_STRIKETHROUGH:
+                return new StrikethroughSpan();
+            case ChapterStore.STYLE_SUPERSCRIPT:
+                return new SuperscriptSpan();
+            case ChapterStore.STYLE_SUBSCRIPT:
+                return new SubscriptSpan();
+            case ChapterStore.STYLE_RELATIVE_SIZE:
+                return new RelativeSizeSpan(Float.intBitsToFloat(arg));
+            case ChapterStore.STYLE_MONOSPACE:
+                return new TypefaceSpan("monospace");
+            case ChapterStore.STYLE_URL:
+                return arg < strings.length ? new URLSpan(strings[arg]) : null;
+            case ChapterStore.STYLE_QUOTE:
+                return new QuoteSpan();
+            case ChapterStore.STYLE_IMAGE:
+                if (imageGetter == null || arg >= strings.length) {
+                    return null;
+                }
+                Drawable drawable = imageGetter.getDrawable(strings[arg]);
+                return drawable != null ? new ImageSpan(drawable, strings[arg]) : null;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static File getLocalFile(Uri bookUri) {
+        if (!"file".equals(bookUri.getScheme()) || bookUri.getPath() == null) {
+            return null;
+        }
+        File file = new File(bookUri.getPath());
+        return file.exists() ? file : null;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.myapplication2;
+
+import android.text.Layout;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 连续滚动模式的章节列表：只保存当前位置附近连续的几个章节，两端随滚动追加和移除
+// 每个列表项是一整章正文，排版参数从翻页模式的正文视图复制，预计算的文字可以直接使用
+public class ChapterStreamAdapter extends RecyclerView.Adapter<ChapterStreamAdapter.ChapterViewHolder> {
+    private static final String TAG = "ChapterStreamAdapter";
+
+    private final TextView styleSource;
+    private final ChapterCache chapterCache;
+    private final List<ChapterCache.Entry> entries = new ArrayList<>();
+
+    public ChapterStreamAdapter(TextView styleSource, ChapterCache chapterCache) {
+        this.styleSource = styleSource;
+        this.chapterCache = chapterCache;
+        setHasStableIds(true);
+    }
+
+    // 列表中第一个章节的序号，列表为空时返回-1
+    public int getFirstChapterIndex() {
+        return entries.isEmpty() ? -1 : entries.get(0).chapterIndex;
+    }
+
+    public int getLastChapterIndex() {
+        return entries.isEmpty() ? -1 : entries.get(entries.size() - 1).chapterIndex;
+    }
+
+    public int getChapterIndex(int position) {
+        return entries.get(position).chapterIndex;
+    }
+
+    // 在末尾追加下一章
+    public void append(ChapterCache.Entry entry) {
+        chapterCache.acquireDisplay(entry);
+        entries.add(entry);
+        notifyItemInserted(entries.size() - 1);
+    }
+
+    // 在开头插入上一章
+    public void prepend(ChapterCache.Entry entry) {
+        chapterCache.acquireDisplay(entry);
+        entries.add(0, entry);
+        notifyItemInserted(0);
+    }
+
+    public void removeFirst() {
+        ChapterCache.Entry entry = entries.remove(0);
+        notifyItemRemoved(0);
+        chapterCache.releaseDisplay(entry);
+        Log.d(TAG, "removeFirst: Evicted chapter " + entry.chapterIndex);
+    }
+
+    public void removeLast() {
+        ChapterCache.Entry entry = entries.remove(entries.size() - 1);
+        notifyItemRemoved(entries.size());
+        chapterCache.releaseDisplay(entry);
+        Log.d(TAG, "removeLast: Evicted chapter " + entry.chapterIndex);
+    }
+
+    // 清空列表，章节仍留在缓存中供翻页模式使用
+    public void clear() {
+        for (ChapterCache.Entry entry : entries) {
+            chapterCache.releaseDisplay(entry);
+        }
+        entries.clear();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ChapterViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        TextView textView = new TextView(parent.getContext());
+        textView.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        return new ChapterViewHolder(textView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ChapterViewHolder holder, int position) {
+        ChapterCache.Entry entry = entries.get(position);
+        applyStyle(holder.textView);
+        if (entry.imageGetter != null) {
+            // 插图解码完成后重绘显示这一章的列表项
+            entry.imageGetter.setTarget(holder.textView);
+        }
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_SET_TEXT)) {
+            section.setBytes(entry.content.length() * 2L);
+            if (entry.content instanceof PrecomputedTextCompat) {
+                try {
+                    TextViewCompat.setPrecomputedText(holder.textView, (PrecomputedTextCompat) entry.content);
+                    return;
+                } catch (IllegalArgumentException e) {
+                    Log.d(TAG, "onBindViewHolder: Text metrics changed, measuring on main thread");
+                }
+            }
+            holder.textView.setText(entry.content);
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull ChapterViewHolder holder) {
+        // 缓存中的列表项重新显示时不会重新绑定，颜色可能已经改变
+        holder.textView.setTextColor(styleSource.getCurrentTextColor());
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ChapterViewHolder holder) {
+        // 回收的列表项不再引用章节内容
+        holder.textView.setText(null);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return entries.get(position).chapterIndex;
+    }
+
+    @Override
+    public int getItemCount() {
+        return entries.size();
+    }
+
+    // 列表项顶部以上的区域换算为章节内的字符偏移
+    public static int getCharOffsetAt(TextView textView, int y) {
+        Layout layout = textView.getLayout();
+        if (layout == null) {
+            return 0;
+        }
+        int line = layout.getLineForVertical(Math.max(0, y - textView.getTotalPaddingTop()));
+        return layout.getLineStart(line);
+    }
+
+    // 章节内字符偏移所在行相对列表项顶部的位置，尚未布局时返回-1
+    public static int getOffsetTop(TextView textView, int charOffset) {
+        Layout layout = textView.getLayout();
+        if (layout == null) {
+            return -1;
+        }
+        int line = layout.getLineForOffset(Math.min(charOffset, textView.getText().length()));
+        return textView.getTotalPaddingTop() + layout.getLineTop(line);
+    }
+
+    // 与翻页模式的正文视图使用相同的字号、行距、字距、颜色和内边距
+    private void applyStyle(TextView textView) {
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, styleSource.getTextSize());
+        textView.setLineSpacing(styleSource.getLineSpacingExtra(), styleSource.getLineSpacingMultiplier());
+        textView.setLetterSpacing(styleSource.getLetterSpacing());
+        textView.setTypeface(styleSource.getTypeface());
+        textView.setTextColor(styleSource.getCurrentTextColor());
+        textView.setPadding(styleSource.getPaddingLeft(), styleSource.getPaddingTop(),
+                styleSource.getPaddingRight(), styleSource.getPaddingBottom());
+        textView.setBreakStrategy(styleSource.getBreakStrategy());
+        textView.setHyphenationFrequency(styleSource.getHyphenationFrequency());
+    }
+
+    static class ChapterViewHolder extends RecyclerView.ViewHolder {
+        final TextView textView;
+
+        ChapterViewHolder(@NonNull TextView textView) {
+            super(textView);
+            this.textView = textView;
+        }
+    }
+}
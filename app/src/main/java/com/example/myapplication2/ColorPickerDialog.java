@@ -4,20 +4,32 @@ import android.app.Dialog;
 import android.content.Context;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.GradientDrawable;
+import android.util.TypedValue;
+import android.view.Gravity;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.CheckBox;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.util.List;
+
 public class ColorPickerDialog extends Dialog {
     private OnColorSelectedListener listener;
+    private OnColorPreviewListener previewListener;
+    private OnPresetListener presetListener;
     private int selectedColor;
     private ColorPickerView colorPickerView;
     private Button confirmButton;
     private Button cancelButton;
+    private Button savePresetButton;
     private CheckBox textColorCheckBox;
+    private LinearLayout presetContainer;
+    // 确认或选择了预设，关闭时不再撤销预览
+    private boolean committed = false;
 
     public ColorPickerDialog(Context context, int initialColor) {
         super(context);
@@ -53,6 +65,8 @@ public class ColorPickerDialog extends Dialog {
         confirmButton = findViewById(R.id.confirmButton);
         cancelButton = findViewById(R.id.cancelButton);
         textColorCheckBox = findViewById(R.id.textColorCheckBox);
+        savePresetButton = findViewById(R.id.savePresetButton);
+        presetContainer = findViewById(R.id.presetContainer);
 
         // 设置按钮样式
         // 使用系统默认按钮样式，避免自定义背景影响点击效果
@@ -63,8 +77,11 @@ public class ColorPickerDialog extends Dialog {
             @Override
             public void onColorSelected(int color) {
                 selectedColor = color;
+                // 拖动时实时预览
+                dispatchPreview();
             }
         });
+        textColorCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> dispatchPreview());
         
         // 初始化颜色选择器的选中颜色
         colorPickerView.setSelectedColor(selectedColor);
@@ -74,6 +91,7 @@ public class ColorPickerDialog extends Dialog {
         confirmButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                committed = true;
                 if (listener != null) {
                     boolean changeTextColor = textColorCheckBox.isChecked();
                     listener.onColorSelected(colorPickerView.getSelectedColor(), changeTextColor);
@@ -82,6 +100,19 @@ public class ColorPickerDialog extends Dialog {
             }
         });
 
+        savePresetButton.setOnClickListener(v -> {
+            if (presetListener != null) {
+                presetListener.onSavePreset(colorPickerView.getSelectedColor(), textColorCheckBox.isChecked());
+            }
+        });
+
+        // 取消或点击外部关闭时恢复原来的颜色
+        setOnDismissListener(dialog -> {
+            if (!committed && previewListener != null) {
+                previewListener.onPreviewCancelled();
+            }
+        });
+
         cancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -95,7 +126,66 @@ public class ColorPickerDialog extends Dialog {
         this.listener = listener;
     }
 
+    public void setOnColorPreviewListener(OnColorPreviewListener previewListener) {
+        this.previewListener = previewListener;
+    }
+
+    // 显示主题预设，预设列表变化后再次调用刷新
+    public void setPresets(List<ReaderTheme> presets, OnPresetListener presetListener) {
+        this.presetListener = presetListener;
+        presetContainer.removeAllViews();
+        int size = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 44, getContext().getResources().getDisplayMetrics());
+        int margin = size / 5;
+        for (ReaderTheme preset : presets) {
+            // 圆形色块，用预设的字体颜色显示一个字
+            TextView swatch = new TextView(getContext());
+            GradientDrawable background = new GradientDrawable();
+            background.setShape(GradientDrawable.OVAL);
+            background.setColor(preset.backgroundColor);
+            background.setStroke(2, Color.LTGRAY);
+            swatch.setBackground(background);
+            swatch.setText("文");
+            swatch.setTextColor(preset.textColor);
+            swatch.setGravity(Gravity.CENTER);
+            LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(size, size);
+            layoutParams.setMarginEnd(margin);
+            swatch.setLayoutParams(layoutParams);
+            swatch.setOnClickListener(v -> {
+                committed = true;
+                presetListener.onPresetSelected(preset);
+                dismiss();
+            });
+            swatch.setOnLongClickListener(v -> {
+                presetListener.onPresetRemoved(preset);
+                return true;
+            });
+            presetContainer.addView(swatch);
+        }
+    }
+
+    private void dispatchPreview() {
+        if (previewListener != null) {
+            previewListener.onColorPreview(selectedColor, textColorCheckBox.isChecked());
+        }
+    }
+
     public interface OnColorSelectedListener {
         void onColorSelected(int color, boolean changeTextColor);
     }
+
+    // 选择过程中的预览，只改变绘制效果，确认后才真正应用
+    public interface OnColorPreviewListener {
+        void onColorPreview(int color, boolean changeTextColor);
+
+        void onPreviewCancelled();
+    }
+
+    public interface OnPresetListener {
+        void onPresetSelected(ReaderTheme preset);
+
+        // 把当前选择的颜色保存为预设
+        void onSavePreset(int color, boolean changeTextColor);
+
+        void onPresetRemoved(ReaderTheme preset);
+    }
 }
\ No newline at end of file
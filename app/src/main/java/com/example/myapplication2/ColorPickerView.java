@@ -2,10 +2,10 @@ package com.example.myapplication2;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Shader;
 import android.graphics.SweepGradient;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
@@ -14,18 +14,26 @@ import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+// 色环按尺寸绘制一次到位图，之后每帧只贴图和画指示器，触摸时直接从位图取色；绘制过程中不分配对象
 public class ColorPickerView extends View {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     private Paint paint;
     private Paint touchPaint;
+    private Paint innerTouchPaint; // 内圈指示器画笔
+    private Paint centerPaint; // 中心选中颜色画笔
     private Paint textPaint; // 添加文本画笔
     private int[] colors;
+    private Bitmap wheelBitmap; // 缓存的色环，尺寸变化时重建
+    private float wheelLeft, wheelTop; // 色环位图在视图中的位置
+    private float textY; // 十六进制码的基线位置
     private boolean isTracking = false;
     private OnColorSelectedListener listener;
     private float centerX, centerY;
     private float radius;
     private float touchX, touchY;
     private int selectedColor = Color.RED;
-    private String hexColor = "#FF0000"; // 添加十六进制颜色字符串
+    private final char[] hexColor = {'#', 'F', 'F', '0', '0', '0', '0'}; // 十六进制颜色，拖动时原地更新
 
     public ColorPickerView(Context context) {
         super(context);
@@ -58,6 +66,14 @@ public class ColorPickerView extends View {
         touchPaint.setStyle(Paint.Style.STROKE);
         touchPaint.setStrokeWidth(8f);
         touchPaint.setColor(Color.WHITE);
+
+        innerTouchPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        innerTouchPaint.setStyle(Paint.Style.STROKE);
+        innerTouchPaint.setStrokeWidth(4f);
+        innerTouchPaint.setColor(Color.BLACK);
+
+        centerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        centerPaint.setStyle(Paint.Style.FILL);
         
         // 绘制文本的画笔
         textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -73,25 +89,71 @@ public class ColorPickerView extends View {
         centerX = w / 2f;
         centerY = h / 2f;
         radius = Math.min(w, h) / 2f * 0.9f; // 留出一些边距
+
+        // 在左下角绘制颜色十六进制码，字号固定，基线只需随高度计算一次
+        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
+        textY = h - 20f - fontMetrics.bottom; // 下边距，考虑字体基线
+        // 确保文本在视图范围内
+        if (textY > h - fontMetrics.bottom) {
+            textY = h - fontMetrics.bottom;
+        }
+        if (textY < -fontMetrics.top) {
+            textY = -fontMetrics.top;
+        }
+
+        buildWheelBitmap();
         
         // 初始化触摸点位置
         updateTouchPositionFromColor();
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (wheelBitmap == null && radius > 0) {
+            buildWheelBitmap();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // 对话框关闭后立即释放位图
+        if (wheelBitmap != null) {
+            wheelBitmap.recycle();
+            wheelBitmap = null;
+        }
+    }
+
+    // 把色环绘制到位图，只在尺寸变化或重新显示时执行
+    private void buildWheelBitmap() {
+        if (wheelBitmap != null) {
+            wheelBitmap.recycle();
+            wheelBitmap = null;
+        }
+        int size = (int) Math.ceil(radius * 2);
+        if (size <= 0) {
+            return;
+        }
+        wheelBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        wheelLeft = centerX - size / 2f;
+        wheelTop = centerY - size / 2f;
+        float wheelCenter = size / 2f;
+        paint.setShader(new SweepGradient(wheelCenter, wheelCenter, colors, null));
+        new Canvas(wheelBitmap).drawCircle(wheelCenter, wheelCenter, radius, paint);
+        paint.setShader(null);
+    }
+
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
         super.onDraw(canvas);
 
-        // 创建圆盘渐变
-        @SuppressLint("DrawAllocation") Shader shader = new SweepGradient(centerX, centerY, colors, null);
-        paint.setShader(shader);
-
-        // 绘制圆盘
-        canvas.drawCircle(centerX, centerY, radius, paint);
+        // 绘制缓存的圆盘
+        if (wheelBitmap != null) {
+            canvas.drawBitmap(wheelBitmap, wheelLeft, wheelTop, null);
+        }
 
-        // 绘制中心白色圆圈
-        @SuppressLint("DrawAllocation") Paint centerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        centerPaint.setStyle(Paint.Style.FILL);
+        // 绘制中心选中颜色的圆圈
         centerPaint.setColor(selectedColor);
         canvas.drawCircle(centerX, centerY, radius / 8f, centerPaint);
 
@@ -101,26 +163,11 @@ public class ColorPickerView extends View {
             canvas.drawCircle(touchX, touchY, 25f, touchPaint);
             
             // 绘制内圈指示器
-            @SuppressLint("DrawAllocation") Paint innerTouchPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            innerTouchPaint.setStyle(Paint.Style.STROKE);
-            innerTouchPaint.setStrokeWidth(4f);
-            innerTouchPaint.setColor(Color.BLACK);
             canvas.drawCircle(touchX, touchY, 15f, innerTouchPaint);
         }
         
         // 在圆盘左下角绘制颜色十六进制码
-        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
-        // 计算文本位置（左下角）
-        float textX = 20f; // 左边距
-        float textY = getHeight() - 20f - fontMetrics.bottom; // 下边距，考虑字体基线
-        // 确保文本在视图范围内
-        if (textY > getHeight() - fontMetrics.bottom) {
-            textY = getHeight() - fontMetrics.bottom;
-        }
-        if (textY < -fontMetrics.top) {
-            textY = -fontMetrics.top;
-        }
-        canvas.drawText(hexColor, textX, textY, textPaint);
+        canvas.drawText(hexColor, 0, hexColor.length, 20f, textY, textPaint);
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -165,44 +212,68 @@ public class ColorPickerView extends View {
     }
 
     private void updateColor(float x, float y) {
-        // 计算触摸点的角度
+        // 更新触摸点位置，确保在圆盘范围内；边缘的抗锯齿像素是半透明的，向内收缩一个像素取色
         float dx = x - centerX;
         float dy = y - centerY;
-        double angle = Math.atan2(dy, dx);
-        
-        // 将角度转换为0-360度
-        float degrees = (float) Math.toDegrees(angle);
-        if (degrees < 0) {
-            degrees += 360f;
-        }
-        
-        // 根据角度计算颜色
-        selectedColor = getColorAtAngle(degrees);
-        
-        // 更新十六进制颜色字符串
-        hexColor = String.format("#%06X", (0xFFFFFF & selectedColor));
-        
-        // 更新触摸点位置，确保在圆盘范围内
         float distance = (float) Math.sqrt(dx * dx + dy * dy);
-        if (distance > radius) {
+        float maxDistance = Math.max(0f, radius - 1.5f);
+        if (distance > maxDistance) {
             // 如果触摸点超出圆盘，将其投影到圆盘边缘
-            float ratio = radius / distance;
-            touchX = centerX + dx * ratio;
-            touchY = centerY + dy * ratio;
-        } else {
-            touchX = x;
-            touchY = y;
+            float ratio = maxDistance / distance;
+            x = centerX + dx * ratio;
+            y = centerY + dy * ratio;
         }
-        
-        // 通知颜色选择监听器
-        if (listener != null) {
-            listener.onColorSelected(selectedColor);
+        if (x == touchX && y == touchY) {
+            // 位置没有变化，不重绘
+            return;
+        }
+        touchX = x;
+        touchY = y;
+
+        // 从缓存的色环取色
+        int color = getColorAt(x, y);
+        if (color != selectedColor) {
+            selectedColor = color;
+            // 更新十六进制颜色字符串
+            updateHexColor();
+
+            // 通知颜色选择监听器
+            if (listener != null) {
+                listener.onColorSelected(selectedColor);
+            }
         }
         
         // 重绘视图
         invalidate();
     }
 
+    // 触摸点对应的色环像素，位图不可用时按角度计算
+    private int getColorAt(float x, float y) {
+        if (wheelBitmap != null) {
+            int px = Math.min(Math.max((int) (x - wheelLeft), 0), wheelBitmap.getWidth() - 1);
+            int py = Math.min(Math.max((int) (y - wheelTop), 0), wheelBitmap.getHeight() - 1);
+            int color = wheelBitmap.getPixel(px, py);
+            if (Color.alpha(color) == 0xFF) {
+                return color;
+            }
+        }
+        // 将角度转换为0-360度
+        float degrees = (float) Math.toDegrees(Math.atan2(y - centerY, x - centerX));
+        if (degrees < 0) {
+            degrees += 360f;
+        }
+        return getColorAtAngle(degrees);
+    }
+
+    // 把选中颜色写入十六进制字符数组
+    private void updateHexColor() {
+        int rgb = selectedColor & 0xFFFFFF;
+        for (int i = 6; i > 0; i--) {
+            hexColor[i] = HEX_DIGITS[rgb & 0xF];
+            rgb >>= 4;
+        }
+    }
+
     private int getColorAtAngle(float angle) {
         // 根据角度在色环中插值计算颜色
         float unit = angle / (360f / (colors.length - 1));
@@ -230,7 +301,7 @@ public class ColorPickerView extends View {
         // 简化实现：将触摸点放在圆盘右侧（红色区域）
         touchX = centerX + radius;
         touchY = centerY;
-        hexColor = String.format("#%06X", (0xFFFFFF & selectedColor));
+        updateHexColor();
         invalidate();
     }
 
@@ -250,7 +321,6 @@ public class ColorPickerView extends View {
     // 设置选中的颜色并更新触摸点位置
     public void setSelectedColor(int color) {
         this.selectedColor = color;
-        hexColor = String.format("#%06X", (0xFFFFFF & selectedColor));
         updateTouchPositionFromColor();
     }
 }
\ No newline at end of file
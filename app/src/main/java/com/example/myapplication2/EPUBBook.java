@@ -3,6 +3,7 @@ package com.example.myapplication2;
 import android.net.Uri;
 
 public class EPUBBook {
+    private long id; // 加入书架时分配的编号，文件改名后保持不变
     private Uri uri;
     private String title; // 移除final修饰符，使其可以被修改
     private String author;
@@ -89,6 +90,14 @@ public class EPUBBook {
         this.finalChapter = finalChapter;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public Uri getUri() {
         return uri;
     }
@@ -0,0 +1,261 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Html;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Resource;
+
+// 为Html.fromHtml提供EPUB内嵌插图
+// 同步阶段只读取图片头信息确定占位尺寸，真正的解码在后台按视口宽度降采样完成后再替换占位图
+public class EpubImageGetter implements Html.ImageGetter {
+    private static final String TAG = "EpubImageGetter";
+
+    private final Book book;
+    private final String baseHref;
+    private volatile TextView target; // 插图解码完成后需要重绘的视图
+    private final int maxWidth;
+    private final float density;
+    private final ImageCache imageCache;
+    private final BitmapPool bitmapPool;
+    private final TaskScheduler.Priority decodePriority;
+    private final List<String> acquiredKeys = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean released = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public EpubImageGetter(Book book, String baseHref, TextView target, int maxWidth, ImageCache imageCache, BitmapPool bitmapPool,
+                           TaskScheduler.Priority decodePriority) {
+        this.book = book;
+        this.baseHref = baseHref;
+        this.target = target;
+        this.maxWidth = maxWidth;
+        this.density = target.getResources().getDisplayMetrics().density;
+        this.imageCache = imageCache;
+        this.bitmapPool = bitmapPool;
+        this.decodePriority = decodePriority;
+    }
+
+    @Override
+    public Drawable getDrawable(String source) {
+        String href = resolveHref(baseHref, source);
+        Resource resource = href != null ? book.getResources().getByHref(href) : null;
+        if (resource == null) {
+            Log.w(TAG, "getDrawable: Image resource not found, src=" + source + ", base=" + baseHref);
+            return new AsyncImageDrawable();
+        }
+
+        String key = href + "@" + maxWidth;
+        AsyncImageDrawable drawable = new AsyncImageDrawable();
+        try {
+            byte[] data = resource.getData();
+            if (data == null || data.length == 0) {
+                return drawable;
+            }
+
+            // 只解析图片头，获取原始尺寸
+            BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+            boundsOptions.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, boundsOptions);
+            if (boundsOptions.outWidth <= 0 || boundsOptions.outHeight <= 0) {
+                Log.w(TAG, "getDrawable: Unsupported image format, href=" + href);
+                return drawable;
+            }
+
+            // 按屏幕密度放大，但不超过视口宽度
+            int displayWidth = Math.min(Math.round(boundsOptions.outWidth * density), maxWidth);
+            int displayHeight = Math.round((float) boundsOptions.outHeight * displayWidth / boundsOptions.outWidth);
+            drawable.setBounds(0, 0, displayWidth, displayHeight);
+
+            // 命中内存缓存时直接使用
+            Bitmap cached = imageCache.getAndAcquire(key);
+            if (cached != null) {
+                acquiredKeys.add(key);
+                drawable.setBitmap(cached);
+                return drawable;
+            }
+
+            int sampleSize = calculateInSampleSize(boundsOptions.outWidth, displayWidth);
+            TaskScheduler.getInstance().execute(TaskScheduler.Pool.CPU, decodePriority,
+                    () -> decodeInBackground(key, data, boundsOptions, sampleSize, drawable));
+        } catch (Exception e) {
+            Log.e(TAG, "getDrawable: Error reading image " + href, e);
+        }
+        return drawable;
+    }
+
+    // 章节内容显示到另一个TextView时（如连续滚动模式的列表项）更新重绘目标
+    public void setTarget(TextView target) {
+        this.target = target;
+    }
+
+    // 章节内容被替换后调用，释放本章节持有的位图引用
+    public void release() {
+        released = true;
+        synchronized (acquiredKeys) {
+            for (String key : acquiredKeys) {
+                imageCache.release(key);
+            }
+            acquiredKeys.clear();
+        }
+    }
+
+    private void decodeInBackground(String key, byte[] data, BitmapFactory.Options boundsOptions, int sampleSize, AsyncImageDrawable drawable) {
+        if (released) {
+            return;
+        }
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            options.inMutable = true;
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+            // 尝试复用位图池中的内存
+            int sampledWidth = (boundsOptions.outWidth + sampleSize - 1) / sampleSize;
+            int sampledHeight = (boundsOptions.outHeight + sampleSize - 1) / sampleSize;
+            options.inBitmap = bitmapPool.get(sampledWidth, sampledHeight, options.inPreferredConfig);
+
+            Bitmap bitmap;
+            try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.IMAGE_DECODE)) {
+                section.setBytes(data.length);
+                try {
+                    bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                } catch (IllegalArgumentException e) {
+                    // 复用的位图不满足解码要求时放回池中并重新分配
+                    bitmapPool.put(options.inBitmap);
+                    options.inBitmap = null;
+                    bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                }
+            }
+            if (bitmap == null) {
+                bitmapPool.put(options.inBitmap);
+                Log.w(TAG, "decodeInBackground: Failed to decode " + key);
+                return;
+            }
+
+            // 同一张插图已被另一次解码放入缓存时使用缓存中的位图
+            Bitmap decoded = imageCache.putAndAcquire(key, bitmap);
+            // 不用View.post：视图未附加到窗口时投递的任务可能永远不执行，缓存中的引用就无法释放
+            mainHandler.post(() -> {
+                if (released) {
+                    imageCache.release(key);
+                    return;
+                }
+                // 交给占位图后由release()释放引用
+                acquiredKeys.add(key);
+                drawable.setBitmap(decoded);
+                TextView view = target;
+                if (view.isAttachedToWindow()) {
+                    // 占位图尺寸已确定，只需重绘无需重新布局
+                    view.invalidate();
+                }
+            });
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "decodeInBackground: Out of memory decoding " + key, e);
+        }
+    }
+
+    // 计算不低于显示宽度的最大2的幂降采样倍数
+    private static int calculateInSampleSize(int sourceWidth, int displayWidth) {
+        int sampleSize = 1;
+        while (displayWidth > 0 && sourceWidth / (sampleSize * 2) >= displayWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // 将<img>的src相对于章节路径解析为书内资源的href
+    @Nullable
+    static String resolveHref(String baseHref, String source) {
+        if (source == null || source.isEmpty() || source.startsWith("data:") || source.contains("://")) {
+            return null;
+        }
+        int fragmentIndex = source.indexOf('#');
+        if (fragmentIndex >= 0) {
+            source = source.substring(0, fragmentIndex);
+        }
+        int queryIndex = source.indexOf('?');
+        if (queryIndex >= 0) {
+            source = source.substring(0, queryIndex);
+        }
+        source = Uri.decode(source);
+
+        String path;
+        if (source.startsWith("/")) {
+            path = source.substring(1);
+        } else {
+            int slashIndex = baseHref != null ? baseHref.lastIndexOf('/') : -1;
+            path = slashIndex >= 0 ? baseHref.substring(0, slashIndex + 1) + source : source;
+        }
+
+        // 规范化路径中的 . 和 ..
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else {
+                segments.add(segment);
+            }
+        }
+        return segments.isEmpty() ? null : android.text.TextUtils.join("/", segments);
+    }
+
+    // 解码完成前显示占位色块，完成后绘制位图
+    static class AsyncImageDrawable extends Drawable {
+        private static final int PLACEHOLDER_COLOR = 0x20000000;
+
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private Bitmap bitmap;
+
+        void setBitmap(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            if (bitmap != null && !bitmap.isRecycled()) {
+                canvas.drawBitmap(bitmap, null, getBounds(), paint);
+            } else if (!getBounds().isEmpty()) {
+                paint.setColor(PLACEHOLDER_COLOR);
+                canvas.drawRect(getBounds(), paint);
+            }
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(@Nullable ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 已解码插图的内存缓存，按字节数限制大小
+// 正在显示的位图会被引用计数，只有既不在缓存中也没有引用时才归还到位图池
+// 每个键同一时间只对应一个位图，同一张插图被并发解码两次时保留先放入的位图
+public class ImageCache implements MemoryGovernor.Trimmable {
+    private final LruCache<String, Bitmap> memoryCache;
+    // 缓存中的位图，查询时不改变LRU顺序
+    private final Map<String, Bitmap> cachedBitmaps = new HashMap<>();
+    private final Map<String, Bitmap> inUseBitmaps = new HashMap<>();
+    private final Map<String, Integer> refCounts = new HashMap<>();
+    private final BitmapPool bitmapPool;
+
+    public ImageCache(int maxBytes, BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+        this.memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (cachedBitmaps.get(key) == oldValue) {
+                    cachedBitmaps.remove(key);
+                }
+                recycleIfUnused(key, oldValue);
+            }
+        };
+    }
+
+    // 获取缓存的位图并增加引用计数，已移出缓存但仍在显示的位图也可以直接使用
+    public synchronized Bitmap getAndAcquire(String key) {
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap == null) {
+            bitmap = inUseBitmaps.get(key);
+        }
+        if (bitmap != null) {
+            acquire(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // 放入缓存并增加引用计数，保证位图在被使用期间不会被复用
+    // 返回实际使用的位图：键已有位图（仍在缓存中或正在显示）时增加它的引用，传入的位图归还到位图池
+    public synchronized Bitmap putAndAcquire(String key, Bitmap bitmap) {
+        Bitmap existing = inUseBitmaps.get(key);
+        if (existing == null) {
+            existing = cachedBitmaps.get(key);
+        }
+        if (existing != null && existing != bitmap) {
+            bitmapPool.put(bitmap);
+            bitmap = existing;
+        }
+        acquire(key, bitmap);
+        if (cachedBitmaps.get(key) != bitmap) {
+            cachedBitmaps.put(key, bitmap);
+            memoryCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // 释放一次引用
+    public synchronized void release(String key) {
+        Integer count = refCounts.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            refCounts.put(key, count - 1);
+            return;
+        }
+        refCounts.remove(key);
+        Bitmap bitmap = inUseBitmaps.remove(key);
+        // 已被移出缓存的位图此时才能安全地复用
+        if (bitmap != null && cachedBitmaps.get(key) != bitmap) {
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    public synchronized void clear() {
+        memoryCache.evictAll();
+    }
+
+    // 按比例缩减缓存，正在显示的位图仍被引用，不会被复用
+    @Override
+    public synchronized void trim(float keepFraction) {
+        memoryCache.trimToSize((int) (memoryCache.maxSize() * keepFraction));
+    }
+
+    public synchronized int size() {
+        return memoryCache.size();
+    }
+
+    private void acquire(String key, Bitmap bitmap) {
+        Integer count = refCounts.get(key);
+        refCounts.put(key, count == null ? 1 : count + 1);
+        inUseBitmaps.put(key, bitmap);
+    }
+
+    private synchronized void recycleIfUnused(String key, Bitmap bitmap) {
+        if (inUseBitmaps.get(key) != bitmap) {
+            bitmapPool.put(bitmap);
+        }
+    }
+}
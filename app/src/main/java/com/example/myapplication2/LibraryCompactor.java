@@ -0,0 +1,148 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Set;
+
+// 清理已不在书架上的书籍留下的状态：阅读进度中的键、书架设置中的旧键、TXT索引、章节文件和TXT副本
+// 这些状态都按LibraryRepository.getStateKey命名，与书架上现有书籍的键逐一核对，返回回收的字节数
+// 在后台线程执行
+class LibraryCompactor {
+    private static final String TAG = "LibraryCompactor";
+    // 阅读进度中每本书的键：键本身（当前章节）以及以下后缀
+    private static final String[] PROGRESS_SUFFIXES = {"_offset", "_total"};
+    // 最近修改过的附属文件可能正在写入，或属于不在书架上但正在阅读的书籍，暂不清理
+    private static final long FILE_GRACE_MS = 10 * 60 * 1000;
+
+    private LibraryCompactor() {
+    }
+
+    /**
+     * @param liveKeys 书架上各书籍的状态键
+     * @param firstUnassignedId 开始清理时尚未分配的第一个编号，之后新加入的书籍不受影响
+     * @return 回收的字节数
+     */
+    static long compact(Context context, Set<String> liveKeys, long firstUnassignedId) {
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.LIBRARY_COMPACT)) {
+            long reclaimed = compactReadingProgress(context, liveKeys, firstUnassignedId)
+                    + compactBookList(context)
+                    + compactSidecars(context, liveKeys);
+            section.setBytes(reclaimed);
+            Log.d(TAG, "compact: Reclaimed " + reclaimed + " bytes, live books=" + liveKeys.size());
+            return reclaimed;
+        }
+    }
+
+    // 阅读进度文件中还保存着阅读设置和不在书架上的书籍的进度，只移除能确定属于已删除书籍的键
+    private static long compactReadingProgress(Context context, Set<String> liveKeys, long firstUnassignedId) {
+        SharedPreferences prefs = context.getSharedPreferences(LibraryRepository.READING_PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        int removed = 0;
+        for (String key : prefs.getAll().keySet()) {
+            String base = stripProgressSuffix(key);
+            boolean orphan;
+            if (isBookId(base)) {
+                orphan = !liveKeys.contains(base) && Long.parseLong(base) < firstUnassignedId;
+            } else {
+                // 旧版本按URI保存的进度，书架上的书籍分配编号时已经迁移
+                orphan = base.startsWith("file:") || base.startsWith("content:");
+            }
+            if (orphan) {
+                editor.remove(key);
+                removed++;
+            }
+        }
+        return commit(context, LibraryRepository.READING_PREFS_NAME, editor, removed);
+    }
+
+    // 书架设置文件中只应有书籍列表和编号等少数几个键，其余是旧版本留下的零散键
+    private static long compactBookList(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(LibraryRepository.PREFS_NAME, Context.MODE_PRIVATE);
+        if (!prefs.getBoolean(LibraryRepository.MIGRATED_KEY, false)) {
+            // 旧进度尚未合并，零散键还有用
+            return 0;
+        }
+        SharedPreferences.Editor editor = prefs.edit();
+        int removed = 0;
+        for (String key : prefs.getAll().keySet()) {
+            if (!key.equals(LibraryRepository.BOOK_LIST_KEY) && !key.equals(LibraryRepository.MIGRATED_KEY)
+                    && !key.equals(LibraryRepository.NEXT_BOOK_ID_KEY)) {
+                editor.remove(key);
+                removed++;
+            }
+        }
+        return commit(context, LibraryRepository.PREFS_NAME, editor, removed);
+    }
+
+    // 附属文件都可以重新生成，不属于书架上书籍的一律删除，包括写入中途失败留下的临时文件
+    private static long compactSidecars(Context context, Set<String> liveKeys) {
+        long reclaimed = 0;
+        long now = System.currentTimeMillis();
+        for (String[] sidecar : LibraryRepository.SIDECAR_DIRECTORIES) {
+            reclaimed += compactDirectory(new File(context.getFilesDir(), sidecar[0]), liveKeys, now);
+        }
+        for (String[] sidecar : LibraryRepository.CACHE_SIDECAR_DIRECTORIES) {
+            reclaimed += compactDirectory(new File(context.getCacheDir(), sidecar[0]), liveKeys, now);
+        }
+        return reclaimed;
+    }
+
+    private static long compactDirectory(File directory, Set<String> liveKeys, long now) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long reclaimed = 0;
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.indexOf('.');
+            String key = dot >= 0 ? name.substring(0, dot) : name;
+            if (liveKeys.contains(key) || now - file.lastModified() < FILE_GRACE_MS) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                reclaimed += length;
+                Log.d(TAG, "compactDirectory: Deleted " + directory.getName() + "/" + name);
+            }
+        }
+        return reclaimed;
+    }
+
+    // 同步写入，并以SharedPreferences文件写入前后的大小差作为回收的字节数
+    private static long commit(Context context, String prefsName, SharedPreferences.Editor editor, int removed) {
+        if (removed == 0) {
+            return 0;
+        }
+        File prefsFile = new File(new File(context.getApplicationInfo().dataDir, "shared_prefs"), prefsName + ".xml");
+        long before = prefsFile.length();
+        editor.commit();
+        long reclaimed = Math.max(0, before - prefsFile.length());
+        Log.d(TAG, "commit: Removed " + removed + " keys from " + prefsName + ", " + reclaimed + " bytes");
+        return reclaimed;
+    }
+
+    private static String stripProgressSuffix(String key) {
+        for (String suffix : PROGRESS_SUFFIXES) {
+            if (key.endsWith(suffix)) {
+                return key.substring(0, key.length() - suffix.length());
+            }
+        }
+        return key;
+    }
+
+    private static boolean isBookId(String key) {
+        if (key.isEmpty() || key.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) < '0' || key.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,687 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// 书架数据的唯一来源：进程内只加载一次书籍列表，书架页和阅读页都通过这里读取和修改
+// 每次修改都按位置通知监听者，书架页只刷新变化的条目；连续的进度更新合并后再写入SharedPreferences
+// 启动时先同步读取最近阅读的几本书的快照用于首帧显示，完整列表在后台加载，加载完成前的修改排队到加载完成后执行
+// 每本书加入书架时分配一个递增的编号，阅读进度、共享缓存和附属文件都按编号区分，书籍文件改名后不会丢失
+// 只在进程启动时于后台检查一次书籍文件是否存在，之后书籍目录的变化由BooksDirectoryWatcher增量更新到书架
+// 所有方法都在主线程调用
+public class LibraryRepository {
+    private static final String TAG = "LibraryRepository";
+    public static final String PREFS_NAME = "BookList";
+    static final String BOOK_LIST_KEY = "books";
+    // 阅读进度曾经单独保存在阅读页的SharedPreferences中，首次加载时合并一次
+    static final String MIGRATED_KEY = "progressMerged";
+    static final String READING_PREFS_NAME = "ReadingProgress";
+    // 下一个可分配的书籍编号
+    static final String NEXT_BOOK_ID_KEY = "nextBookId";
+    // 按编号命名的附属文件所在目录和扩展名
+    static final String[][] SIDECAR_DIRECTORIES = {{"txt_index", ".idx"}, {"chapter_store", ".ecs"}};
+    // 缓存目录中按编号命名的附属文件：不能定位的TXT来源的副本
+    static final String[][] CACHE_SIDECAR_DIRECTORIES = {{"txt_stream", ".txt"}};
+    // 连续的进度更新合并为一次写入
+    private static final long SAVE_DELAY_MS = 1000;
+    // 首帧显示的书籍快照，只保存最近阅读的一屏书籍
+    private static final String SNAPSHOT_FILE_NAME = "library_snapshot.json";
+    private static final int SNAPSHOT_SIZE = 20;
+    private static final Charset SNAPSHOT_CHARSET = Charset.forName("UTF-8");
+
+    private static LibraryRepository instance;
+
+    // 书架的变化，位置是变化发生后getBooks()中的位置（移除时为移除前的位置）
+    public interface Listener {
+        void onBookInserted(int position);
+
+        void onBookRemoved(int position);
+
+        void onBookChanged(int position);
+
+        void onBookMoved(int fromPosition, int toPosition);
+
+        // 整个列表重新加载
+        void onLibraryReloaded();
+    }
+
+    private final Context context;
+    private final SharedPreferences sharedPreferences;
+    private final File booksDirectory;
+    private final BooksDirectoryWatcher booksDirectoryWatcher;
+    // 应用自身正在复制或重命名的文件，监听到的变化由发起操作的一方处理
+    private final Set<String> changingFiles = new HashSet<>();
+    // 按最后阅读时间降序排列，最近阅读的在前
+    private final List<EPUBBook> books = new ArrayList<>();
+    private final LongSparseArray<EPUBBook> booksById = new LongSparseArray<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable saveRunnable = this::save;
+    private boolean savePending = false;
+    private long nextBookId = 1;
+    // 清理已删除书籍状态的任务是否正在执行
+    private boolean compactionRunning = false;
+    // 已移出书架但还可能恢复的书籍（如撤销时间内删除的书籍）的状态键，清理时视为仍在书架上
+    private final Set<String> retainedStateKeys = new HashSet<>();
+    // 完整列表是否已加载，未加载时books中是快照
+    private boolean loaded = false;
+    // 每次加载递增，丢弃被reload取代的加载结果
+    private int loadGeneration = 0;
+    // 完整列表加载完成后执行的操作
+    private final List<Runnable> pendingActions = new ArrayList<>();
+    // 最近写入的快照内容，没有变化时不重复写入
+    private String snapshotJson;
+
+    private LibraryRepository(Context context) {
+        this.context = context;
+        this.sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.booksDirectory = new File(context.getFilesDir(), "books");
+        this.booksDirectoryWatcher = new BooksDirectoryWatcher(booksDirectory, new BooksDirectoryWatcher.Callback() {
+            @Override
+            public void onBookFileAdded(String fileName) {
+                onBookFileEvent(fileName, true);
+            }
+
+            @Override
+            public void onBookFileRemoved(String fileName) {
+                onBookFileEvent(fileName, false);
+            }
+        });
+        loadSnapshot();
+        startLoad();
+    }
+
+    @MainThread
+    public static LibraryRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new LibraryRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public File getBooksDirectory() {
+        return booksDirectory;
+    }
+
+    // 书架上的书籍，只读；完整列表加载完成前是快照中的书籍
+    public List<EPUBBook> getBooks() {
+        return Collections.unmodifiableList(books);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // 完整列表加载完成后执行，已加载时立即执行
+    public void runWhenLoaded(Runnable action) {
+        if (loaded) {
+            action.run();
+        } else {
+            pendingActions.add(action);
+        }
+    }
+
+    @Nullable
+    public EPUBBook findById(long bookId) {
+        return booksById.get(bookId);
+    }
+
+    // 书籍状态的键：阅读进度的键前缀、共享缓存的键和附属文件名
+    // 书架上的书籍使用编号；不在书架上的书籍（例如从其他应用打开）没有编号，按URI区分
+    public static String getStateKey(long bookId, Uri bookUri) {
+        return bookId > 0 ? Long.toString(bookId) : "u" + Integer.toHexString(bookUri.toString().hashCode());
+    }
+
+    @Nullable
+    public EPUBBook findByFileName(String fileName) {
+        for (EPUBBook book : books) {
+            if (fileName.equals(book.getFileName())) {
+                return book;
+            }
+        }
+        return null;
+    }
+
+    // 书籍移出书架后仍保留阅读进度和附属文件，直到releaseState
+    public void retainState(EPUBBook book) {
+        retainedStateKeys.add(getStateKey(book.getId(), book.getUri()));
+    }
+
+    public void releaseState(EPUBBook book) {
+        retainedStateKeys.remove(getStateKey(book.getId(), book.getUri()));
+    }
+
+    // 应用自身开始修改书籍目录中的文件，在endFileChange之前忽略监听到的该文件的变化
+    public void beginFileChange(String fileName) {
+        changingFiles.add(fileName);
+    }
+
+    // 修改完成，书架已按结果更新
+    public void endFileChange(String fileName) {
+        changingFiles.remove(fileName);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // 添加新书并分配编号，按最后阅读时间插入到对应位置
+    public void addBook(EPUBBook book) {
+        if (!loaded) {
+            pendingActions.add(() -> addBook(book));
+            return;
+        }
+        if (book.getId() <= 0) {
+            book.setId(nextBookId++);
+        }
+        insertBook(book);
+        save();
+    }
+
+    // 撤销删除，书籍保留原来的编号
+    public void restoreBook(EPUBBook book) {
+        if (!loaded || booksById.get(book.getId()) != null) {
+            return;
+        }
+        insertBook(book);
+        scheduleSave();
+    }
+
+    // 从书架移除书籍，不立即保存：BookFileOperations在撤销时间结束后通过flush把连续的删除一起保存
+    public void removeBook(EPUBBook book) {
+        if (!loaded) {
+            Log.w(TAG, "removeBook: Library not loaded");
+            return;
+        }
+        int position = books.indexOf(book);
+        if (position < 0) {
+            return;
+        }
+        books.remove(position);
+        booksById.remove(book.getId());
+        Log.d(TAG, "removeBook: " + book.getTitle() + " at " + position);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onBookRemoved(position);
+        }
+        savePending = true;
+    }
+
+    // 书名、作者或文件被修改后调用，编号不变，阅读进度和附属文件继续有效
+    public void updateBook(EPUBBook book) {
+        if (!loaded) {
+            Log.w(TAG, "updateBook: Library not loaded");
+            return;
+        }
+        int position = books.indexOf(book);
+        if (position < 0) {
+            return;
+        }
+        dispatchChanged(position);
+        save();
+    }
+
+    // 打开书籍时更新最后阅读时间，书籍移到最前
+    public void markOpened(EPUBBook book) {
+        if (!loaded) {
+            // 快照中的书籍对象会被完整列表替换，加载完成后按编号找到对应的书籍
+            long bookId = book.getId();
+            pendingActions.add(() -> {
+                EPUBBook loadedBook = booksById.get(bookId);
+                if (loadedBook != null) {
+                    markOpened(loadedBook);
+                }
+            });
+            return;
+        }
+        int position = books.indexOf(book);
+        if (position < 0) {
+            return;
+        }
+        book.setLastReadTime(System.currentTimeMillis());
+        moveToSortedPosition(position);
+        save();
+    }
+
+    // 阅读页发布的进度：当前章节（或TXT页）和章节标题，lastChapter为null时保持原值
+    public void updateProgress(long bookId, int currentPage, @Nullable String lastChapter) {
+        if (!loaded) {
+            pendingActions.add(() -> updateProgress(bookId, currentPage, lastChapter));
+            return;
+        }
+        EPUBBook book = booksById.get(bookId);
+        if (book == null) {
+            return;
+        }
+        boolean changed = book.getCurrentPage() != currentPage;
+        book.setCurrentPage(currentPage);
+        if (lastChapter != null && !lastChapter.equals(book.getLastChapter())) {
+            book.setLastChapter(lastChapter);
+            changed = true;
+        }
+        if (changed) {
+            dispatchChanged(books.indexOf(book));
+            scheduleSave();
+        }
+    }
+
+    // 阅读页发布的总章节数（或TXT总页数）和最后一章标题，finalChapter为null时保持原值
+    public void updateChapters(long bookId, int totalPages, @Nullable String finalChapter) {
+        if (!loaded) {
+            pendingActions.add(() -> updateChapters(bookId, totalPages, finalChapter));
+            return;
+        }
+        EPUBBook book = booksById.get(bookId);
+        if (book == null) {
+            return;
+        }
+        boolean changed = book.getTotalPages() != totalPages;
+        book.setTotalPages(totalPages);
+        if (finalChapter != null && !finalChapter.equals(book.getFinalChapter())) {
+            book.setFinalChapter(finalChapter);
+            changed = true;
+        }
+        if (changed) {
+            dispatchChanged(books.indexOf(book));
+            scheduleSave();
+        }
+    }
+
+    // 立即写入尚未保存的进度，页面进入后台时调用
+    public void flush() {
+        if (savePending) {
+            save();
+        }
+    }
+
+    // 外部直接修改了SharedPreferences（如基准测试预置数据）后重新加载
+    public void reload() {
+        mainHandler.removeCallbacks(saveRunnable);
+        savePending = false;
+        loaded = false;
+        startLoad();
+    }
+
+    // 同步读取快照，文件只有一屏书籍，首帧前读取不会明显延迟启动
+    private void loadSnapshot() {
+        File snapshotFile = getSnapshotFile(context);
+        if (!snapshotFile.exists()) {
+            Log.d(TAG, "loadSnapshot: No snapshot");
+            return;
+        }
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.LIBRARY_SNAPSHOT)) {
+            byte[] data = new byte[(int) snapshotFile.length()];
+            try (InputStream inputStream = new FileInputStream(snapshotFile)) {
+                int read = 0;
+                while (read < data.length) {
+                    int count = inputStream.read(data, read, data.length - read);
+                    if (count < 0) {
+                        break;
+                    }
+                    read += count;
+                }
+            }
+            section.setBytes(data.length);
+            snapshotJson = new String(data, SNAPSHOT_CHARSET);
+            List<BookRecord> records = new ArrayList<>();
+            BookListCodec.decode(snapshotJson, records);
+            for (BookRecord record : records) {
+                // 文件是否存在留到完整加载时检查
+                books.add(toBook(Uri.fromFile(new File(booksDirectory, record.fileName)), record));
+            }
+            Log.d(TAG, "loadSnapshot: Loaded " + books.size() + " books");
+        } catch (IOException e) {
+            Log.e(TAG, "loadSnapshot: Failed to read snapshot", e);
+        }
+    }
+
+    // 在后台加载完整列表
+    private void startLoad() {
+        int generation = ++loadGeneration;
+        TaskScheduler scheduler = TaskScheduler.getInstance();
+        scheduler.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+            LoadResult result = load();
+            scheduler.postToUi(() -> onLoaded(generation, result));
+        });
+    }
+
+    // 用完整列表替换快照，执行加载期间排队的操作
+    private void onLoaded(int generation, LoadResult result) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        books.clear();
+        booksById.clear();
+        books.addAll(result.books);
+        for (EPUBBook book : books) {
+            booksById.put(book.getId(), book);
+        }
+        nextBookId = result.nextBookId;
+        loaded = true;
+        Log.d(TAG, "onLoaded: " + books.size() + " books, " + pendingActions.size() + " pending actions");
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onLibraryReloaded();
+        }
+        List<Runnable> actions = new ArrayList<>(pendingActions);
+        pendingActions.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+        if (result.changed) {
+            save();
+        } else {
+            saveSnapshot();
+        }
+        // 启动时清理一次之前删除的书籍留下的状态
+        scheduleCompaction();
+    }
+
+    // 在后台清理不属于书架上任何书籍的阅读进度、旧设置键和附属文件，执行期间的再次请求忽略
+    // 删除的书籍在撤销时间结束、文件删除后才清理
+    void scheduleCompaction() {
+        if (compactionRunning || !loaded) {
+            return;
+        }
+        compactionRunning = true;
+        Set<String> liveKeys = new HashSet<>(retainedStateKeys);
+        for (EPUBBook book : books) {
+            liveKeys.add(getStateKey(book.getId(), book.getUri()));
+        }
+        long firstUnassignedId = nextBookId;
+        TaskScheduler scheduler = TaskScheduler.getInstance();
+        scheduler.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.INDEXING, () -> {
+            try {
+                LibraryCompactor.compact(context, liveKeys, firstUnassignedId);
+            } finally {
+                scheduler.postToUi(() -> compactionRunning = false);
+            }
+        });
+    }
+
+    // 书籍目录中出现或消失了文件，例如在书籍管理页中添加或删除
+    private void onBookFileEvent(String fileName, boolean added) {
+        if (!loaded) {
+            // 完整加载检查文件时可能已经反映了这个变化，加载完成后按当时的书架再处理
+            pendingActions.add(() -> onBookFileEvent(fileName, added));
+            return;
+        }
+        if (changingFiles.contains(fileName)) {
+            return;
+        }
+        EPUBBook book = findByFileName(fileName);
+        if (added) {
+            String lowerName = fileName.toLowerCase();
+            if (book != null || !(lowerName.endsWith(".epub") || lowerName.endsWith(".txt"))) {
+                return;
+            }
+            Uri uri = Uri.fromFile(new File(booksDirectory, fileName));
+            Log.d(TAG, "onBookFileEvent: Adding " + fileName);
+            EPUBBook newBook = new EPUBBook(uri, fileName, "未知作者", 0, 0, System.currentTimeMillis(), fileName);
+            addBook(newBook);
+            if (lowerName.endsWith(".epub")) {
+                ChapterStoreConverter.convertInBackground(context, getStateKey(newBook.getId(), uri), uri, null);
+            }
+        } else if (book != null) {
+            Log.d(TAG, "onBookFileEvent: Removing " + fileName);
+            removeBook(book);
+            save();
+            scheduleCompaction();
+        }
+    }
+
+    private static class LoadResult {
+        final List<EPUBBook> books;
+        final long nextBookId;
+        final boolean changed; // 移除了丢失文件的书籍、合并了旧进度或分配了编号，需要重新保存
+
+        LoadResult(List<EPUBBook> books, long nextBookId, boolean changed) {
+            this.books = books;
+            this.nextBookId = nextBookId;
+            this.changed = changed;
+        }
+    }
+
+    // 在后台线程执行：解析书籍列表并检查每本书的文件
+    private LoadResult load() {
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.LIBRARY_LOAD)) {
+            long startTime = System.currentTimeMillis();
+            if (!booksDirectory.exists()) {
+                booksDirectory.mkdirs();
+            }
+            // 先开始监听再检查文件，检查期间发生的变化在加载完成后处理；已在监听时不重复注册
+            booksDirectoryWatcher.startWatching();
+            List<EPUBBook> loadedBooks = new ArrayList<>();
+            String booksJson = sharedPreferences.getString(BOOK_LIST_KEY, "");
+            section.setBytes(booksJson.length() * 2L);
+            boolean booksChanged = false;
+            List<BookRecord> records = new ArrayList<>();
+            if (!booksJson.isEmpty() && BookListCodec.decode(booksJson, records) > 0) {
+                Log.d(TAG, "load: Dropped malformed book records");
+                booksChanged = true;
+            }
+            for (BookRecord record : records) {
+                // 不使用保存的URI，直接用本地文件构建URI
+                File bookFile = new File(booksDirectory, record.fileName);
+                if (bookFile.exists()) {
+                    loadedBooks.add(toBook(Uri.fromFile(bookFile), record));
+                } else {
+                    // 文件不存在，从书架移除
+                    booksChanged = true;
+                }
+            }
+            if (!sharedPreferences.getBoolean(MIGRATED_KEY, false)) {
+                mergeLegacyProgress(loadedBooks);
+                booksChanged = true;
+            }
+            long nextId = Math.max(1, sharedPreferences.getLong(NEXT_BOOK_ID_KEY, 1));
+            for (EPUBBook book : loadedBooks) {
+                nextId = Math.max(nextId, book.getId() + 1);
+            }
+            List<EPUBBook> unassigned = new ArrayList<>();
+            for (EPUBBook book : loadedBooks) {
+                if (book.getId() <= 0) {
+                    book.setId(nextId++);
+                    unassigned.add(book);
+                }
+            }
+            if (!unassigned.isEmpty()) {
+                migrateStateKeys(unassigned);
+                booksChanged = true;
+            }
+            Collections.sort(loadedBooks, (book1, book2) -> Long.compare(book2.getLastReadTime(), book1.getLastReadTime()));
+            Log.d(TAG, "load: Loaded " + loadedBooks.size() + " books in " + (System.currentTimeMillis() - startTime) + "ms");
+            return new LoadResult(loadedBooks, nextId, booksChanged);
+        }
+    }
+
+    // 旧版本每次打开书架都从阅读进度和书架的零散键中合并进度，这里合并最后一次后清除零散键
+    private void mergeLegacyProgress(List<EPUBBook> books) {
+        SharedPreferences readingPrefs = context.getSharedPreferences(READING_PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (EPUBBook book : books) {
+            String uri = book.getUri().toString();
+            book.setCurrentPage(readingPrefs.getInt(uri, book.getCurrentPage()));
+            book.setTotalPages(readingPrefs.getInt(uri + "_total", book.getTotalPages()));
+            book.setLastChapter(sharedPreferences.getString(uri + "_lastChapter", book.getLastChapter()));
+            book.setFinalChapter(sharedPreferences.getString(uri + "_finalChapter", book.getFinalChapter()));
+        }
+        for (String key : sharedPreferences.getAll().keySet()) {
+            if (!key.equals(BOOK_LIST_KEY)) {
+                editor.remove(key);
+            }
+        }
+        editor.putBoolean(MIGRATED_KEY, true);
+        editor.apply();
+        Log.d(TAG, "mergeLegacyProgress: Merged progress for " + books.size() + " books");
+    }
+
+    // 旧版本按URI保存阅读进度和附属文件，刚分配编号的书籍改用编号，之后改名也不会丢失
+    private void migrateStateKeys(List<EPUBBook> books) {
+        SharedPreferences readingPrefs = context.getSharedPreferences(READING_PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = readingPrefs.edit();
+        for (EPUBBook book : books) {
+            String uri = book.getUri().toString();
+            String key = Long.toString(book.getId());
+            for (String suffix : new String[]{"", "_offset", "_total"}) {
+                if (readingPrefs.contains(uri + suffix)) {
+                    editor.putInt(key + suffix, readingPrefs.getInt(uri + suffix, 0));
+                    editor.remove(uri + suffix);
+                }
+            }
+            String legacyName = Integer.toHexString(uri.hashCode());
+            for (String[] sidecar : SIDECAR_DIRECTORIES) {
+                File directory = new File(context.getFilesDir(), sidecar[0]);
+                File legacyFile = new File(directory, legacyName + sidecar[1]);
+                if (legacyFile.exists() && !legacyFile.renameTo(new File(directory, key + sidecar[1]))) {
+                    Log.w(TAG, "migrateStateKeys: Failed to rename " + legacyFile);
+                }
+            }
+        }
+        editor.apply();
+        Log.d(TAG, "migrateStateKeys: Assigned ids to " + books.size() + " books");
+    }
+
+    private void scheduleSave() {
+        savePending = true;
+        mainHandler.removeCallbacks(saveRunnable);
+        mainHandler.postDelayed(saveRunnable, SAVE_DELAY_MS);
+    }
+
+    private void save() {
+        mainHandler.removeCallbacks(saveRunnable);
+        savePending = false;
+        if (!loaded) {
+            // 快照不是完整列表，不能覆盖保存的书籍列表
+            return;
+        }
+        List<BookRecord> records = new ArrayList<>(books.size());
+        for (EPUBBook book : books) {
+            records.add(toRecord(book));
+        }
+
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.PREFS_ENQUEUE)) {
+            String booksJson = BookListCodec.encode(records);
+            section.setBytes(booksJson.length() * 2L);
+            sharedPreferences.edit().putString(BOOK_LIST_KEY, booksJson).putLong(NEXT_BOOK_ID_KEY, nextBookId).apply();
+        }
+        saveSnapshot();
+    }
+
+    // 最近阅读的书籍有变化时在后台重写快照
+    private void saveSnapshot() {
+        List<BookRecord> records = new ArrayList<>(SNAPSHOT_SIZE);
+        for (int i = 0; i < books.size() && i < SNAPSHOT_SIZE; i++) {
+            records.add(toRecord(books.get(i)));
+        }
+        String json = BookListCodec.encode(records);
+        if (json.equals(snapshotJson)) {
+            return;
+        }
+        snapshotJson = json;
+        TaskScheduler.getInstance().execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.PREFETCH, () -> {
+            try {
+                writeSnapshot(context, json);
+            } catch (IOException e) {
+                Log.e(TAG, "saveSnapshot: Failed to write snapshot", e);
+            }
+        });
+    }
+
+    static File getSnapshotFile(Context context) {
+        return new File(context.getFilesDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    // 先写临时文件再重命名，进程在写入中途被杀死时不会留下不完整的快照
+    static synchronized void writeSnapshot(Context context, String json) throws IOException {
+        File snapshotFile = getSnapshotFile(context);
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            outputStream.write(json.getBytes(SNAPSHOT_CHARSET));
+        }
+        if (!tempFile.renameTo(snapshotFile)) {
+            throw new IOException("无法替换快照文件: " + snapshotFile);
+        }
+    }
+
+    // 快照使用与书籍列表相同的编码
+    static String encodeSnapshot(List<BookRecord> records) {
+        return BookListCodec.encode(records.size() > SNAPSHOT_SIZE ? records.subList(0, SNAPSHOT_SIZE) : records);
+    }
+
+    // 加载时按文件名重新构建URI，不再保存URI
+    private static BookRecord toRecord(EPUBBook book) {
+        return new BookRecord(book.getId(), null, book.getTitle(), book.getAuthor(),
+                book.getCurrentPage(), book.getTotalPages(), book.getLastReadTime(), book.getFileName(),
+                book.getLastChapter(), book.getFinalChapter());
+    }
+
+    private static EPUBBook toBook(Uri uri, BookRecord record) {
+        EPUBBook book = new EPUBBook(uri, record.title, record.author, record.currentPage, record.totalPages,
+                record.lastReadTime, record.fileName, record.lastChapter, record.finalChapter);
+        book.setId(record.id);
+        return book;
+    }
+
+    // 按最后阅读时间插入到对应位置
+    private void insertBook(EPUBBook book) {
+        int position = findInsertPosition(book.getLastReadTime());
+        books.add(position, book);
+        booksById.put(book.getId(), book);
+        Log.d(TAG, "insertBook: " + book.getTitle() + " at " + position);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onBookInserted(position);
+        }
+    }
+
+    // 修改最后阅读时间后移动到排序后的位置
+    private void moveToSortedPosition(int position) {
+        EPUBBook book = books.remove(position);
+        int target = findInsertPosition(book.getLastReadTime());
+        books.add(target, book);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            if (target != position) {
+                listener.onBookMoved(position, target);
+            }
+            listener.onBookChanged(target);
+        }
+    }
+
+    // 第一个最后阅读时间早于给定时间的位置
+    private int findInsertPosition(long lastReadTime) {
+        int position = 0;
+        while (position < books.size() && books.get(position).getLastReadTime() >= lastReadTime) {
+            position++;
+        }
+        return position;
+    }
+
+    private void dispatchChanged(int position) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onBookChanged(position);
+        }
+    }
+}
@@ -3,8 +3,8 @@ package com.example.myapplication2;
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.content.ContentResolver;
+import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
@@ -25,53 +25,67 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.snackbar.Snackbar;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int PERMISSION_REQUEST_CODE = 1;
     private static final int FILE_PICKER_REQUEST_CODE = 2;
-    public static final String PREFS_NAME = "BookList";
-    private static final String BOOK_LIST_KEY = "books";
 
     private RecyclerView booksRecyclerView;
+    private View libraryLoadingView; // 没有快照时的加载提示
+    private Button addBookButton;
     private BooksAdapter booksAdapter;
-    private List<EPUBBook> epubBooks;
-    private SharedPreferences sharedPreferences;
+    private LibraryRepository libraryRepository; // 书架数据，与阅读页共享
+    private BookFileOperations bookFileOperations; // 书籍文件的删除和重命名在后台执行
     private File booksDirectory;
+    private TaskScope taskScope; // 与页面生命周期绑定的后台任务
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        taskScope = new TaskScope(this);
 
         // 初始化视图
         initViews();
 
-        // 初始化书籍列表
-        epubBooks = new ArrayList<>();
-        
-        // 初始化SharedPreferences
-        sharedPreferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        // 书架数据在进程内只加载一次；首次创建时先得到最近阅读书籍的快照，完整列表在后台加载
+        libraryRepository = LibraryRepository.getInstance(this);
+        bookFileOperations = BookFileOperations.getInstance(this);
         
-        // 获取应用私有目录下的books文件夹
-        booksDirectory = new File(getFilesDir(), "books");
-        if (!booksDirectory.exists()) {
-            booksDirectory.mkdirs();
-        }
+        // 应用私有目录下的books文件夹，目录在后台加载书架时创建
+        booksDirectory = libraryRepository.getBooksDirectory();
 
-        // 设置RecyclerView
+        // 设置RecyclerView，首帧显示快照中的书籍
         setupRecyclerView();
 
-        // 加载已保存的书籍
-        loadSavedBooks();
+        // 阅读页更新进度时只刷新对应的条目，返回书架时不再重新加载整个列表
+        libraryRepository.addListener(libraryListener);
+
+        // 添加书籍需要完整列表检查重复，权限检查也推迟到首帧之后
+        boolean loaded = libraryRepository.isLoaded();
+        addBookButton.setEnabled(loaded);
+        libraryLoadingView.setVisibility(!loaded && libraryRepository.getBooks().isEmpty() ? View.VISIBLE : View.GONE);
+        libraryRepository.runWhenLoaded(this::onLibraryLoaded);
+    }
+
+    // 完整书架加载完成，页面可以交互
+    private void onLibraryLoaded() {
+        if (isDestroyed()) {
+            return;
+        }
+        Log.d(TAG, "onLibraryLoaded: " + libraryRepository.getBooks().size() + " books");
+        libraryLoadingView.setVisibility(View.GONE);
+        addBookButton.setEnabled(true);
+        // 启动基准测试以此计算完全显示时间
+        reportFullyDrawn();
 
         // 检查并请求存储权限
         checkPermissions();
@@ -79,7 +93,8 @@ public class MainActivity extends AppCompatActivity {
 
     private void initViews() {
         booksRecyclerView = findViewById(R.id.booksRecyclerView);
-        Button addBookButton = findViewById(R.id.addBookButton);
+        libraryLoadingView = findViewById(R.id.libraryLoadingView);
+        addBookButton = findViewById(R.id.addBookButton);
         
         addBookButton.setOnClickListener(v -> {
             if (checkPermissions()) {
@@ -91,7 +106,7 @@ public class MainActivity extends AppCompatActivity {
     private void setupRecyclerView() {
         booksRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         // 处理书籍点击事件
-        booksAdapter = new BooksAdapter(epubBooks);
+        booksAdapter = new BooksAdapter(libraryRepository.getBooks());
         booksAdapter.setOnBookClickListener(this::openBook);
         booksAdapter.setOnBookLongClickListener(this::showBookOptions);
         
@@ -101,8 +116,42 @@ public class MainActivity extends AppCompatActivity {
         booksRecyclerView.addItemDecoration(new BookItemDecoration(this));
     }
 
+    // 书架变化时按位置刷新列表
+    private final LibraryRepository.Listener libraryListener = new LibraryRepository.Listener() {
+        @Override
+        public void onBookInserted(int position) {
+            booksAdapter.notifyItemInserted(position);
+        }
+
+        @Override
+        public void onBookRemoved(int position) {
+            booksAdapter.notifyItemRemoved(position);
+        }
+
+        @Override
+        public void onBookChanged(int position) {
+            booksAdapter.notifyItemChanged(position);
+        }
+
+        @Override
+        public void onBookMoved(int fromPosition, int toPosition) {
+            booksAdapter.notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @SuppressLint("NotifyDataSetChanged")
+        @Override
+        public void onLibraryReloaded() {
+            booksAdapter.notifyDataSetChanged();
+        }
+    };
+
     // 显示书籍选项菜单
     private void showBookOptions(EPUBBook book, int position) {
+        if (!libraryRepository.isLoaded()) {
+            // 快照中的书籍在完整列表加载后会被替换，不能删除或编辑
+            Toast.makeText(this, "书架加载中，请稍候", Toast.LENGTH_SHORT).show();
+            return;
+        }
         String[] options = {"删除", "编辑信息"};
         new AlertDialog.Builder(this)
                 .setTitle("书籍选项")
@@ -153,44 +202,16 @@ public class MainActivity extends AppCompatActivity {
                         String newFileName = newTitle + ".epub";
                         
                         if (!newFileName.equals(oldFileName)) {
-                            // 重命名本地文件
-                            File oldFile = new File(booksDirectory, oldFileName);
-                            File newFile = new File(booksDirectory, newFileName);
-                            
-                            if (oldFile.exists()) {
-                                if (!newFile.exists()) {
-                                    if (oldFile.renameTo(newFile)) {
-                                        // 更新书籍信息
-                                        book.setTitle(newTitle);
-                                        book.setAuthor(newAuthor);
-                                        book.setFileName(newFileName);
-                                        
-                                        // 更新URI为新的本地文件URI
-                                        Uri newUri = Uri.fromFile(newFile);
-                                        book.setUri(newUri);
-                                        
-                                        // 更新显示
-                                        booksAdapter.notifyItemChanged(position);
-                                        // 保存更新后的书籍列表
-                                        saveBooks();
-                                        Toast.makeText(this, "书籍信息已更新", Toast.LENGTH_SHORT).show();
-                                    } else {
-                                        Toast.makeText(this, "文件重命名失败", Toast.LENGTH_SHORT).show();
-                                    }
-                                } else {
-                                    Toast.makeText(this, "已存在同名书籍", Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(this, "原文件不存在", Toast.LENGTH_SHORT).show();
-                            }
+                            // 书名和作者立即更新，文件在后台重命名，完成后更新文件名和URI，失败时恢复原来的书名
+                            Context appContext = getApplicationContext();
+                            bookFileOperations.rename(book, newTitle, newAuthor, newFileName, (success, message) ->
+                                    Toast.makeText(appContext, success ? "书籍信息已更新" : message, Toast.LENGTH_SHORT).show());
                         } else {
                             // 只更新作者信息，但也需要更新标题（用户可能只是编辑了标题但没有改变文件名）
                             book.setTitle(newTitle);
                             book.setAuthor(newAuthor);
-                            // 更新显示
-                            booksAdapter.notifyItemChanged(position);
-                            // 保存更新后的书籍列表
-                            saveBooks();
+                            // 更新显示并保存
+                            libraryRepository.updateBook(book);
                             Toast.makeText(this, "书籍信息已更新", Toast.LENGTH_SHORT).show();
                         }
                     }
@@ -201,45 +222,29 @@ public class MainActivity extends AppCompatActivity {
 
     // 删除书籍
     private void deleteBook(EPUBBook book, int position) {
-        // 检查索引是否有效
-        if (position >= 0 && position < epubBooks.size()) {
-            // 从列表中移除
-            epubBooks.remove(position);
-            booksAdapter.notifyItemRemoved(position);
-            
-            // 删除存储的文件
-            File bookFile = new File(booksDirectory, book.getFileName());
-            if (bookFile.exists()) {
-                bookFile.delete();
-            }
-            
-            // 保存更新后的书籍列表
-            saveBooks();
-        }
+        // 立即从书架移除，列表通过监听刷新；撤销时间结束后才在后台删除文件
+        bookFileOperations.delete(book);
+
+        int count = bookFileOperations.getPendingDeleteCount();
+        String message = count > 1 ? "已删除" + count + "本书籍" : "已删除《" + book.getTitle() + "》";
+        Snackbar.make(booksRecyclerView, message, Snackbar.LENGTH_LONG)
+                .setDuration(BookFileOperations.UNDO_WINDOW_MS)
+                .setAction("撤销", v -> bookFileOperations.undoDeletes())
+                .show();
     }
 
     // 打开书籍
-    @SuppressLint("NotifyDataSetChanged")
     private void openBook(EPUBBook book) {
-        // 更新最后阅读时间
-        book.setLastReadTime(System.currentTimeMillis());
-        sortBooksByLastReadTime();
-        booksAdapter.notifyDataSetChanged();
-        saveBooks();
+        // 更新最后阅读时间，书籍移到最前
+        libraryRepository.markOpened(book);
         
         Intent intent = new Intent(this, ReadingActivity.class);
         intent.putExtra("book_uri", book.getUri().toString());
+        intent.putExtra("book_id", book.getId());
         intent.putExtra("book_title", book.getTitle());
         startActivity(intent);
     }
     
-    // 按最后阅读时间排序书籍
-    private void sortBooksByLastReadTime() {
-        Collections.sort(epubBooks, (book1, book2) -> {
-            // 按最后阅读时间降序排列（最近阅读的在前）
-            return Long.compare(book2.getLastReadTime(), book1.getLastReadTime());
-        });
-    }
 
     private boolean checkPermissions() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -288,7 +293,6 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    @SuppressLint("NotifyDataSetChanged")
     private void handleSelectedFile(Uri uri) {
         try {
             // 请求持久的URI权限
@@ -308,37 +312,28 @@ public class MainActivity extends AppCompatActivity {
             }
             
             // 检查书籍是否已存在
-            boolean bookExists = false;
-            for (EPUBBook book : epubBooks) {
-                if (book.getFileName().equals(fileName)) {
-                    bookExists = true;
-                    break;
-                }
-            }
-            
-            if (bookExists) {
+            if (libraryRepository.findByFileName(fileName) != null) {
                 Toast.makeText(this, "书籍已存在", Toast.LENGTH_SHORT).show();
                 return;
             }
             
-            // 复制文件到应用私有目录
+            // 在后台复制文件到应用私有目录，避免大文件阻塞主线程
             File destFile = new File(booksDirectory, fileName);
-            copyFile(uri, destFile);
-            
-            // 创建EPUBBook对象，使用本地文件的URI而不是原始URI
-            Uri localUri = Uri.fromFile(destFile);
-            // 新添加的书籍初始化当前页为0，总页数为0，最后阅读时间为当前时间
-            EPUBBook book = new EPUBBook(localUri, fileName, "未知作者", 0, 0, System.currentTimeMillis(), fileName);
-            epubBooks.add(book);
-            
-            // 更新列表显示
-            sortBooksByLastReadTime();
-            booksAdapter.notifyDataSetChanged();
-            
-            // 保存书籍列表
-            saveBooks();
-            
-            Toast.makeText(this, "书籍添加成功", Toast.LENGTH_SHORT).show();
+            String bookFileName = fileName;
+            // 书籍目录的监听不处理这个文件，复制完成后由这里加入书架
+            // 复制和加入书架不随页面销毁取消，否则文件会一直被监听忽略，书籍不会出现在书架上
+            libraryRepository.beginFileChange(bookFileName);
+            TaskScheduler scheduler = TaskScheduler.getInstance();
+            scheduler.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+                try {
+                    copyFile(uri, destFile);
+                    scheduler.postToUi(() -> onBookFileCopied(destFile, bookFileName));
+                } catch (Exception e) {
+                    Log.e(TAG, "复制书籍文件失败", e);
+                    scheduler.postToUi(() -> libraryRepository.endFileChange(bookFileName));
+                    taskScope.postToUi(() -> Toast.makeText(this, "添加书籍失败: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                }
+            });
         } catch (SecurityException e) {
             Log.e(TAG, "权限错误: " + e.getMessage());
             Toast.makeText(this, "权限不足，无法访问文件: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -348,6 +343,26 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // 书籍文件复制完成后加入书架，页面可能已经销毁
+    private void onBookFileCopied(File destFile, String fileName) {
+        // 创建EPUBBook对象，使用本地文件的URI而不是原始URI
+        Uri localUri = Uri.fromFile(destFile);
+        // 新添加的书籍初始化当前页为0，总页数为0，最后阅读时间为当前时间
+        EPUBBook book = new EPUBBook(localUri, fileName, "未知作者", 0, 0, System.currentTimeMillis(), fileName);
+        // 加入书架并保存，列表通过监听刷新；加入后才分配编号
+        libraryRepository.runWhenLoaded(() -> {
+            libraryRepository.addBook(book);
+            libraryRepository.endFileChange(fileName);
+            // EPUB在后台预转换章节，首次打开时不必再解析XHTML
+            if (!fileName.toLowerCase().endsWith(".txt")) {
+                ChapterStoreConverter.convertInBackground(getApplicationContext(),
+                        LibraryRepository.getStateKey(book.getId(), localUri), localUri, null);
+            }
+        });
+        
+        Toast.makeText(getApplicationContext(), "书籍添加成功", Toast.LENGTH_SHORT).show();
+    }
+
     private void copyFile(Uri sourceUri, File destFile) throws IOException {
         ParcelFileDescriptor sourcePFD = getContentResolver().openFileDescriptor(sourceUri, "r");
         assert sourcePFD != null;
@@ -363,103 +378,9 @@ public class MainActivity extends AppCompatActivity {
         sourcePFD.close();
     }
 
-    @SuppressLint("NotifyDataSetChanged")
-    private void loadSavedBooks() {
-        String booksJson = sharedPreferences.getString(BOOK_LIST_KEY, "");
-        boolean booksChanged = false;
-        if (!booksJson.isEmpty()) {
-            epubBooks.clear();
-            String[] bookStrings = booksJson.split(";");
-            for (String bookString : bookStrings) {
-                if (!bookString.isEmpty()) {
-                    String[] parts = bookString.split("\\|");
-                    if (parts.length >= 6) {
-                        try {
-                            // 注意：这里我们不再使用保存的URI，而是直接使用本地文件构建URI
-                            String title = parts[1];
-                            String author = parts[2];
-                            int savedCurrentPage = Integer.parseInt(parts[3]); // 保存的当前页
-                            int savedTotalPages = Integer.parseInt(parts[4]);   // 保存的总页数
-                            long lastReadTime = Long.parseLong(parts[5]);
-                            String fileName = (parts.length > 6) ? parts[6] : "unknown.epub";
-                            String lastChapter = (parts.length > 7) ? parts[7] : ""; // 最后阅读章节
-                            String finalChapter = (parts.length > 8) ? parts[8] : ""; // 最后一章
-                            
-                            // 检查本地文件是否存在
-                            java.io.File bookFile = new java.io.File(booksDirectory, fileName);
-                            if (bookFile.exists()) {
-                                // 使用本地文件路径创建URI
-                                android.net.Uri localUri = android.net.Uri.fromFile(bookFile);
-                                
-                                // 从ReadingActivity的SharedPreferences中获取最新的当前页和总页数
-                                android.content.SharedPreferences readingPrefs = getSharedPreferences("ReadingProgress", android.content.Context.MODE_PRIVATE);
-                                int currentPage = readingPrefs.getInt(localUri.toString(), savedCurrentPage);
-                                int totalPages = readingPrefs.getInt(localUri.toString() + "_total", savedTotalPages);
-                                
-                                // 从ReadingActivity的SharedPreferences中获取最后阅读章节
-                                String savedLastChapter = readingPrefs.getString(localUri.toString() + "_lastChapter", lastChapter);
-                                
-                                EPUBBook book = new EPUBBook(localUri, title, author, currentPage, totalPages, lastReadTime, fileName, savedLastChapter, finalChapter);
-                                epubBooks.add(book);
-                            } else {
-                                // 文件不存在，标记为需要更新
-                                booksChanged = true;
-                            }
-                        } catch (Exception e) {
-                            android.util.Log.d(TAG,"错误日志====handleSelectedFile 249"+e);
-                            booksChanged = true;
-                        }
-                    }
-                }
-            }
-        }
-        
-        // 按最后阅读时间排序
-        sortBooksByLastReadTime();
-        
-        if (booksAdapter != null) {
-            booksAdapter.notifyDataSetChanged();
-        }
-        
-        // 如果有书籍被移除，则重新保存书籍列表
-        if (booksChanged) {
-            saveBooks();
-        }
-    }
-
-    private void saveBooks() {
-        StringBuilder booksStringBuilder = new StringBuilder();
-        for (EPUBBook book : epubBooks) {
-            if (book != null) {
-                booksStringBuilder.append(book.getUri() != null ? book.getUri().toString() : "")
-                        .append("|")
-                        .append(book.getTitle() != null ? book.getTitle() : "未知标题")
-                        .append("|")
-                        .append(book.getAuthor() != null ? book.getAuthor() : "未知作者")
-                        .append("|")
-                        .append(book.getCurrentPage())
-                        .append("|")
-                        .append(book.getTotalPages())
-                        .append("|")
-                        .append(book.getLastReadTime())
-                        .append("|")
-                        .append(book.getFileName() != null ? book.getFileName() : "unknown.epub")
-                        .append("|")
-                        .append(book.getLastChapter() != null ? book.getLastChapter() : "") // 保存最后阅读章节
-                        .append("|")
-                        .append(book.getFinalChapter() != null ? book.getFinalChapter() : "") // 保存最后一章
-                        .append(";");
-            }
-        }
-        
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(BOOK_LIST_KEY, booksStringBuilder.toString());
-        editor.apply();
-    }
-
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadSavedBooks();
+    protected void onDestroy() {
+        super.onDestroy();
+        libraryRepository.removeListener(libraryListener);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package com.example.myapplication2;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// 内存调控：所有缓存在这里登记，收到系统的内存压力通知时按重建代价从低到高依次释放
+// 同时根据设备的内存等级给出缓存容量，低内存设备上缓存更小
+public class MemoryGovernor implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryGovernor";
+
+    // 后台线程请求释放缓存时最多等待主线程的时间
+    private static final long TRIM_WAIT_MS = 1000;
+
+    private static MemoryGovernor instance;
+
+    // 缓存内容的重建代价，代价越低越先被释放
+    public enum Cost {
+        CHEAP,      // 位图池、已解码插图：重新解码即可
+        MODERATE,   // 预加载的章节：需要重新解析章节
+        EXPENSIVE   // 已解析的书籍：需要重新读取整本书的元数据
+    }
+
+    // 可以按比例释放的缓存
+    public interface Trimmable {
+        // keepFraction为保留的容量比例，0表示释放全部可释放的内容
+        void trim(float keepFraction);
+    }
+
+    private final List<Registration> registrations = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int memoryClassMb;
+    private final boolean lowRamDevice;
+
+    private MemoryGovernor(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 64;
+        lowRamDevice = activityManager != null && activityManager.isLowRamDevice();
+        Log.d(TAG, "MemoryGovernor: memoryClass=" + memoryClassMb + "MB, lowRam=" + lowRamDevice);
+    }
+
+    public static synchronized MemoryGovernor getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new MemoryGovernor(appContext);
+            appContext.registerComponentCallbacks(instance);
+            // 全局共享的缓存在这里登记，页面内的缓存由页面自己登记和注销
+            instance.register(BitmapPool.getInstance(), Cost.CHEAP);
+            instance.register(BookCache.getInstance(), Cost.EXPENSIVE);
+        }
+        return instance;
+    }
+
+    public void register(Trimmable trimmable, Cost cost) {
+        synchronized (registrations) {
+            registrations.add(new Registration(trimmable, cost));
+        }
+    }
+
+    public void unregister(Trimmable trimmable) {
+        synchronized (registrations) {
+            for (int i = registrations.size() - 1; i >= 0; i--) {
+                if (registrations.get(i).trimmable == trimmable) {
+                    registrations.remove(i);
+                }
+            }
+        }
+    }
+
+    public boolean isLowRamDevice() {
+        return lowRamDevice;
+    }
+
+    // 插图缓存容量：普通设备为堆上限的1/8，低内存设备为1/16
+    public int getImageCacheBytes() {
+        long maxMemory = Math.min(Runtime.getRuntime().maxMemory(), memoryClassMb * 1024L * 1024L);
+        return (int) (maxMemory / (lowRamDevice ? 16 : 8));
+    }
+
+    // 同时保留的已解析章节数
+    public int getChapterCacheSize() {
+        return lowRamDevice ? 2 : 3;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        Log.d(TAG, "onTrimMemory: level=" + level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // 进程即将被回收，释放全部缓存
+            trim(0f, 0f, 0f);
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            trim(0f, 0f, 1f);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            trim(0f, 0.5f, 1f);
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            trim(0f, 0f, 1f);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trim(0f, 0.5f, 1f);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            trim(0.5f, 1f, 1f);
+        }
+    }
+
+    // 在后台线程（如解码时内存不足）请求释放缓存：登记的缓存按主线程调用编写，投递到主线程执行，释放完成后再返回
+    @WorkerThread
+    public void trimMemoryAndWait(int level) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            onTrimMemory(level);
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        mainHandler.post(() -> {
+            try {
+                onTrimMemory(level);
+            } finally {
+                done.countDown();
+            }
+        });
+        try {
+            if (!done.await(TRIM_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "trimMemoryAndWait: Main thread busy, continuing without waiting");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        Log.w(TAG, "onLowMemory: Releasing all caches");
+        trim(0f, 0f, 0f);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    // 按代价从低到高依次释放，每一级保留对应比例的容量
+    private void trim(float cheapFraction, float moderateFraction, float expensiveFraction) {
+        List<Registration> snapshot;
+        synchronized (registrations) {
+            snapshot = new ArrayList<>(registrations);
+        }
+        float[] fractions = {cheapFraction, moderateFraction, expensiveFraction};
+        for (Cost cost : Cost.values()) {
+            float keepFraction = fractions[cost.ordinal()];
+            if (keepFraction >= 1f) {
+                continue;
+            }
+            for (Registration registration : snapshot) {
+                if (registration.cost == cost) {
+                    registration.trimmable.trim(keepFraction);
+                }
+            }
+        }
+    }
+
+    private static class Registration {
+        final Trimmable trimmable;
+        final Cost cost;
+
+        Registration(Trimmable trimmable, Cost cost) {
+            this.trimmable = trimmable;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.myapplication2;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.animation.DecelerateInterpolator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+// 翻页动画层：新页面是预先渲染好的位图，旧页面使用硬件层，动画期间只改变两者的平移量
+// 不重新排版也不重新绘制文字，每一帧都只是合成
+// 不翻页时保持INVISIBLE而不是GONE，视图始终参与布局，第一次翻页时就有宽度
+public class PageFlipView extends View {
+    public static final int DIRECTION_NEXT = 1;
+    public static final int DIRECTION_PREVIOUS = -1;
+    private static final long FLIP_DURATION = 250;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private Bitmap incomingBitmap;
+    private ValueAnimator animator;
+
+    public PageFlipView(Context context) {
+        super(context);
+    }
+
+    public PageFlipView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public boolean isFlipping() {
+        return animator != null;
+    }
+
+    // 判断位图是否仍在显示，正在显示的位图不能归还到位图池
+    public boolean isShowing(Bitmap bitmap) {
+        return bitmap != null && bitmap == incomingBitmap;
+    }
+
+    // 立即结束正在进行的翻页动画
+    public void finishFlip() {
+        if (animator != null) {
+            animator.end();
+        }
+    }
+
+    /**
+     * 开始翻页动画
+     * @param incoming 新页面的位图
+     * @param outgoing 显示旧页面的视图，动画期间随新页面一起滑出
+     * @param direction DIRECTION_NEXT从右侧滑入，DIRECTION_PREVIOUS从左侧滑入
+     * @param onSwap 动画结束时调用，在这里把真实内容切换为新页面
+     * @param onFinished 新页面内容绘制完成、动画层隐藏后调用
+     */
+    public void flip(Bitmap incoming, View outgoing, int direction, Runnable onSwap, Runnable onFinished) {
+        finishFlip();
+        incomingBitmap = incoming;
+        // 与旧页面同宽；尚未完成布局时按旧页面的宽度计算
+        float width = getWidth() > 0 ? getWidth() : outgoing.getWidth();
+        setTranslationX(direction * width);
+        setVisibility(VISIBLE);
+        invalidate();
+        outgoing.setLayerType(LAYER_TYPE_HARDWARE, null);
+
+        animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(FLIP_DURATION);
+        animator.setInterpolator(new DecelerateInterpolator());
+        animator.addUpdateListener(animation -> {
+            float fraction = (float) animation.getAnimatedValue();
+            setTranslationX(direction * width * (1f - fraction));
+            outgoing.setTranslationX(-direction * width * fraction);
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                animator = null;
+                setTranslationX(0);
+                outgoing.setTranslationX(0);
+                outgoing.setLayerType(LAYER_TYPE_NONE, null);
+                onSwap.run();
+                hideAfterNextDraw(outgoing, onFinished);
+            }
+        });
+        animator.start();
+    }
+
+    // 新页面完成布局即将绘制时再隐藏动画层，避免中间闪现空白
+    private void hideAfterNextDraw(View outgoing, Runnable onFinished) {
+        outgoing.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                outgoing.getViewTreeObserver().removeOnPreDrawListener(this);
+                if (animator == null) {
+                    setVisibility(INVISIBLE);
+                    incomingBitmap = null;
+                }
+                onFinished.run();
+                return true;
+            }
+        });
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        if (incomingBitmap != null && !incomingBitmap.isRecycled()) {
+            canvas.drawBitmap(incomingBitmap, 0, 0, paint);
+        }
+    }
+}
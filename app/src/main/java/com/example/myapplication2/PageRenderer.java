@@ -0,0 +1,113 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+
+// 在后台线程把一页内容（标题和正文）按与界面相同的排版参数绘制到位图上，翻页动画时直接合成位图
+public class PageRenderer {
+
+    // 在主线程从界面控件中复制出的排版参数，之后可以在任意线程使用
+    public static class Spec {
+        final int width;
+        final int height;
+        final int backgroundColor;
+        final int paddingLeft;
+        final int paddingTop;
+        final int paddingRight;
+        final TextPaint titlePaint;
+        final int titleBlockHeight;
+        final TextPaint contentPaint;
+        final float lineSpacingExtra;
+        final float lineSpacingMultiplier;
+        final boolean includeFontPadding;
+        final int breakStrategy;
+        final int hyphenationFrequency;
+
+        private Spec(View pageView, ViewGroup container, TextView titleView, TextView contentView) {
+            width = pageView.getWidth();
+            height = pageView.getHeight();
+            Drawable background = pageView.getBackground();
+            backgroundColor = background instanceof ColorDrawable ? ((ColorDrawable) background).getColor() : 0xFFFFFFFF;
+            paddingLeft = container.getPaddingLeft();
+            paddingTop = container.getPaddingTop();
+            paddingRight = container.getPaddingRight();
+            titlePaint = new TextPaint(titleView.getPaint());
+            titlePaint.setColor(titleView.getCurrentTextColor());
+            ViewGroup.LayoutParams titleParams = titleView.getLayoutParams();
+            int titleMargin = titleParams instanceof ViewGroup.MarginLayoutParams ? ((ViewGroup.MarginLayoutParams) titleParams).bottomMargin : 0;
+            titleBlockHeight = titleView.getHeight() + titleMargin;
+            contentPaint = new TextPaint(contentView.getPaint());
+            contentPaint.setColor(contentView.getCurrentTextColor());
+            lineSpacingExtra = contentView.getLineSpacingExtra();
+            lineSpacingMultiplier = contentView.getLineSpacingMultiplier();
+            includeFontPadding = contentView.getIncludeFontPadding();
+            breakStrategy = contentView.getBreakStrategy();
+            hyphenationFrequency = contentView.getHyphenationFrequency();
+        }
+
+        // 页面还没有完成布局时返回null
+        @Nullable
+        public static Spec from(View pageView, ViewGroup container, TextView titleView, TextView contentView) {
+            if (pageView.getWidth() <= 0 || pageView.getHeight() <= 0) {
+                return null;
+            }
+            return new Spec(pageView, container, titleView, contentView);
+        }
+
+        boolean sameSize(Spec other) {
+            return other != null && width == other.width && height == other.height;
+        }
+    }
+
+    // 绘制一页，位图优先从位图池中复用
+    public static Bitmap render(Spec spec, String title, CharSequence content, BitmapPool bitmapPool) {
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.PAGE_RENDER)) {
+            section.setBytes(content.length() * 2L);
+            Bitmap bitmap = obtainBitmap(spec.width, spec.height, bitmapPool);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawColor(spec.backgroundColor);
+
+            int textWidth = Math.max(spec.width - spec.paddingLeft - spec.paddingRight, 1);
+            canvas.save();
+            canvas.translate(spec.paddingLeft, spec.paddingTop);
+            StaticLayout.Builder.obtain(title, 0, title.length(), spec.titlePaint, textWidth)
+                    .setAlignment(Layout.Alignment.ALIGN_CENTER)
+                    .build()
+                    .draw(canvas);
+            canvas.translate(0, spec.titleBlockHeight);
+            StaticLayout.Builder.obtain(content, 0, content.length(), spec.contentPaint, textWidth)
+                    .setLineSpacing(spec.lineSpacingExtra, spec.lineSpacingMultiplier)
+                    .setIncludePad(spec.includeFontPadding)
+                    .setBreakStrategy(spec.breakStrategy)
+                    .setHyphenationFrequency(spec.hyphenationFrequency)
+                    .build()
+                    .draw(canvas);
+            canvas.restore();
+
+            // 提前上传纹理，翻页第一帧不需要再等待上传
+            bitmap.prepareToDraw();
+            return bitmap;
+        }
+    }
+
+    private static Bitmap obtainBitmap(int width, int height, BitmapPool bitmapPool) {
+        Bitmap bitmap = bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+        if (bitmap != null) {
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+                bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            }
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.myapplication2;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 应用内性能统计：按阶段保存最近若干次的耗时和字节数，用于计算分位数
+// 数据只保存在内存中，可以通过logSummary()输出到日志或显示在调试面板上
+public class PerfMetrics {
+    private static final String TAG = "PerfMetrics";
+    // 每个阶段保留的最近样本数
+    static final int WINDOW_SIZE = 128;
+
+    private static PerfMetrics instance;
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+    public static synchronized PerfMetrics getInstance() {
+        if (instance == null) {
+            instance = new PerfMetrics();
+        }
+        return instance;
+    }
+
+    public void record(String name, long durationNanos, long bytes) {
+        Histogram histogram;
+        synchronized (histograms) {
+            histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new Histogram(name);
+                histograms.put(name, histogram);
+            }
+        }
+        histogram.add(durationNanos, bytes);
+    }
+
+    // 所有阶段当前窗口内的统计结果
+    public List<Stats> snapshot() {
+        List<Histogram> current;
+        synchronized (histograms) {
+            current = new ArrayList<>(histograms.values());
+        }
+        List<Stats> result = new ArrayList<>(current.size());
+        for (Histogram histogram : current) {
+            Stats stats = histogram.stats();
+            if (stats.count > 0) {
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    // 单个阶段的统计结果，还没有样本时返回null
+    @Nullable
+    public Stats get(String name) {
+        Histogram histogram;
+        synchronized (histograms) {
+            histogram = histograms.get(name);
+        }
+        if (histogram == null) {
+            return null;
+        }
+        Stats stats = histogram.stats();
+        return stats.count > 0 ? stats : null;
+    }
+
+    public void logSummary() {
+        for (Stats stats : snapshot()) {
+            Log.d(TAG, stats.toString());
+        }
+    }
+
+    public void clear() {
+        synchronized (histograms) {
+            histograms.clear();
+        }
+    }
+
+    // 一个阶段的统计结果，耗时单位为毫秒
+    public static class Stats {
+        public final String name;
+        public final long count;      // 启动以来的总次数
+        public final double lastMs;   // 最近一次的耗时
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+        public final double maxMs;
+        public final long avgBytes;   // 窗口内有字节数的样本的平均值，没有时为-1
+
+        Stats(String name, long count, double lastMs, double p50Ms, double p90Ms, double p99Ms, double maxMs, long avgBytes) {
+            this.name = name;
+            this.count = count;
+            this.lastMs = lastMs;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.avgBytes = avgBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%s",
+                    name, count, p50Ms, p90Ms, p99Ms, maxMs, avgBytes >= 0 ? " avgBytes=" + avgBytes : "");
+        }
+    }
+
+    // 固定大小的环形缓冲区，新样本覆盖最旧的样本
+    static class Histogram {
+        private final String name;
+        private final long[] durations = new long[WINDOW_SIZE];
+        private final long[] bytes = new long[WINDOW_SIZE];
+        private int next = 0;
+        private long count = 0;
+
+        Histogram(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(long durationNanos, long byteCount) {
+            durations[next] = durationNanos;
+            bytes[next] = byteCount;
+            next = (next + 1) % WINDOW_SIZE;
+            count++;
+        }
+
+        synchronized Stats stats() {
+            int size = (int) Math.min(count, WINDOW_SIZE);
+            if (size == 0) {
+                return new Stats(name, 0, 0, 0, 0, 0, 0, -1);
+            }
+            long[] sorted = Arrays.copyOf(durations, size);
+            Arrays.sort(sorted);
+            long totalBytes = 0;
+            int byteSamples = 0;
+            for (int i = 0; i < size; i++) {
+                if (bytes[i] >= 0) {
+                    totalBytes += bytes[i];
+                    byteSamples++;
+                }
+            }
+            double lastMs = durations[(next + WINDOW_SIZE - 1) % WINDOW_SIZE] / 1e6;
+            return new Stats(name, count, lastMs, percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                    sorted[size - 1] / 1e6, byteSamples > 0 ? totalBytes / byteSamples : -1);
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.myapplication2;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+// 性能埋点：每个阶段同时写入systrace/Perfetto的Trace区段，并把耗时和处理的字节数记录到PerfMetrics
+// 用法：try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.EPUB_READ)) { ...; section.setBytes(size); }
+// Trace区段必须在开始的同一线程结束，所以只能配合try-with-resources使用
+public class PerfTrace {
+    // 各阶段名称，同时作为Trace区段名和统计项名
+    public static final String LOAD_EPUB_BOOK = "loadEpubBook";
+    public static final String EPUB_READ = "EpubReader.readEpub";
+    public static final String CHAPTER_DECODE = "chapterDecode";
+    public static final String CHAPTER_STORE_READ = "chapterStoreRead";
+    public static final String CHAPTER_CONVERT = "chapterConvert";
+    public static final String CHAPTER_PRECOMPUTE = "chapterPrecompute";
+    public static final String CHAPTER_SET_TEXT = "chapterSetText";
+    public static final String CHAPTER_LAYOUT = "chapterLayout";
+    public static final String IMAGE_DECODE = "imageDecode";
+    public static final String TXT_LOAD = "txtLoad";
+    public static final String TXT_INDEX = "txtIndex";
+    public static final String TXT_PAGE_READ = "txtPageRead";
+    // SharedPreferences.apply()只在主线程更新内存并排队写入，统计的是主线程上的耗时，不包含写入磁盘
+    public static final String PREFS_ENQUEUE = "prefsEnqueue";
+    public static final String LIBRARY_SNAPSHOT = "librarySnapshot";
+    public static final String LIBRARY_LOAD = "libraryLoad";
+    public static final String LIBRARY_COMPACT = "libraryCompact";
+    public static final String BOOK_FILE_OPERATION = "bookFileOperation";
+    public static final String CHAPTER_PAGINATE = "chapterPaginate";
+    public static final String PAGE_RENDER = "pageRender";
+
+    public static Section begin(String name) {
+        return new Section(name);
+    }
+
+    // 记录不在同一线程开始和结束的阶段（例如setText到首次绘制），不写入Trace区段
+    public static void record(String name, long durationNanos, long bytes) {
+        PerfMetrics.getInstance().record(name, durationNanos, bytes);
+    }
+
+    public static class Section implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private long bytes = -1;
+
+        Section(String name) {
+            this.name = name;
+            Trace.beginSection(name);
+            this.startNanos = SystemClock.elapsedRealtimeNanos();
+        }
+
+        // 本阶段处理的数据量，未知时不设置
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            long duration = SystemClock.elapsedRealtimeNanos() - startNanos;
+            Trace.endSection();
+            PerfMetrics.getInstance().record(name, duration, bytes);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myapplication2;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+import android.widget.TextView;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 开发者性能面板：显示最近一次章节加载各阶段耗时、堆内存、章节缓存命中率、后台任务数和掉帧数
+// 用户反馈“这本书很卡”时，可以直接在设备上复现并看到原因，不需要连接性能分析工具
+public class PerformanceHud implements Window.OnFrameMetricsAvailableListener {
+    private static final String TAG = "PerformanceHud";
+    private static final long REFRESH_INTERVAL_MS = 1000;
+    // 章节加载依次经过的阶段
+    private static final String[] CHAPTER_STAGES = {
+            PerfTrace.CHAPTER_STORE_READ, PerfTrace.CHAPTER_DECODE, PerfTrace.CHAPTER_PRECOMPUTE, PerfTrace.CHAPTER_SET_TEXT, PerfTrace.CHAPTER_LAYOUT
+    };
+
+    private final Activity activity;
+    private final TextView hudView;
+    private final ChapterCache chapterCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger totalFrames = new AtomicInteger();
+    private final AtomicInteger droppedFrames = new AtomicInteger();
+    private HandlerThread metricsThread;
+    private long frameIntervalNanos;
+    private boolean showing = false;
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!showing) {
+                return;
+            }
+            hudView.setText(buildReport());
+            mainHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    public PerformanceHud(Activity activity, TextView hudView, ChapterCache chapterCache) {
+        this.activity = activity;
+        this.hudView = hudView;
+        this.chapterCache = chapterCache;
+    }
+
+    public boolean isShowing() {
+        return showing;
+    }
+
+    public void toggle() {
+        if (showing) {
+            hide();
+        } else {
+            show();
+        }
+    }
+
+    public void show() {
+        if (showing) {
+            return;
+        }
+        Log.d(TAG, "show: Showing performance HUD");
+        showing = true;
+        float refreshRate = getDisplay().getRefreshRate();
+        frameIntervalNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+        totalFrames.set(0);
+        droppedFrames.set(0);
+        // 帧数据回调在单独的线程上，避免统计本身占用主线程
+        metricsThread = new HandlerThread("PerfHudFrameMetrics");
+        metricsThread.start();
+        activity.getWindow().addOnFrameMetricsAvailableListener(this, new Handler(metricsThread.getLooper()));
+        hudView.setVisibility(TextView.VISIBLE);
+        mainHandler.post(refreshRunnable);
+    }
+
+    public void hide() {
+        if (!showing) {
+            return;
+        }
+        Log.d(TAG, "hide: Hiding performance HUD");
+        showing = false;
+        mainHandler.removeCallbacks(refreshRunnable);
+        try {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(this);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "hide: Frame metrics listener was not registered", e);
+        }
+        if (metricsThread != null) {
+            metricsThread.quitSafely();
+            metricsThread = null;
+        }
+        hudView.setVisibility(TextView.GONE);
+    }
+
+    // WindowManager.getDefaultDisplay()从API 30起已弃用，改用Activity所在的显示器
+    @SuppressWarnings("deprecation")
+    private Display getDisplay() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return activity.getDisplay();
+        }
+        return activity.getWindowManager().getDefaultDisplay();
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+            return;
+        }
+        totalFrames.incrementAndGet();
+        // 总耗时超过一个刷新周期的帧视为掉帧
+        if (frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION) > frameIntervalNanos) {
+            droppedFrames.incrementAndGet();
+        }
+        // 监听线程来不及处理而丢失的帧数据也计入总数
+        totalFrames.addAndGet(dropCountSinceLastInvocation);
+    }
+
+    private String buildReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("章节加载 (最近 / p90)\n");
+        PerfMetrics metrics = PerfMetrics.getInstance();
+        for (String stage : CHAPTER_STAGES) {
+            PerfMetrics.Stats stats = metrics.get(stage);
+            if (stats != null) {
+                builder.append(String.format(Locale.ROOT, "  %-18s %6.1f / %6.1f ms\n", stage, stats.lastMs, stats.p90Ms));
+            } else {
+                builder.append(String.format(Locale.ROOT, "  %-18s      -\n", stage));
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        long maxMb = runtime.maxMemory() / (1024 * 1024);
+        builder.append(String.format(Locale.ROOT, "堆内存 %d / %d MB\n", usedMb, maxMb));
+
+        int hits = chapterCache.hitCount();
+        int misses = chapterCache.missCount();
+        int requests = hits + misses;
+        builder.append(String.format(Locale.ROOT, "章节缓存命中 %d / %d (%.0f%%)\n", hits, requests,
+                requests > 0 ? hits * 100f / requests : 0f));
+
+        builder.append("后台任务 ").append(TaskScheduler.getInstance().getPendingTaskCount()).append('\n');
+        builder.append(String.format(Locale.ROOT, "掉帧 %d / %d", droppedFrames.get(), totalFrames.get()));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication2;
+
+import android.graphics.ColorMatrix;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 阅读主题：背景色和字体颜色
+// 预设保存为"背景色:字体颜色"的十六进制列表，用逗号分隔
+public class ReaderTheme {
+    private static final String TAG = "ReaderTheme";
+
+    public final int backgroundColor;
+    public final int textColor;
+
+    public ReaderTheme(int backgroundColor, int textColor) {
+        this.backgroundColor = backgroundColor;
+        this.textColor = textColor;
+    }
+
+    // 内置预设：浅蓝（默认）、白天、护眼、羊皮纸、夜间
+    public static List<ReaderTheme> defaultPresets() {
+        List<ReaderTheme> presets = new ArrayList<>();
+        presets.add(new ReaderTheme(0xFFADD8E6, 0xFF000000));
+        presets.add(new ReaderTheme(0xFFFFFFFF, 0xFF212121));
+        presets.add(new ReaderTheme(0xFFC7EDCC, 0xFF2E3B2F));
+        presets.add(new ReaderTheme(0xFFF5E9D0, 0xFF4A3B2A));
+        presets.add(new ReaderTheme(0xFF1E1E1E, 0xFFB0B0B0));
+        return presets;
+    }
+
+    public static String encode(List<ReaderTheme> themes) {
+        StringBuilder builder = new StringBuilder(themes.size() * 18);
+        for (ReaderTheme theme : themes) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(Integer.toHexString(theme.backgroundColor)).append(':').append(Integer.toHexString(theme.textColor));
+        }
+        return builder.toString();
+    }
+
+    // 解析失败的条目直接跳过
+    public static List<ReaderTheme> decode(String data) {
+        List<ReaderTheme> themes = new ArrayList<>();
+        if (data == null || data.isEmpty()) {
+            return themes;
+        }
+        for (String item : data.split(",")) {
+            int separator = item.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+            try {
+                themes.add(new ReaderTheme((int) Long.parseLong(item.substring(0, separator), 16),
+                        (int) Long.parseLong(item.substring(separator + 1), 16)));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "decode: Skipping malformed preset " + item);
+            }
+        }
+        return themes;
+    }
+
+    // 颜色矩阵：把按from主题绘制的画面逐通道线性映射为to主题
+    // 抗锯齿的文字边缘是背景色和字体颜色的混合，映射后仍是新背景色和新字体颜色的混合，插图也会随之变色
+    public static void setTransform(ColorMatrix matrix, ReaderTheme from, ReaderTheme to) {
+        float[] array = matrix.getArray();
+        Arrays.fill(array, 0f);
+        for (int channel = 0; channel < 3; channel++) {
+            int shift = 16 - channel * 8;
+            int fromBackground = (from.backgroundColor >> shift) & 0xFF;
+            int fromText = (from.textColor >> shift) & 0xFF;
+            int toBackground = (to.backgroundColor >> shift) & 0xFF;
+            int toText = (to.textColor >> shift) & 0xFF;
+            float scale;
+            if (fromText != fromBackground) {
+                scale = (toText - toBackground) / (float) (fromText - fromBackground);
+            } else {
+                // 这个通道分不出文字和背景，整体按新背景色处理
+                scale = 0f;
+            }
+            array[channel * 5 + channel] = scale;
+            array[channel * 5 + 4] = toBackground - fromBackground * scale;
+        }
+        array[18] = 1f;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ReaderTheme)) {
+            return false;
+        }
+        ReaderTheme other = (ReaderTheme) o;
+        return backgroundColor == other.backgroundColor && textColor == other.textColor;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * backgroundColor + textColor;
+    }
+}
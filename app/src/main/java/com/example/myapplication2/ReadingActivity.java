@@ -1,18 +1,29 @@
 package com.example.myapplication2;
 
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.graphics.Color; // 添加缺失的Color类导入
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
 import android.provider.OpenableColumns;
-import android.text.Html;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.TextPaint;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.view.animation.AnimationSet;
@@ -20,6 +31,7 @@ import android.view.animation.ScaleAnimation;
 import android.view.animation.TranslateAnimation;
 import android.widget.ImageButton;
 import android.widget.ScrollView;
+import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -28,14 +40,23 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.List;
+import java.util.zip.ZipFile;
 
 import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Resource;
 import nl.siegmann.epublib.domain.Spine;
 import nl.siegmann.epublib.domain.SpineReference;
 import nl.siegmann.epublib.domain.TableOfContents;
@@ -56,6 +77,14 @@ public class ReadingActivity extends AppCompatActivity {
     private static final String LETTER_SPACING_PREF = "letterSpacing";
     private static final String BACKGROUND_COLOR_PREF = "backgroundColor"; // 添加背景色偏好键
     private static final String TEXT_COLOR_PREF = "textColor"; // 添加字体颜色偏好键
+    private static final String CONTINUOUS_SCROLL_PREF = "continuousScroll"; // 连续滚动模式偏好键
+    private static final String THEME_PRESETS_PREF = "themePresets"; // 主题预设偏好键
+    // 连续滚动时距离列表末端不足该屏数就开始加载相邻章节
+    private static final float STREAM_PRELOAD_SCREENS = 1.5f;
+    // 恢复连续滚动位置时最多等待第一章布局的帧数
+    private static final int STREAM_RESTORE_MAX_FRAMES = 10;
+    // 连续调整字体设置时，停止点击这么久之后才重新排版
+    private static final long TYPOGRAPHY_SETTLE_MS = 400;
     private ScrollView contentScrollView;
     private TextView contentTextView;
     private View menuLayer;
@@ -68,8 +97,12 @@ public class ReadingActivity extends AppCompatActivity {
     private ImageButton backgroundButton; // 添加背景色按钮变量
     private boolean isMenuVisible = false;
     private Book epubBook;
+    private Book acquiredBook; // 从BookCache获取的书籍，页面销毁时释放引用
+    private volatile int pendingRestoreOffset = -1; // 打开书籍后待恢复的章节内字符偏移
     private String bookTitle;
     private Uri bookUri;
+    private long bookId; // 书架分配的编号，不在书架上的书籍为0
+    private String stateKey; // 阅读进度的键前缀、共享缓存的键和附属文件名，见LibraryRepository.getStateKey
     private int currentPage = 0;
     private List<SpineReference> spineReferences;
     private SharedPreferences sharedPreferences;
@@ -82,8 +115,19 @@ public class ReadingActivity extends AppCompatActivity {
     private float currentTextSize = 18f; // 默认字体大小
     private float currentLineSpacing = 4f; // 默认行距
     private float currentLetterSpacing = 0f; // 默认字距
+    // 已应用到正文视图的字体设置；调整期间current*是设置层中显示的新值，正文只做缩放预览
+    private float appliedTextSize = 18f;
+    private float appliedLineSpacing = 4f;
+    private float appliedLetterSpacing = 0f;
+    private boolean typographyPending = false; // 有尚未应用的字体设置
+    private int typographyGeneration = 0; // 每次调整递增，丢弃过期的后台排版结果
+    private final Runnable applyTypographyRunnable = this::applyTypography;
     private int currentBackgroundColor = 0xFFADD8E6; // 默认背景色 (浅蓝色)
     private int currentTextColor = 0xFF000000; // 默认字体颜色 (黑色)
+    private List<ReaderTheme> themePresets; // 主题预设，首次使用时从偏好读取
+    // 选择颜色时的预览：阅读视图绘制到硬件层，用颜色矩阵把当前颜色映射为预览颜色，不修改文字也不重新排版
+    private final Paint themePreviewPaint = new Paint();
+    private final ColorMatrix themePreviewMatrix = new ColorMatrix();
     
     // 字体设置层中的控件
     private ImageButton btnFontSizeDecrease;
@@ -99,8 +143,38 @@ public class ReadingActivity extends AppCompatActivity {
     // 添加ActivityResultLauncher来处理目录页面的返回结果
     private ActivityResultLauncher<Intent> tocActivityResultLauncher;
     
-    private List<String> txtPages; // 存储TXT文件分页后的内容
+    private volatile ChapterStore chapterStore; // 导入时预转换的章节文件，尚未转换完成时为null
+    private volatile TxtCheckpointIndex txtIndex; // TXT文件的分页检查点索引，只在需要时解码单页
+    private ParcelFileDescriptor txtDescriptor; // 阅读期间保持打开的TXT文件
+    private FileChannel txtChannel;
+    private volatile TaskScheduler.Task txtPageTask; // 正在读取的TXT页
     private int currentTxtPage = 0; // 当前TXT文件页码
+    
+    // 插图缓存和已解析章节缓存（当前章节及预加载的相邻章节），容量由MemoryGovernor按设备内存等级决定
+    private ImageCache imageCache;
+    private ChapterCache chapterCache;
+    private MemoryGovernor memoryGovernor;
+    private LibraryRepository libraryRepository; // 书架数据，阅读进度发布到这里
+    
+    // 与页面生命周期绑定的后台任务
+    private TaskScope taskScope;
+    private volatile TaskScheduler.Task chapterLoadTask; // 正在加载的章节任务
+    private volatile int requestedChapterIndex = -1; // 最后一次请求显示的章节
+    private volatile int prefetchingChapterIndex = -1; // 正在预加载的章节
+    
+    // 开发者性能面板，长按字体设置标题切换
+    private PerformanceHud performanceHud;
+    
+    // 连续滚动模式：相邻章节首尾相接，只保留当前位置附近的几个章节
+    private RecyclerView chapterStreamView;
+    private LinearLayoutManager chapterStreamLayoutManager;
+    private ChapterStreamAdapter chapterStreamAdapter;
+    private Switch continuousScrollSwitch;
+    private boolean continuousScroll = false;
+    private int maxStreamChapters;
+    private int streamGeneration = 0; // 重新开始连续滚动时递增，丢弃之前发出的加载结果
+    private boolean streamAppending = false; // 正在加载列表末尾的下一章
+    private boolean streamPrepending = false; // 正在加载列表开头的上一章
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -133,8 +207,10 @@ public class ReadingActivity extends AppCompatActivity {
         // 获取传递的书籍信息
         String uriString = getIntent().getStringExtra("book_uri");
         bookTitle = getIntent().getStringExtra("book_title");
+        bookId = getIntent().getLongExtra("book_id", 0);
         if (uriString != null) {
             bookUri = Uri.parse(uriString);
+            stateKey = LibraryRepository.getStateKey(bookId, bookUri);
             // 请求持久的URI权限
             try {
                 getContentResolver().takePersistableUriPermission(bookUri, 
@@ -143,10 +219,21 @@ public class ReadingActivity extends AppCompatActivity {
                 Log.w(TAG, "无法获取URI权限: " + e.getMessage());
             }
         }
-        Log.d(TAG, "onCreate: bookUri=" + bookUri + ", bookTitle=" + bookTitle);
+        Log.d(TAG, "onCreate: bookUri=" + bookUri + ", bookId=" + bookId + ", bookTitle=" + bookTitle);
 
         // 初始化SharedPreferences
         sharedPreferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        libraryRepository = LibraryRepository.getInstance(this);
+        
+        // 后台任务随页面销毁自动取消
+        taskScope = new TaskScope(this);
+        
+        // 创建缓存并登记到内存调控，内存紧张时按代价依次释放
+        memoryGovernor = MemoryGovernor.getInstance(this);
+        imageCache = new ImageCache(memoryGovernor.getImageCacheBytes(), BitmapPool.getInstance());
+        chapterCache = new ChapterCache(memoryGovernor.getChapterCacheSize());
+        memoryGovernor.register(imageCache, MemoryGovernor.Cost.CHEAP);
+        memoryGovernor.register(chapterCache, MemoryGovernor.Cost.MODERATE);
 
         initViews();
         setupClickListeners();
@@ -203,6 +290,7 @@ public class ReadingActivity extends AppCompatActivity {
         tocButton = findViewById(R.id.tocButton);
         settingsButton = findViewById(R.id.settingsButton);
         backgroundButton = findViewById(R.id.backgroundButton); // 初始化背景色按钮
+        performanceHud = new PerformanceHud(this, findViewById(R.id.perfHudView), chapterCache);
         
         // 初始化字体设置层中的控件
         if (fontSettingsLayer != null) {
@@ -234,6 +322,31 @@ public class ReadingActivity extends AppCompatActivity {
         
         // 初始化菜单视图引用
         topMenu = findViewById(R.id.topMenu);
+        
+        // 连续滚动列表，章节排版参数取自正文视图
+        chapterStreamView = findViewById(R.id.chapterStreamView);
+        chapterStreamLayoutManager = new LinearLayoutManager(this);
+        chapterStreamView.setLayoutManager(chapterStreamLayoutManager);
+        chapterStreamAdapter = new ChapterStreamAdapter(contentTextView, chapterCache);
+        chapterStreamView.setAdapter(chapterStreamAdapter);
+        // 增删章节时不做动画，保持阅读位置不动
+        chapterStreamView.setItemAnimator(null);
+        chapterStreamView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                onChapterStreamScrolled();
+            }
+            
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    // 停止滚动后移除超出数量的章节，不在滚动回调中修改列表
+                    chapterStreamView.post(() -> trimChapterStream());
+                }
+            }
+        });
+        maxStreamChapters = memoryGovernor.getChapterCacheSize() + 1;
+        continuousScrollSwitch = fontSettingsLayer.findViewById(R.id.switch_continuous_scroll);
         bottomMenu = findViewById(R.id.bottomMenu);
     }
     
@@ -245,6 +358,10 @@ public class ReadingActivity extends AppCompatActivity {
         currentLetterSpacing = sharedPreferences.getFloat(LETTER_SPACING_PREF, 0f);
         currentBackgroundColor = sharedPreferences.getInt(BACKGROUND_COLOR_PREF, 0xFFADD8E6);
         currentTextColor = sharedPreferences.getInt(TEXT_COLOR_PREF, 0xFF000000);
+        continuousScroll = sharedPreferences.getBoolean(CONTINUOUS_SCROLL_PREF, false);
+        if (continuousScrollSwitch != null) {
+            continuousScrollSwitch.setChecked(continuousScroll);
+        }
         
         // 应用设置到文本视图
         contentTextView.setTextSize(TypedValue.COMPLEX_UNIT_SP, currentTextSize);
@@ -253,16 +370,21 @@ public class ReadingActivity extends AppCompatActivity {
             1f);
 
         contentTextView.setLetterSpacing(currentLetterSpacing);
+        appliedTextSize = currentTextSize;
+        appliedLineSpacing = currentLineSpacing;
+        appliedLetterSpacing = currentLetterSpacing;
         contentTextView.setTextColor(currentTextColor); // 应用字体颜色
 
         // 应用背景色
         contentScrollView.setBackgroundColor(currentBackgroundColor);
+        chapterStreamView.setBackgroundColor(currentBackgroundColor);
         
         Log.d(TAG, "restoreUserSettings: Font size=" + currentTextSize + 
               ", Line spacing=" + currentLineSpacing + 
               ", Letter spacing=" + currentLetterSpacing +
               ", Background color=" + Integer.toHexString(currentBackgroundColor) +
-              ", Text color=" + Integer.toHexString(currentTextColor));
+              ", Text color=" + Integer.toHexString(currentTextColor) +
+              ", Continuous scroll=" + continuousScroll);
     }
     
     // 保存用户设置
@@ -329,7 +451,7 @@ public class ReadingActivity extends AppCompatActivity {
                                 event.getMetaState()
                             );
                             // 将事件传递给ScrollView
-                            contentScrollView.dispatchTouchEvent(scrollEvent);
+                            getReadingScrollView().dispatchTouchEvent(scrollEvent);
                             scrollEvent.recycle();
                         }
                         
@@ -344,7 +466,7 @@ public class ReadingActivity extends AppCompatActivity {
                                 event.getY(pointerIndex),
                                 event.getMetaState()
                             );
-                            contentScrollView.dispatchTouchEvent(scrollEvent);
+                            getReadingScrollView().dispatchTouchEvent(scrollEvent);
                             scrollEvent.recycle();
                             return true; // 消费MOVE事件
                         }
@@ -362,7 +484,7 @@ public class ReadingActivity extends AppCompatActivity {
                                 event.getY(pointerIndex),
                                 event.getMetaState()
                             );
-                            contentScrollView.dispatchTouchEvent(scrollEvent);
+                            getReadingScrollView().dispatchTouchEvent(scrollEvent);
                             scrollEvent.recycle();
                             isScrolling = false;
                             return true; // 消费UP事件
@@ -397,7 +519,7 @@ public class ReadingActivity extends AppCompatActivity {
                                 event.getY(pointerIndex),
                                 event.getMetaState()
                             );
-                            contentScrollView.dispatchTouchEvent(scrollEvent);
+                            getReadingScrollView().dispatchTouchEvent(scrollEvent);
                             scrollEvent.recycle();
                             isScrolling = false;
                         }
@@ -422,6 +544,16 @@ public class ReadingActivity extends AppCompatActivity {
                 hideFontSettingsLayer();
             });
         }
+        
+        // 长按字体设置标题切换开发者性能面板
+        View fontSettingsTitle = fontSettingsLayer.findViewById(R.id.fontSettingsTitle);
+        if (fontSettingsTitle != null) {
+            fontSettingsTitle.setOnLongClickListener(v -> {
+                Log.d(TAG, "fontSettingsTitle long clicked: toggling performance HUD");
+                performanceHud.toggle();
+                return true;
+            });
+        }
 
         // 返回按钮
         backButton.setOnClickListener(v -> {
@@ -474,6 +606,15 @@ public class ReadingActivity extends AppCompatActivity {
             btnLetterSpacingIncrease.setOnClickListener(v -> increaseLetterSpacing());
         }
         
+        // 连续滚动模式开关
+        if (continuousScrollSwitch != null) {
+            continuousScrollSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                if (isChecked != continuousScroll) {
+                    setContinuousScroll(isChecked);
+                }
+            });
+        }
+        
         // 翻页按钮
         previousPageButton.setOnClickListener(v -> {
             Log.d(TAG, "previousPageButton clicked");
@@ -491,7 +632,7 @@ public class ReadingActivity extends AppCompatActivity {
         // 显示加载提示
         contentTextView.setText("加载中");
         
-        new Thread(() -> {
+        taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
             try {
                 // 检查文件扩展名以确定文件类型
                 String fileName = getFileNameFromUri(bookUri);
@@ -507,18 +648,28 @@ public class ReadingActivity extends AppCompatActivity {
                         Spine spine = epubBook.getSpine();
                         spineReferences = spine.getSpineReferences();
                         Log.d(TAG, "loadBookContent: spineReferences size=" + spineReferences.size());
+                        openChapterStore();
                         
                         // 保存总章节数
                         saveTotalChapters(spineReferences.size());
                         
                         // 恢复阅读进度
                         int savedPage = getSavedProgress();
-                        Log.d(TAG, "loadBookContent: savedPage=" + savedPage);
+                        pendingRestoreOffset = getSavedOffset();
+                        Log.d(TAG, "loadBookContent: savedPage=" + savedPage + ", savedOffset=" + pendingRestoreOffset);
                         // 加载保存的页面内容或第一页内容
-                        loadPageContent(savedPage, true); // 恢复进度时保持滚动位置
+                        int savedOffset = pendingRestoreOffset;
+                        taskScope.postToUi(() -> {
+                            if (isStreamMode()) {
+                                pendingRestoreOffset = -1;
+                                startChapterStream(savedPage, savedOffset);
+                            } else {
+                                loadPageContent(savedPage, true); // 恢复进度时保持滚动位置
+                            }
+                        });
                     } else {
                         Log.e(TAG, "loadBookContent: Failed to load EPUB book");
-                        runOnUiThread(() -> {
+                        taskScope.postToUi(() -> {
                             contentTextView.setText("无法加载书籍内容");
                             Toast.makeText(ReadingActivity.this, "加载书籍失败", Toast.LENGTH_LONG).show();
                         });
@@ -526,226 +677,239 @@ public class ReadingActivity extends AppCompatActivity {
                 }
             } catch (Exception e) {
                 Log.e(TAG, "加载书籍时出错", e);
-                runOnUiThread(() -> {
+                taskScope.postToUi(() -> {
                     contentTextView.setText("加载书籍时出错: " + e.getMessage());
                     Toast.makeText(ReadingActivity.this, "加载书籍时出错", Toast.LENGTH_LONG).show();
                 });
             } catch (OutOfMemoryError e) {
                 Log.e(TAG, "内存不足，无法加载书籍", e);
-                runOnUiThread(() -> {
+                taskScope.postToUi(() -> {
                     contentTextView.setText("内存不足，无法加载书籍");
                     Toast.makeText(ReadingActivity.this, "内存不足，无法加载书籍", Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
     
-    // 加载TXT格式的书籍
+    // 加载TXT格式的书籍：只建立（或读取保存的）分页检查点索引，然后只解码要显示的那一页
     private void loadTxtBook() {
         Log.d(TAG, "loadTxtBook: Loading TXT book from URI: " + bookUri);
-        try (InputStream inputStream = getContentResolver().openInputStream(bookUri)) {
-            if (inputStream != null) {
-                // 自动检测编码并正确读取TXT文件
-                String charsetName = detectCharset(inputStream);
-                Log.d(TAG, "loadTxtBook: Detected charset: " + charsetName);
+        ParcelFileDescriptor descriptor = null;
+        try {
+            descriptor = getContentResolver().openFileDescriptor(bookUri, "r");
+            if (descriptor != null) {
+                FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+                if (!isSeekable(descriptor, channel)) {
+                    // 管道等不能定位的来源：按顺序读出复制到缓存目录，之后按位置读取副本
+                    closeDescriptor(descriptor);
+                    descriptor = null;
+                    descriptor = copyTxtToCache();
+                    channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+                }
+                long fileSize = descriptor.getStatSize();
+                // 文件未变化时直接使用上次保存的索引，不需要重新扫描整个文件
+                File indexFile = getTxtIndexFile();
+                TxtCheckpointIndex index = TxtCheckpointIndex.readFrom(indexFile, channel, TxtPaginator.DEFAULT_PAGE_CHARS);
+                if (index != null) {
+                    Log.d(TAG, "loadTxtBook: Using saved index, charset: " + index.getCharset());
+                } else {
+                    // 在同一个通道上采样检测编码，检测只做按位置读取，不需要重新打开文件
+                    CharsetDetector.Result detected;
+                    try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.TXT_LOAD)) {
+                        section.setBytes(fileSize);
+                        detected = CharsetDetector.detect(channel);
+                    }
+                    Log.d(TAG, "loadTxtBook: Detected charset: " + detected);
+                    
+                    // 只扫描字节记录每页起点，不保存页内容
+                    try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.TXT_INDEX)) {
+                        section.setBytes(fileSize);
+                        index = TxtCheckpointIndex.build(channel, detected.charset, detected.bomLength,
+                                TxtPaginator.DEFAULT_PAGE_CHARS);
+                    }
+                    try {
+                        index.writeTo(indexFile);
+                    } catch (IOException e) {
+                        Log.w(TAG, "loadTxtBook: Failed to save index: " + e.getMessage());
+                    }
+                }
                 
-                // 重新打开输入流，因为detectCharset已经读取了部分数据
-                try (InputStream newInputStream = getContentResolver().openInputStream(bookUri)) {
-                    if (newInputStream != null) {
-                        // 分块读取大文件，避免OOM
-                        txtPages = new ArrayList<>();
-                        StringBuilder currentPage = new StringBuilder();
-                        
-                        // 使用BufferedReader按行读取，避免大字符串操作
-                        BufferedReader reader = new BufferedReader(new InputStreamReader(newInputStream, charsetName));
-                        String line;
-                        long totalChars = 0;
-                        
-                        while ((line = reader.readLine()) != null) {
-                            currentPage.append(line).append("\n");
-                            totalChars += line.length() + 1; // +1 for newline character
-                            
-                            // 每读取约20000个字符就分一页（避免单页内容过多）
-                            if (totalChars > 20000) {
-                                txtPages.add(currentPage.toString());
-                                currentPage = new StringBuilder();
-                                totalChars = 0; // 重置计数器
-                            }
-                        }
-                        reader.close();
-                        
-                        // 添加最后一页（如果有内容）
-                        if (currentPage.length() > 0) {
-                            txtPages.add(currentPage.toString());
+                int pageCount = index.getPageCount();
+                Log.d(TAG, "loadTxtBook: TXT book indexed successfully, pages: " + pageCount);
+                
+                // 恢复上次阅读的页，只从该页的检查点开始解码
+                int page = Math.max(0, Math.min(getSavedProgress(), pageCount - 1));
+                String pageText = null;
+                if (pageCount > 0) {
+                    try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.TXT_PAGE_READ)) {
+                        section.setBytes(index.getPageByteLength(page));
+                        pageText = index.readPage(channel, page);
+                    }
+                }
+                // 文件在阅读期间保持打开，翻页时按需读取
+                setTxtFile(descriptor, channel, index);
+                descriptor = null;
+                
+                // 在主线程中更新UI
+                String firstText = pageText;
+                taskScope.postToUi(() -> {
+                    if (firstText != null) {
+                        currentTxtPage = page;
+                        contentTextView.setText(firstText);
+                        updateTxtPageButtons();
+                        int savedOffset = getSavedOffset();
+                        if (savedOffset > 0) {
+                            restoreScrollOffset(savedOffset);
                         }
-                        
-                        Log.d(TAG, "loadTxtBook: TXT book loaded successfully, pages: " + txtPages.size());
-                        
-                        // 在主线程中更新UI
-                        runOnUiThread(() -> {
-                            if (!txtPages.isEmpty()) {
-                                currentTxtPage = 0;
-                                displayTxtPage();
-                                updateTxtPageButtons();
-                            } else {
-                                contentTextView.setText("文件内容为空");
-                            }
-                            
-                            // 保存总章节数
-                            saveTotalChapters(txtPages.size());
-                        });
                     } else {
-                        throw new Exception("无法重新打开输入流");
+                        contentTextView.setText("文件内容为空");
                     }
-                }
+                    
+                    // 保存总章节数
+                    saveTotalChapters(pageCount);
+                });
             } else {
                 Log.e(TAG, "loadTxtBook: Failed to open input stream");
-                runOnUiThread(() -> {
+                taskScope.postToUi(() -> {
                     contentTextView.setText("无法打开书籍文件");
                     Toast.makeText(ReadingActivity.this, "无法打开书籍文件", Toast.LENGTH_LONG).show();
                 });
             }
         } catch (SecurityException e) {
             Log.e(TAG, "没有权限访问TXT文件: " + e.getMessage(), e);
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 Toast.makeText(ReadingActivity.this, "没有权限访问TXT文件，请重新选择书籍", Toast.LENGTH_LONG).show();
             });
         } catch (OutOfMemoryError e) {
             Log.e(TAG, "内存不足，无法加载TXT文件", e);
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 contentTextView.setText("内存不足，无法加载书籍。请尝试阅读较小的文件。");
                 Toast.makeText(ReadingActivity.this, "内存不足，无法加载书籍", Toast.LENGTH_LONG).show();
             });
         } catch (Exception e) {
             Log.e(TAG, "解析TXT文件时出错", e);
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 Toast.makeText(ReadingActivity.this, "解析TXT文件时出错: " + e.getMessage(), Toast.LENGTH_LONG).show();
             });
+        } finally {
+            closeDescriptor(descriptor);
         }
     }
     
-    // 检测TXT文件的字符编码
-    private String detectCharset(InputStream inputStream) {
+    // 编码检测、建立索引和翻页都按位置读取，需要能定位的普通文件
+    private static boolean isSeekable(ParcelFileDescriptor descriptor, FileChannel channel) {
+        if (descriptor.getStatSize() < 0) {
+            return false;
+        }
         try {
-            // 读取文件开头的部分字节用于编码检测
-            byte[] headBuffer = new byte[4096];
-            int bytesRead = inputStream.read(headBuffer);
-            
-            if (bytesRead == -1) {
-                // 文件为空，使用默认编码
-                return "UTF-8";
-            }
-            
-            // 检查BOM标记
-            if (bytesRead >= 3 && headBuffer[0] == (byte)0xEF && headBuffer[1] == (byte)0xBB && headBuffer[2] == (byte)0xBF) {
-                // UTF-8 BOM
-                return "UTF-8";
-            } else if (bytesRead >= 2 && headBuffer[0] == (byte)0xFF && headBuffer[1] == (byte)0xFE) {
-                // UTF-16 LE BOM
-                return "UTF-16LE";
-            } else if (bytesRead >= 2 && headBuffer[0] == (byte)0xFE && headBuffer[1] == (byte)0xFF) {
-                // UTF-16 BE BOM
-                return "UTF-16BE";
-            } else if (bytesRead >= 4 && headBuffer[0] == (byte)0xFF && headBuffer[1] == 0x00 && headBuffer[2] == 0x00 && headBuffer[3] == 0x00) {
-                // UTF-32 BE BOM (FF 00 00 00)
-                return "UTF-32BE";
-            } else if (bytesRead >= 4 && headBuffer[0] == (byte)0x00 && headBuffer[1] == 0x00 && headBuffer[2] == 0x00 && headBuffer[3] == (byte)0xFF) {
-                // UTF-32 LE BOM (00 00 00 FF)
-                return "UTF-32LE";
-            } else if (bytesRead >= 4 && headBuffer[0] == (byte)0x00 && headBuffer[1] == 0x00 && headBuffer[2] == (byte)0xFE && headBuffer[3] == (byte)0xFF) {
-                // UTF-32 BE BOM (00 00 FE FF)
-                return "UTF-32BE";
-            } else if (bytesRead >= 4 && headBuffer[0] == (byte)0xFF && headBuffer[1] == (byte)0xFE && headBuffer[2] == 0x00 && headBuffer[3] == 0x00) {
-                // UTF-32 LE BOM (FF FE 00 00)
-                return "UTF-32LE";
-            }
-            
-            // 检查是否可能为UTF-8（无BOM）
-            if (isUtf8(headBuffer, bytesRead)) {
-                return "UTF-8";
-            }
-            
-            // 检查是否为GBK编码（中文）
-            if (isGbk(headBuffer, bytesRead)) {
-                return "GBK";
-            }
-            
-            // 默认使用UTF-8
-            return "UTF-8";
-        } catch (Exception e) {
-            Log.e(TAG, "detectCharset: Error detecting charset, using UTF-8 as default", e);
-            return "UTF-8";
+            channel.position(0);
+            return true;
+        } catch (IOException e) {
+            return false;
         }
     }
-    
-    // 简单检测是否为UTF-8编码
-    private boolean isUtf8(byte[] buffer, int length) {
-        int i = 0;
-        while (i < length) {
-            // 检查单字节字符 (0xxxxxxx)
-            if ((buffer[i] & 0x80) == 0) {
-                i++;
-            }
-            // 检查双字节字符 (110xxxxx 10xxxxxx)
-            else if ((buffer[i] & 0xE0) == 0xC0) {
-                if (i + 1 >= length || (buffer[i + 1] & 0xC0) != 0x80) {
-                    return false;
+
+    // 把不能定位的TXT来源按流复制到缓存目录，返回副本的文件描述符
+    // 副本按书籍状态键命名，书籍删除后由LibraryCompactor清理；来源的大小和修改时间与上次复制时一致则直接使用副本
+    private ParcelFileDescriptor copyTxtToCache() throws IOException {
+        File copyFile = new File(new File(getCacheDir(), "txt_stream"), stateKey + ".txt");
+        long sourceSize = -1;
+        long sourceModified = 0;
+        try (Cursor cursor = getContentResolver().query(bookUri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                    sourceSize = cursor.getLong(sizeIndex);
                 }
-                i += 2;
-            }
-            // 检查三字节字符 (1110xxxx 10xxxxxx 10xxxxxx)
-            else if ((buffer[i] & 0xF0) == 0xE0) {
-                if (i + 2 >= length || (buffer[i + 1] & 0xC0) != 0x80 || (buffer[i + 2] & 0xC0) != 0x80) {
-                    return false;
+                int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                if (modifiedIndex >= 0 && !cursor.isNull(modifiedIndex)) {
+                    sourceModified = cursor.getLong(modifiedIndex);
                 }
-                i += 3;
-            }
-            // 检查四字节字符 (11110xxx 10xxxxxx 10xxxxxx 10xxxxxx)
-            else if ((buffer[i] & 0xF8) == 0xF0) {
-                if (i + 3 >= length || (buffer[i + 1] & 0xC0) != 0x80 || (buffer[i + 2] & 0xC0) != 0x80 || (buffer[i + 3] & 0xC0) != 0x80) {
-                    return false;
-                }
-                i += 4;
-            } else {
-                // 不符合UTF-8编码规则
-                return false;
             }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "copyTxtToCache: Failed to query source", e);
         }
-        return true;
-    }
-    
-    // 简单检测是否可能为GBK编码
-    private boolean isGbk(byte[] buffer, int length) {
-        try {
-            // 尝试用GBK解码一部分数据，看是否会产生异常
-            String str = new String(buffer, 0, Math.min(length, 1024), "GBK");
-            // 检查解码后的字符串是否包含明显的乱码字符
-            // 这里使用一个简单的启发式方法：如果解码后的字符串中包含较多的问号或方块字符，可能不是GBK
-            int invalidCharCount = 0;
-            for (int i = 0; i < str.length(); i++) {
-                char c = str.charAt(i);
-                if (c == 0xfffd || c < 32 && c != '\n' && c != '\r' && c != '\t') {
-                    invalidCharCount++;
-                }
+        // 副本的修改时间取自来源，来源的大小或修改时间未知时无法判断副本是否过期，重新复制
+        if (sourceSize >= 0 && sourceModified > 0 && copyFile.length() == sourceSize
+                && copyFile.lastModified() == sourceModified) {
+            Log.d(TAG, "copyTxtToCache: Reusing copy, size=" + sourceSize);
+            return ParcelFileDescriptor.open(copyFile, ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+
+        File directory = copyFile.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+        // 先写入临时文件，复制中途失败不会留下看起来完整的副本
+        File tempFile = new File(copyFile.getPath() + ".tmp");
+        try (InputStream inputStream = getContentResolver().openInputStream(bookUri);
+             OutputStream outputStream = new FileOutputStream(tempFile)) {
+            if (inputStream == null) {
+                throw new IOException("无法打开书籍文件");
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, count);
             }
-            // 如果无效字符比例小于30%，则可能是GBK编码
-            return ((double) invalidCharCount / str.length()) < 0.3;
-        } catch (Exception e) {
-            return false;
         }
+        if (!tempFile.renameTo(copyFile)) {
+            tempFile.delete();
+            throw new IOException("无法保存书籍副本");
+        }
+        if (sourceModified > 0 && !copyFile.setLastModified(sourceModified)) {
+            Log.w(TAG, "copyTxtToCache: Failed to set modified time of " + copyFile);
+        }
+        Log.d(TAG, "copyTxtToCache: Copied non-seekable source, size=" + copyFile.length());
+        return ParcelFileDescriptor.open(copyFile, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    // TXT索引保存在应用私有目录，按书籍编号区分
+    private File getTxtIndexFile() {
+        return new File(new File(getFilesDir(), "txt_index"), stateKey + ".idx");
     }
     
-    // 显示TXT文件当前页
+    // 显示TXT文件当前页：在后台从该页的检查点读取，显示后回到页首
     private void displayTxtPage() {
-        if (txtPages != null && !txtPages.isEmpty() && currentTxtPage >= 0 && currentTxtPage < txtPages.size()) {
-            contentTextView.setText(txtPages.get(currentTxtPage));
-            Log.d(TAG, "displayTxtPage: Displaying page " + (currentTxtPage + 1) + "/" + txtPages.size());
+        TxtCheckpointIndex index = txtIndex;
+        FileChannel channel = txtChannel;
+        if (index == null || channel == null || currentTxtPage < 0 || currentTxtPage >= index.getPageCount()) {
+            return;
+        }
+        int page = currentTxtPage;
+        // 快速连续翻页时只保留最后一次请求；不中断线程，否则会关闭文件通道
+        TaskScheduler.Task previousTask = txtPageTask;
+        if (previousTask != null) {
+            previousTask.cancel(false);
         }
+        txtPageTask = taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+            try {
+                String text;
+                try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.TXT_PAGE_READ)) {
+                    section.setBytes(index.getPageByteLength(page));
+                    text = index.readPage(channel, page);
+                }
+                taskScope.postToUi(() -> {
+                    if (page != currentTxtPage) {
+                        return;
+                    }
+                    contentTextView.setText(text);
+                    contentScrollView.scrollTo(0, 0); // 滚动到顶部
+                    Log.d(TAG, "displayTxtPage: Displaying page " + (page + 1) + "/" + index.getPageCount());
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "displayTxtPage: Failed to read page " + page, e);
+                taskScope.postToUi(() -> {
+                    Toast.makeText(ReadingActivity.this, "读取TXT文件时出错: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
     }
     
     // 更新TXT文件翻页按钮状态
     private void updateTxtPageButtons() {
-        if (txtPages == null || txtPages.isEmpty()) return;
+        TxtCheckpointIndex index = txtIndex;
+        if (index == null || index.getPageCount() == 0) return;
         
         // 检查按钮是否需要显示
         boolean shouldShowButtons = !isMenuVisible && fontSettingsLayer.getVisibility() != View.VISIBLE;
@@ -764,7 +928,7 @@ public class ReadingActivity extends AppCompatActivity {
             
             // 更新按钮启用状态
             previousPageButton.setEnabled(currentTxtPage > 0);
-            nextPageButton.setEnabled(currentTxtPage < txtPages.size() - 1);
+            nextPageButton.setEnabled(currentTxtPage < index.getPageCount() - 1);
         } else {
             // 隐藏翻页按钮
             previousPageButton.setVisibility(View.GONE);
@@ -774,11 +938,10 @@ public class ReadingActivity extends AppCompatActivity {
     
     // TXT文件上一页
     private void txtPreviousPage() {
-        if (txtPages != null && currentTxtPage > 0) {
+        if (txtIndex != null && currentTxtPage > 0) {
             currentTxtPage--;
             displayTxtPage();
             updateTxtPageButtons();
-            contentScrollView.scrollTo(0, 0); // 滚动到顶部
             
             // 保存阅读进度
             saveProgress(currentTxtPage);
@@ -789,11 +952,10 @@ public class ReadingActivity extends AppCompatActivity {
     
     // TXT文件下一页
     private void txtNextPage() {
-        if (txtPages != null && currentTxtPage < txtPages.size() - 1) {
+        if (txtIndex != null && currentTxtPage < txtIndex.getPageCount() - 1) {
             currentTxtPage++;
             displayTxtPage();
             updateTxtPageButtons();
-            contentScrollView.scrollTo(0, 0); // 滚动到顶部
             
             // 保存阅读进度
             saveProgress(currentTxtPage);
@@ -828,19 +990,52 @@ public class ReadingActivity extends AppCompatActivity {
         return fileName;
     }
     
+    @SuppressWarnings("try")
     private Book loadEpubBook() {
         Log.d(TAG, "loadEpubBook: Loading EPUB book from URI: " + bookUri);
-        try (InputStream epubInputStream = getContentResolver().openInputStream(bookUri)) {
-            return new EpubReader().readEpub(epubInputStream);
+        releaseAcquiredBook();
+        String bookKey = stateKey;
+        // 目录页或上次打开时已解析过的书籍直接复用
+        Book cachedBook = BookCache.getInstance().acquire(bookKey);
+        if (cachedBook != null) {
+            Log.d(TAG, "loadEpubBook: Reusing cached book");
+            setAcquiredBook(cachedBook);
+            return cachedBook;
+        }
+        
+        ZipFile zipFile = null;
+        try (PerfTrace.Section loadSection = PerfTrace.begin(PerfTrace.LOAD_EPUB_BOOK)) {
+            Book book;
+            // 本地文件按需从压缩包读取章节，避免一次性把全书解压到内存
+            if ("file".equals(bookUri.getScheme()) && bookUri.getPath() != null) {
+                long fileSize = new File(bookUri.getPath()).length();
+                loadSection.setBytes(fileSize);
+                zipFile = new ZipFile(bookUri.getPath());
+                try (PerfTrace.Section readSection = PerfTrace.begin(PerfTrace.EPUB_READ)) {
+                    readSection.setBytes(fileSize);
+                    book = new EpubReader().readEpubLazy(zipFile, "UTF-8");
+                }
+            } else {
+                try (InputStream epubInputStream = getContentResolver().openInputStream(bookUri);
+                     PerfTrace.Section readSection = PerfTrace.begin(PerfTrace.EPUB_READ)) {
+                    book = new EpubReader().readEpub(epubInputStream);
+                }
+            }
+            // 压缩包交给缓存管理，书籍不再被任何页面使用并被移出缓存后才关闭
+            BookCache.getInstance().putAndAcquire(bookKey, book, zipFile);
+            setAcquiredBook(book);
+            return book;
         } catch (SecurityException e) {
+            closeZipFile(zipFile);
             Log.e(TAG, "没有权限访问EPUB文件: " + e.getMessage(), e);
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 Toast.makeText(ReadingActivity.this, "没有权限访问EPUB文件，请重新选择书籍", Toast.LENGTH_LONG).show();
             });
             return null;
         } catch (Exception e) {
+            closeZipFile(zipFile);
             Log.e(TAG, "解析EPUB文件时出错", e);
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 Toast.makeText(ReadingActivity.this, "解析EPUB文件时出错: " + e.getMessage(), Toast.LENGTH_LONG).show();
             });
             return null;
@@ -852,54 +1047,511 @@ public class ReadingActivity extends AppCompatActivity {
         Log.d(TAG, "loadPageContent: pageIndex=" + pageIndex + ", preserveScrollPosition=" + preserveScrollPosition);
         if (spineReferences == null || pageIndex < 0 || pageIndex >= spineReferences.size()) {
             Log.w(TAG, "loadPageContent: Invalid page index or spineReferences null");
-            runOnUiThread(() -> {
+            taskScope.postToUi(() -> {
                 contentTextView.setText("没有更多内容");
             });
             return;
         }
         
-        new Thread(() -> {
+        // 快速翻页时取消尚未完成的旧请求，只加载最后请求的章节
+        requestedChapterIndex = pageIndex;
+        TaskScheduler.Task previousTask = chapterLoadTask;
+        if (previousTask != null) {
+            previousTask.cancel(true);
+        }
+        
+        // 命中预加载缓存时直接显示
+        ChapterCache.Entry cachedEntry = chapterCache.get(pageIndex);
+        if (cachedEntry != null) {
+            Log.d(TAG, "loadPageContent: Chapter " + pageIndex + " found in cache");
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                displayChapter(cachedEntry, preserveScrollPosition);
+            } else {
+                taskScope.postToUi(() -> displayChapter(cachedEntry, preserveScrollPosition));
+            }
+            return;
+        }
+        
+        // 启动后台任务前确定插图的最大显示宽度和文字排版参数
+        int imageMaxWidth = getImageMaxWidth();
+        PrecomputedTextCompat.Params textMetricsParams = TextViewCompat.getTextMetricsParams(contentTextView);
+        chapterLoadTask = taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
             try {
-                SpineReference spineReference = spineReferences.get(pageIndex);
-                String content = new String(spineReference.getResource().getData());
-                Log.d(TAG, "loadPageContent: Content loaded, length=" + content.length());
-                
-                runOnUiThread(() -> {
-                    // 使用Html.fromHtml来正确解析HTML内容
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-                        contentTextView.setText(Html.fromHtml(content, Html.FROM_HTML_MODE_LEGACY));
-                    } else {
-                        contentTextView.setText(Html.fromHtml(content));
-                    }
-                    currentPage = pageIndex;
-                    updatePageButtons();
-                    
-                    // 只有在恢复进度时才保持滚动位置，翻页时滚动到顶部
-                    if (!preserveScrollPosition) {
-                        Log.d(TAG, "loadPageContent: Scrolling to top");
-                        contentScrollView.scrollTo(0, 0);
-                    }
-                });
+                ChapterCache.Entry entry;
+                try {
+                    entry = decodeChapter(pageIndex, imageMaxWidth, textMetricsParams, TaskScheduler.Priority.VISIBLE);
+                } catch (OutOfMemoryError e) {
+                    // 先释放可重建的缓存再重试一次，大书在内存紧张时降级而不是直接失败
+                    Log.w(TAG, "loadPageContent: Out of memory, trimming caches and retrying", e);
+                    memoryGovernor.trimMemoryAndWait(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+                    entry = decodeChapter(pageIndex, imageMaxWidth, textMetricsParams, TaskScheduler.Priority.VISIBLE);
+                }
+                chapterCache.put(pageIndex, entry);
+                ChapterCache.Entry decoded = entry;
+                taskScope.postToUi(() -> displayChapter(decoded, preserveScrollPosition));
             } catch (OutOfMemoryError e) {
                 Log.e(TAG, "内存不足，无法加载章节", e);
-                runOnUiThread(() -> {
+                taskScope.postToUi(() -> {
                     contentTextView.setText("内存不足，无法加载章节");
                     Toast.makeText(ReadingActivity.this, "内存不足，无法加载章节", Toast.LENGTH_LONG).show();
                 });
             } catch (Exception e) {
                 Log.e(TAG, "加载章节时出错", e);
-                runOnUiThread(() -> {
+                taskScope.postToUi(() -> {
                     contentTextView.setText("加载章节时出错: " + e.getMessage());
                     Toast.makeText(ReadingActivity.this, "加载章节时出错", Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
+    }
+    
+    // 打开预转换的章节文件，没有或已过期时在后台转换，完成前章节仍从XHTML解析
+    private void openChapterStore() {
+        ChapterStore store = ChapterStoreConverter.open(this, stateKey, bookUri);
+        if (store != null && store.getChapterCount() == spineReferences.size()) {
+            Log.d(TAG, "openChapterStore: Using converted chapters");
+            chapterStore = store;
+            return;
+        }
+        ChapterStoreConverter.convertInBackground(getApplicationContext(), stateKey, bookUri, converted -> {
+            if (converted.getChapterCount() == spineReferences.size()) {
+                chapterStore = converted;
+            }
+        });
+    }
+
+    // 读取并解析章节内容（在后台线程调用）
+    private ChapterCache.Entry decodeChapter(int chapterIndex, int imageMaxWidth, PrecomputedTextCompat.Params textMetricsParams,
+                                             TaskScheduler.Priority priority) throws Exception {
+        SpineReference spineReference = spineReferences.get(chapterIndex);
+        Resource resource = spineReference.getResource();
+        
+        // 插图通过ImageGetter异步解码
+        EpubImageGetter imageGetter = new EpubImageGetter(epubBook, resource.getHref(),
+                contentTextView, imageMaxWidth, imageCache, BitmapPool.getInstance(), priority);
+        Spanned spanned;
+        ChapterStore store = chapterStore;
+        if (store != null) {
+            // 预转换的章节直接按样式区间表生成，不再解析XHTML
+            try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_STORE_READ)) {
+                ChapterStore.Chapter chapter = store.readChapter(chapterIndex);
+                section.setBytes(chapter.text.length() * 2L);
+                spanned = ChapterStoreConverter.toSpanned(chapter, imageGetter);
+            }
+        } else {
+            // 按章节声明的编码边读边解析，不再复制整章字节和字符串
+            spanned = XhtmlDecoder.decode(resource, imageGetter);
+        }
+        Log.d(TAG, "decodeChapter: Content loaded, chapter=" + chapterIndex + ", length=" + spanned.length());
+        // 在后台完成文字测量，主线程setText时只需断行，长章节也不会卡顿
+        CharSequence content;
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_PRECOMPUTE)) {
+            section.setBytes(spanned.length() * 2L);
+            content = PrecomputedTextCompat.create(spanned, textMetricsParams);
+        }
+        return new ChapterCache.Entry(chapterIndex, content, imageGetter);
+    }
+    
+    // 显示已解析的章节
+    private void displayChapter(ChapterCache.Entry entry, boolean preserveScrollPosition) {
+        if (entry.chapterIndex != requestedChapterIndex) {
+            // 已经有更新的跳转请求，丢弃过期结果
+            return;
+        }
+        setChapterText(entry.content);
+        chapterCache.setDisplayed(entry);
+        currentPage = entry.chapterIndex;
+        updatePageButtons();
+        
+        // 恢复进度时滚动到保存的字符位置，翻页时滚动到顶部
+        int restoreOffset = pendingRestoreOffset;
+        pendingRestoreOffset = -1;
+        if (preserveScrollPosition && restoreOffset > 0) {
+            restoreScrollOffset(restoreOffset);
+        } else if (!preserveScrollPosition) {
+            Log.d(TAG, "displayChapter: Scrolling to top");
+            contentScrollView.scrollTo(0, 0);
+        }
+        
+        // 低优先级预加载下一章
+        prefetchChapter(currentPage + 1);
+    }
+    
+    // 设置章节正文，预计算参数与当前字体设置不一致时按普通文本设置
+    private void setChapterText(CharSequence content) {
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_SET_TEXT)) {
+            section.setBytes(content.length() * 2L);
+            if (content instanceof PrecomputedTextCompat) {
+                try {
+                    TextViewCompat.setPrecomputedText(contentTextView, (PrecomputedTextCompat) content);
+                    return;
+                } catch (IllegalArgumentException e) {
+                    Log.d(TAG, "setChapterText: Text metrics changed, measuring on main thread");
+                }
+            }
+            contentTextView.setText(content);
+        } finally {
+            measureLayout(content.length());
+        }
+    }
+    
+    // 记录setText之后到下一次绘制前的布局耗时（断行和测量在此期间完成）
+    private void measureLayout(int length) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        contentTextView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                contentTextView.getViewTreeObserver().removeOnPreDrawListener(this);
+                PerfTrace.record(PerfTrace.CHAPTER_LAYOUT, SystemClock.elapsedRealtimeNanos() - startNanos, length * 2L);
+                return true;
+            }
+        });
     }
     
-    // 重载方法，默认翻页时不保持滚动位置
+    // 在下一次绘制前把字符偏移换算为所在行并滚动到该行，不会先闪现章节开头
+    // 限制：ScrollView中的TextView总是为整章建立一个Layout，首帧前仍要排版整章；恢复位置本身只是在已有Layout上查找行
+    // 字形测量已通过PrecomputedText移到后台，主线程上只剩断行，只排版可见部分需要改为按段落分块显示
+    private void restoreScrollOffset(int charOffset) {
+        contentTextView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                Layout layout = contentTextView.getLayout();
+                if (layout == null) {
+                    return true;
+                }
+                contentTextView.getViewTreeObserver().removeOnPreDrawListener(this);
+                int offset = Math.min(charOffset, contentTextView.getText().length());
+                int line = layout.getLineForOffset(offset);
+                int y = contentTextView.getTop() + contentTextView.getTotalPaddingTop() + layout.getLineTop(line);
+                Log.d(TAG, "restoreScrollOffset: offset=" + offset + ", line=" + line + ", y=" + y);
+                contentScrollView.scrollTo(0, y);
+                // 跳过这一帧，下一帧直接在恢复后的位置绘制
+                return false;
+            }
+        });
+    }
+    
+    // 屏幕顶部第一行在正文中的字符偏移
+    private int getVisibleCharOffset() {
+        if (isStreamMode()) {
+            int position = chapterStreamLayoutManager.findFirstVisibleItemPosition();
+            View view = chapterStreamLayoutManager.findViewByPosition(position);
+            return view instanceof TextView ? ChapterStreamAdapter.getCharOffsetAt((TextView) view, -view.getTop()) : 0;
+        }
+        Layout layout = contentTextView.getLayout();
+        if (layout == null) {
+            return 0;
+        }
+        int y = contentScrollView.getScrollY() - contentTextView.getTop() - contentTextView.getTotalPaddingTop();
+        int line = layout.getLineForVertical(Math.max(0, y));
+        return layout.getLineStart(line);
+    }
+    
+    // 预加载指定章节到缓存
+    private void prefetchChapter(int chapterIndex) {
+        if (spineReferences == null || chapterIndex < 0 || chapterIndex >= spineReferences.size()
+                || chapterIndex == prefetchingChapterIndex || chapterCache.contains(chapterIndex)) {
+            return;
+        }
+        prefetchingChapterIndex = chapterIndex;
+        int imageMaxWidth = getImageMaxWidth();
+        PrecomputedTextCompat.Params textMetricsParams = TextViewCompat.getTextMetricsParams(contentTextView);
+        taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.PREFETCH, () -> {
+            try {
+                ChapterCache.Entry entry = decodeChapter(chapterIndex, imageMaxWidth, textMetricsParams, TaskScheduler.Priority.PREFETCH);
+                chapterCache.put(chapterIndex, entry);
+                Log.d(TAG, "prefetchChapter: Chapter " + chapterIndex + " prefetched");
+            } catch (Throwable t) {
+                // 预加载失败不影响阅读，真正翻页时会重新加载
+                Log.w(TAG, "prefetchChapter: Failed to prefetch chapter " + chapterIndex, t);
+            } finally {
+                prefetchingChapterIndex = -1;
+            }
+        });
+    }
+    
+    // 重载方法，默认翻页时不保持滚动位置；连续滚动模式下滚动到该章开头
     private void loadPageContent(int pageIndex) {
+        if (isStreamMode()) {
+            scrollToStreamChapter(pageIndex);
+            return;
+        }
         loadPageContent(pageIndex, false);
     }
+    
+    private boolean isStreamMode() {
+        return continuousScroll && spineReferences != null;
+    }
+    
+    // 当前接收滑动事件的阅读视图
+    private View getReadingScrollView() {
+        return isStreamMode() ? chapterStreamView : contentScrollView;
+    }
+    
+    // 切换连续滚动模式，从当前阅读位置继续
+    private void setContinuousScroll(boolean enabled) {
+        Log.d(TAG, "setContinuousScroll: enabled=" + enabled);
+        boolean wasStreamMode = isStreamMode();
+        int chapterIndex = currentPage;
+        int offset = spineReferences != null ? getVisibleCharOffset() : 0;
+        continuousScroll = enabled;
+        sharedPreferences.edit().putBoolean(CONTINUOUS_SCROLL_PREF, enabled).apply();
+        if (spineReferences == null) {
+            // 书籍尚未加载完成时只记录设置；TXT文件始终按页阅读
+            return;
+        }
+        if (enabled) {
+            startChapterStream(chapterIndex, offset);
+        } else if (wasStreamMode) {
+            stopChapterStream();
+            applyReadingModeVisibility();
+            pendingRestoreOffset = offset;
+            loadPageContent(chapterIndex, true);
+        }
+    }
+    
+    // 翻页模式的视图在连续滚动时保持布局但不显示，插图宽度和排版参数仍取自正文视图
+    private void applyReadingModeVisibility() {
+        boolean streamMode = isStreamMode();
+        chapterStreamView.setVisibility(streamMode ? View.VISIBLE : View.GONE);
+        contentScrollView.setVisibility(streamMode ? View.INVISIBLE : View.VISIBLE);
+    }
+    
+    // 从指定章节的字符偏移开始连续滚动阅读
+    private void startChapterStream(int chapterIndex, int charOffset) {
+        Log.d(TAG, "startChapterStream: chapterIndex=" + chapterIndex + ", charOffset=" + charOffset);
+        if (chapterIndex < 0 || chapterIndex >= spineReferences.size()) {
+            Log.w(TAG, "startChapterStream: Invalid chapter index");
+            return;
+        }
+        stopChapterStream();
+        // 丢弃翻页模式尚未完成的加载
+        requestedChapterIndex = -1;
+        TaskScheduler.Task previousTask = chapterLoadTask;
+        if (previousTask != null) {
+            previousTask.cancel(true);
+        }
+        currentPage = chapterIndex;
+        loadStreamChapter(chapterIndex, true, charOffset);
+    }
+    
+    private void stopChapterStream() {
+        streamGeneration++;
+        streamAppending = false;
+        streamPrepending = false;
+        chapterStreamAdapter.clear();
+    }
+    
+    // 目标章节已在列表中时直接滚动过去，否则从该章重新开始
+    private void scrollToStreamChapter(int chapterIndex) {
+        int firstChapterIndex = chapterStreamAdapter.getFirstChapterIndex();
+        int position = chapterIndex - firstChapterIndex;
+        if (firstChapterIndex >= 0 && position >= 0 && position < chapterStreamAdapter.getItemCount()) {
+            Log.d(TAG, "scrollToStreamChapter: Chapter " + chapterIndex + " already loaded, position=" + position);
+            chapterStreamView.stopScroll();
+            chapterStreamLayoutManager.scrollToPositionWithOffset(position, 0);
+        } else {
+            startChapterStream(chapterIndex, 0);
+        }
+    }
+    
+    // 加载连续滚动列表一端的章节，命中缓存时直接使用
+    private void loadStreamChapter(int chapterIndex, boolean append, int restoreOffset) {
+        Log.d(TAG, "loadStreamChapter: chapterIndex=" + chapterIndex + ", append=" + append);
+        if (append) {
+            streamAppending = true;
+        } else {
+            streamPrepending = true;
+        }
+        int generation = streamGeneration;
+        ChapterCache.Entry cachedEntry = chapterCache.get(chapterIndex);
+        if (cachedEntry != null) {
+            // 可能处于滚动回调中，等这一帧结束后再修改列表
+            chapterStreamView.post(() -> onStreamChapterLoaded(generation, cachedEntry, append, restoreOffset));
+            return;
+        }
+        
+        int imageMaxWidth = getImageMaxWidth();
+        PrecomputedTextCompat.Params textMetricsParams = TextViewCompat.getTextMetricsParams(contentTextView);
+        // 列表为空时用户正在等待这一章，否则是在视口之外提前加载
+        TaskScheduler.Priority priority = chapterStreamAdapter.getItemCount() == 0
+                ? TaskScheduler.Priority.VISIBLE : TaskScheduler.Priority.PREFETCH;
+        taskScope.execute(TaskScheduler.Pool.IO, priority, () -> {
+            try {
+                ChapterCache.Entry entry = decodeChapter(chapterIndex, imageMaxWidth, textMetricsParams, priority);
+                chapterCache.put(chapterIndex, entry);
+                taskScope.postToUi(() -> onStreamChapterLoaded(generation, entry, append, restoreOffset));
+            } catch (Exception | OutOfMemoryError e) {
+                // 加载标记保持不变，同一次连续滚动中不再反复重试这一章
+                Log.e(TAG, "loadStreamChapter: Failed to load chapter " + chapterIndex, e);
+                taskScope.postToUi(() -> {
+                    if (generation == streamGeneration) {
+                        Toast.makeText(ReadingActivity.this, "加载章节时出错", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        });
+    }
+    
+    // 把加载好的章节加入列表一端，保持屏幕上的内容不动
+    private void onStreamChapterLoaded(int generation, ChapterCache.Entry entry, boolean append, int restoreOffset) {
+        if (generation != streamGeneration) {
+            // 已经重新开始，章节留在缓存中
+            return;
+        }
+        if (append) {
+            streamAppending = false;
+        } else {
+            streamPrepending = false;
+        }
+        
+        if (chapterStreamAdapter.getItemCount() == 0) {
+            // 第一章到达后才切换到列表，翻页模式的正文不再引用章节内容
+            contentTextView.setText("");
+            chapterCache.setDisplayed(null);
+            applyReadingModeVisibility();
+            chapterStreamAdapter.append(entry);
+            chapterStreamLayoutManager.scrollToPositionWithOffset(0, 0);
+            if (restoreOffset > 0) {
+                restoreStreamOffset(restoreOffset);
+            }
+            updatePageButtons();
+            return;
+        }
+        
+        // 记下屏幕顶部的章节和位置，列表前面增删章节后滚回原处
+        int anchorPosition = chapterStreamLayoutManager.findFirstVisibleItemPosition();
+        View anchorView = chapterStreamLayoutManager.findViewByPosition(anchorPosition);
+        int anchorTop = anchorView != null ? anchorView.getTop() : 0;
+        if (append) {
+            chapterStreamAdapter.append(entry);
+        } else {
+            chapterStreamAdapter.prepend(entry);
+            if (anchorPosition != RecyclerView.NO_POSITION) {
+                anchorPosition++;
+            }
+        }
+        anchorPosition -= trimChapterStream(anchorPosition);
+        if (anchorPosition >= 0) {
+            chapterStreamLayoutManager.scrollToPositionWithOffset(anchorPosition, anchorTop);
+        }
+        Log.d(TAG, "onStreamChapterLoaded: Chapters " + chapterStreamAdapter.getFirstChapterIndex()
+                + "-" + chapterStreamAdapter.getLastChapterIndex());
+    }
+    
+    // 章节数超过上限时从离屏幕较远的一端移除不可见的章节，返回从列表开头移除的数量
+    private int trimChapterStream(int firstVisiblePosition) {
+        if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+            return 0;
+        }
+        int removedFromStart = 0;
+        while (chapterStreamAdapter.getItemCount() > maxStreamChapters) {
+            int lastPosition = chapterStreamAdapter.getItemCount() - 1;
+            int firstVisible = firstVisiblePosition - removedFromStart;
+            if (firstVisible > 0 && firstVisible >= lastPosition - firstVisible) {
+                chapterStreamAdapter.removeFirst();
+                removedFromStart++;
+            } else if (lastPosition > firstVisible + 1) {
+                // 屏幕顶部章节的下一章可能正在显示，不移除
+                chapterStreamAdapter.removeLast();
+            } else {
+                break;
+            }
+        }
+        return removedFromStart;
+    }
+    
+    // 滚动停止后清理超出数量的章节
+    private void trimChapterStream() {
+        if (!isStreamMode()) {
+            return;
+        }
+        int anchorPosition = chapterStreamLayoutManager.findFirstVisibleItemPosition();
+        View anchorView = chapterStreamLayoutManager.findViewByPosition(anchorPosition);
+        int anchorTop = anchorView != null ? anchorView.getTop() : 0;
+        int removed = trimChapterStream(anchorPosition);
+        if (removed > 0) {
+            chapterStreamLayoutManager.scrollToPositionWithOffset(anchorPosition - removed, anchorTop);
+        }
+    }
+    
+    // 连续滚动时更新当前章节，接近列表两端时提前加载相邻章节
+    private void onChapterStreamScrolled() {
+        int itemCount = chapterStreamAdapter.getItemCount();
+        int firstPosition = chapterStreamLayoutManager.findFirstVisibleItemPosition();
+        int lastPosition = chapterStreamLayoutManager.findLastVisibleItemPosition();
+        if (itemCount == 0 || firstPosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+        
+        // 屏幕顶部进入新章节时记录进度
+        int chapterIndex = chapterStreamAdapter.getChapterIndex(firstPosition);
+        if (chapterIndex != currentPage) {
+            Log.d(TAG, "onChapterStreamScrolled: Entered chapter " + chapterIndex);
+            currentPage = chapterIndex;
+            saveProgress(chapterIndex);
+            updatePageButtons();
+        }
+        
+        int preloadDistance = (int) (chapterStreamView.getHeight() * STREAM_PRELOAD_SCREENS);
+        if (!streamAppending && lastPosition == itemCount - 1) {
+            View lastView = chapterStreamLayoutManager.findViewByPosition(lastPosition);
+            int nextChapter = chapterStreamAdapter.getLastChapterIndex() + 1;
+            if (lastView != null && nextChapter < spineReferences.size()
+                    && lastView.getBottom() - chapterStreamView.getHeight() < preloadDistance) {
+                loadStreamChapter(nextChapter, true, 0);
+            }
+        }
+        if (!streamPrepending && firstPosition == 0) {
+            View firstView = chapterStreamLayoutManager.findViewByPosition(0);
+            int previousChapter = chapterStreamAdapter.getFirstChapterIndex() - 1;
+            if (firstView != null && previousChapter >= 0 && -firstView.getTop() < preloadDistance) {
+                loadStreamChapter(previousChapter, false, 0);
+            }
+        }
+    }
+    
+    // 第一章完成布局后滚动到保存的字符位置，不会先闪现章节开头
+    // 每一帧都先移除监听，第一章尚未布局时再登记到下一帧，最多等待STREAM_RESTORE_MAX_FRAMES帧；重新开始连续滚动后放弃
+    private void restoreStreamOffset(int charOffset) {
+        int generation = streamGeneration;
+        chapterStreamView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            private int frames = 0;
+
+            @Override
+            public boolean onPreDraw() {
+                ViewTreeObserver observer = chapterStreamView.getViewTreeObserver();
+                observer.removeOnPreDrawListener(this);
+                if (generation != streamGeneration) {
+                    return true;
+                }
+                View view = chapterStreamLayoutManager.findViewByPosition(0);
+                int top = view instanceof TextView ? ChapterStreamAdapter.getOffsetTop((TextView) view, charOffset) : -1;
+                if (top < 0) {
+                    if (++frames < STREAM_RESTORE_MAX_FRAMES) {
+                        observer.addOnPreDrawListener(this);
+                    } else {
+                        Log.w(TAG, "restoreStreamOffset: First chapter not laid out, offset=" + charOffset);
+                    }
+                    return true;
+                }
+                Log.d(TAG, "restoreStreamOffset: offset=" + charOffset + ", y=" + top);
+                chapterStreamLayoutManager.scrollToPositionWithOffset(0, -top);
+                // 跳过这一帧，下一帧直接在恢复后的位置绘制
+                return false;
+            }
+        });
+    }
+    
+    // 计算插图可用的最大宽度（文本区域宽度减去内边距）
+    private int getImageMaxWidth() {
+        int width = contentTextView.getWidth();
+        if (width <= 0) {
+            // 视图尚未完成布局时使用屏幕宽度
+            width = getResources().getDisplayMetrics().widthPixels;
+        }
+        return Math.max(width - contentTextView.getPaddingLeft() - contentTextView.getPaddingRight(), 1);
+    }
 
     private void updatePageButtons() {
         if (spineReferences == null) return;
@@ -1115,6 +1767,7 @@ public class ReadingActivity extends AppCompatActivity {
                 Log.d(TAG, "openTableOfContents: Opening table of contents");
                 Intent intent = new Intent(this, TableOfContentsActivity.class);
                 intent.putExtra("book_uri", bookUri.toString());
+                intent.putExtra("book_id", bookId);
                 intent.putExtra("book_title", bookTitle);
                 intent.putExtra("current_chapter", currentPage); // 传递当前章节位置
                 tocActivityResultLauncher.launch(intent);
@@ -1144,6 +1797,10 @@ public class ReadingActivity extends AppCompatActivity {
     private void hideFontSettingsLayer() {
         Log.d(TAG, "hideFontSettingsLayer: Hiding font settings layer");
         fontSettingsLayer.setVisibility(View.GONE);
+        // 关闭设置层时不再等待，立即应用
+        if (typographyPending) {
+            applyTypography();
+        }
     }
     
     // 更新字体设置显示
@@ -1157,9 +1814,7 @@ public class ReadingActivity extends AppCompatActivity {
     // 增大字体
     private void increaseFontSize() {
         currentTextSize += 1f;
-        contentTextView.setTextSize(TypedValue.COMPLEX_UNIT_SP, currentTextSize);
-        updateFontSettingsDisplay();
-        saveUserSettings(); // 保存设置
+        onTypographyChanged();
         Log.d(TAG, "increaseFontSize: Text size increased to " + currentTextSize);
     }
     
@@ -1167,9 +1822,7 @@ public class ReadingActivity extends AppCompatActivity {
     private void decreaseFontSize() {
         if (currentTextSize > 8f) { // 限制最小字体大小
             currentTextSize -= 1f;
-            contentTextView.setTextSize(TypedValue.COMPLEX_UNIT_SP, currentTextSize);
-            updateFontSettingsDisplay();
-            saveUserSettings(); // 保存设置
+            onTypographyChanged();
             Log.d(TAG, "decreaseFontSize: Text size decreased to " + currentTextSize);
         }
     }
@@ -1177,9 +1830,7 @@ public class ReadingActivity extends AppCompatActivity {
     // 增大行距
     private void increaseLineSpacing() {
         currentLineSpacing += 1f;
-        contentTextView.setLineSpacing(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, currentLineSpacing, getResources().getDisplayMetrics()), 1f);
-        updateFontSettingsDisplay();
-        saveUserSettings(); // 保存设置
+        onTypographyChanged();
         Log.d(TAG, "increaseLineSpacing: Line spacing increased to " + currentLineSpacing);
     }
     
@@ -1187,9 +1838,7 @@ public class ReadingActivity extends AppCompatActivity {
     private void decreaseLineSpacing() {
         if (currentLineSpacing > 0f) { // 限制最小行距
             currentLineSpacing -= 1f;
-            contentTextView.setLineSpacing(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, currentLineSpacing, getResources().getDisplayMetrics()), 1f);
-            updateFontSettingsDisplay();
-            saveUserSettings(); // 保存设置
+            onTypographyChanged();
             Log.d(TAG, "decreaseLineSpacing: Line spacing decreased to " + currentLineSpacing);
         }
     }
@@ -1197,9 +1846,7 @@ public class ReadingActivity extends AppCompatActivity {
     // 增大字距
     private void increaseLetterSpacing() {
         currentLetterSpacing += 0.05f;
-        contentTextView.setLetterSpacing(currentLetterSpacing);
-        updateFontSettingsDisplay();
-        saveUserSettings(); // 保存设置
+        onTypographyChanged();
         Log.d(TAG, "increaseLetterSpacing: Letter spacing increased to " + currentLetterSpacing);
     }
     
@@ -1207,12 +1854,138 @@ public class ReadingActivity extends AppCompatActivity {
     private void decreaseLetterSpacing() {
         if (currentLetterSpacing > -0.5f) { // 限制最小字距
             currentLetterSpacing -= 0.05f;
-            contentTextView.setLetterSpacing(currentLetterSpacing);
-            updateFontSettingsDisplay();
-            saveUserSettings(); // 保存设置
+            onTypographyChanged();
             Log.d(TAG, "decreaseLetterSpacing: Letter spacing decreased to " + currentLetterSpacing);
         }
     }
+
+    // 每次点击只更新数值和缩放预览，停止点击后再统一重新排版
+    private void onTypographyChanged() {
+        updateFontSettingsDisplay();
+        previewTypography();
+        typographyPending = true;
+        typographyGeneration++;
+        contentTextView.removeCallbacks(applyTypographyRunnable);
+        contentTextView.postDelayed(applyTypographyRunnable, TYPOGRAPHY_SETTLE_MS);
+    }
+
+    // 按新旧设置的比例缩放阅读视图，只改变绘制，不重新排版；以屏幕左上角为中心，顶部的文字保持不动
+    private void previewTypography() {
+        float textScale = currentTextSize / appliedTextSize;
+        float appliedSpacingPx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, appliedLineSpacing, getResources().getDisplayMetrics());
+        float spacingPx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, currentLineSpacing, getResources().getDisplayMetrics());
+        int lineHeight = contentTextView.getLineHeight();
+        float scaleY = lineHeight > 0 ? ((lineHeight - appliedSpacingPx) * textScale + spacingPx) / lineHeight : textScale;
+        // 字距以字号为单位，中文字符的宽度约为一个字号加字距
+        float scaleX = textScale * (1f + currentLetterSpacing) / (1f + appliedLetterSpacing);
+        View view = getReadingScrollView();
+        view.setPivotX(0f);
+        view.setPivotY(0f);
+        view.setScaleX(scaleX);
+        view.setScaleY(scaleY);
+    }
+
+    private void clearTypographyPreview() {
+        for (View view : new View[]{contentScrollView, chapterStreamView}) {
+            view.setScaleX(1f);
+            view.setScaleY(1f);
+        }
+    }
+
+    // 把字体设置应用到正文视图
+    private void applyTypographyToViews() {
+        contentTextView.setTextSize(TypedValue.COMPLEX_UNIT_SP, currentTextSize);
+        contentTextView.setLineSpacing(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, currentLineSpacing, getResources().getDisplayMetrics()), 1f);
+        contentTextView.setLetterSpacing(currentLetterSpacing);
+        appliedTextSize = currentTextSize;
+        appliedLineSpacing = currentLineSpacing;
+        appliedLetterSpacing = currentLetterSpacing;
+    }
+
+    // 新字体设置对应的预计算参数，不修改正文视图，正文在后台预计算期间保持原样
+    private PrecomputedTextCompat.Params buildTextMetricsParams() {
+        PrecomputedTextCompat.Params current = TextViewCompat.getTextMetricsParams(contentTextView);
+        TextPaint paint = new TextPaint(current.getTextPaint());
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, currentTextSize, getResources().getDisplayMetrics()));
+        paint.setLetterSpacing(currentLetterSpacing);
+        return new PrecomputedTextCompat.Params.Builder(paint)
+                .setBreakStrategy(current.getBreakStrategy())
+                .setHyphenationFrequency(current.getHyphenationFrequency())
+                .setTextDirection(current.getTextDirection())
+                .build();
+    }
+
+    // 输入停止后应用字体设置：保存一次设置，在后台按新参数预计算当前章节，完成后替换正文并让屏幕顶部的文字留在原处
+    private void applyTypography() {
+        contentTextView.removeCallbacks(applyTypographyRunnable);
+        typographyPending = false;
+        if (currentTextSize == appliedTextSize && currentLineSpacing == appliedLineSpacing
+                && currentLetterSpacing == appliedLetterSpacing) {
+            clearTypographyPreview();
+            return;
+        }
+        saveUserSettings(); // 保存设置
+        int anchorOffset = spineReferences != null || txtIndex != null ? getVisibleCharOffset() : 0;
+        Log.d(TAG, "applyTypography: size=" + currentTextSize + ", lineSpacing=" + currentLineSpacing
+                + ", letterSpacing=" + currentLetterSpacing + ", anchorOffset=" + anchorOffset);
+
+        if (isStreamMode()) {
+            // 翻页模式的正文此时为空，修改参数不会排版；缓存中的章节都按旧参数预计算，从当前位置重新开始
+            applyTypographyToViews();
+            clearTypographyPreview();
+            stopChapterStream();
+            chapterCache.clear();
+            startChapterStream(currentPage, anchorOffset);
+            return;
+        }
+
+        ChapterCache.Entry entry = chapterCache.getDisplayed();
+        if (spineReferences == null || entry == null || entry.chapterIndex != requestedChapterIndex) {
+            // TXT只显示一页，或者章节正在加载即将被替换，直接应用
+            applyTypographyToViews();
+            clearTypographyPreview();
+            if (anchorOffset > 0) {
+                restoreScrollOffset(anchorOffset);
+            }
+            return;
+        }
+
+        PrecomputedTextCompat.Params textMetricsParams = buildTextMetricsParams();
+        int generation = typographyGeneration;
+        taskScope.execute(TaskScheduler.Pool.CPU, TaskScheduler.Priority.VISIBLE, () -> {
+            try {
+                CharSequence content;
+                try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_PRECOMPUTE)) {
+                    section.setBytes(entry.content.length() * 2L);
+                    content = PrecomputedTextCompat.create(entry.content, textMetricsParams);
+                }
+                taskScope.postToUi(() -> onTypographyRelayout(generation, entry, content, anchorOffset));
+            } catch (Exception | OutOfMemoryError e) {
+                // 预计算失败时在主线程直接排版
+                Log.e(TAG, "applyTypography: Failed to precompute chapter " + entry.chapterIndex, e);
+                taskScope.postToUi(() -> onTypographyRelayout(generation, entry, entry.content, anchorOffset));
+            }
+        });
+    }
+
+    // 后台排版完成，在同一帧内替换正文、取消缩放预览并滚动回原来的文字
+    private void onTypographyRelayout(int generation, ChapterCache.Entry entry, CharSequence content, int anchorOffset) {
+        if (generation != typographyGeneration) {
+            // 之后又有调整，等待下一次应用
+            return;
+        }
+        if (isStreamMode() || chapterCache.getDisplayed() != entry || entry.chapterIndex != requestedChapterIndex) {
+            // 排版期间切换了章节或阅读模式，按当前状态重新应用
+            applyTypography();
+            return;
+        }
+        applyTypographyToViews();
+        // 其他缓存章节按旧参数预计算，淘汰后由预加载按新参数重新生成
+        ChapterCache.Entry relaidOut = chapterCache.replaceContent(entry, content);
+        clearTypographyPreview();
+        pendingRestoreOffset = anchorOffset;
+        displayChapter(relaidOut, true);
+    }
     
     // 设置字体设置层中按钮的点击事件
     private void setupFontSettingsClickListeners() {
@@ -1228,7 +2001,7 @@ public class ReadingActivity extends AppCompatActivity {
     private void nextPage() {
         Log.d(TAG, "nextPage: currentPage=" + currentPage);
         // 检查当前是否为TXT文件阅读模式
-        if (txtPages != null) {
+        if (txtIndex != null) {
             // TXT文件翻页
             txtNextPage();
         } else if (spineReferences != null && currentPage < spineReferences.size() - 1) {
@@ -1243,7 +2016,7 @@ public class ReadingActivity extends AppCompatActivity {
     private void previousPage() {
         Log.d(TAG, "previousPage: currentPage=" + currentPage);
         // 检查当前是否为TXT文件阅读模式
-        if (txtPages != null) {
+        if (txtIndex != null) {
             // TXT文件翻页
             txtPreviousPage();
         } else if (currentPage > 0) {
@@ -1268,128 +2041,71 @@ public class ReadingActivity extends AppCompatActivity {
     }
     
     // 保存阅读进度
+    @SuppressWarnings("try")
     private void saveProgress(int page) {
         Log.d(TAG, "saveProgress: page=" + page);
         if (bookUri != null) {
-            SharedPreferences.Editor editor = sharedPreferences.edit();
-            editor.putInt(bookUri.toString(), page);
-            editor.apply();
-            
-            // 更新书籍列表中的进度信息
-            updateBookProgress(page);
-            // 更新MainActivity中的书籍进度信息
-            updateBookProgressInMainActivity();
-            // 保存最后阅读章节信息到MainActivity
-            updateLastChapterInMainActivity(page);
+            try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.PREFS_ENQUEUE)) {
+                SharedPreferences.Editor editor = sharedPreferences.edit();
+                editor.putInt(stateKey, page);
+                // 翻页和跳转章节都从开头阅读
+                editor.putInt(stateKey + "_offset", 0);
+                editor.apply();
+                
+                // 发布到书架，书架页只刷新这本书，连续的更新合并后写入
+                libraryRepository.updateProgress(bookId, page, getChapterTitle(page));
+            }
         }
     }
     
-    // 更新书籍列表中的进度信息
-    private void updateBookProgress(int page) {
-        // 在实际应用中，这里应该更新书籍列表中的进度信息
-        // 由于当前架构限制，我们只记录日志
-        Log.d(TAG, "updateBookProgress: Updating book progress to page " + page);
-    }
-    
-    // 将书籍进度信息更新到MainActivity的SharedPreferences中
-    private void updateBookProgressInMainActivity() {
-        if (bookUri != null) {
-            // 获取MainActivity使用的SharedPreferences
-            SharedPreferences mainPrefs = getSharedPreferences(MainActivity.PREFS_NAME, MODE_PRIVATE);
-            SharedPreferences.Editor editor = mainPrefs.edit();
-            
-            // 使用书籍URI作为键，保存当前进度
-            editor.putInt(bookUri.toString(), currentPage);
-            // 保存总页数
-            editor.putInt(bookUri.toString() + "_total", spineReferences != null ? spineReferences.size() : 0);
-            
-            // 提交保存
+    // 保存精确阅读位置：当前章节（或TXT页）及屏幕顶部行的字符偏移
+    @SuppressWarnings("try")
+    private void saveReadingPosition() {
+        if (bookUri == null || (spineReferences == null && txtIndex == null)) {
+            return;
+        }
+        int page = txtIndex != null ? currentTxtPage : currentPage;
+        int offset = getVisibleCharOffset();
+        Log.d(TAG, "saveReadingPosition: page=" + page + ", offset=" + offset);
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.PREFS_ENQUEUE)) {
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            editor.putInt(stateKey, page);
+            editor.putInt(stateKey + "_offset", offset);
             editor.apply();
-            
-            Log.d(TAG, "updateBookProgressInMainActivity: Updated progress for " + bookUri + " to page " + currentPage);
         }
     }
     
-    // 将最后阅读章节信息更新到MainActivity的SharedPreferences中
-    private void updateLastChapterInMainActivity(int page) {
-        if (bookUri != null && spineReferences != null && page >= 0 && page < spineReferences.size()) {
-            try {
-                // 获取当前章节标题
-                String chapterTitle = spineReferences.get(page).getResource().getTitle();
-                if (chapterTitle == null || chapterTitle.isEmpty()) {
-                    // 如果章节没有标题，使用章节索引作为标题
-                    chapterTitle = "第" + (page + 1) + "章";
-                }
-                
-                // 获取MainActivity使用的SharedPreferences
-                SharedPreferences mainPrefs = getSharedPreferences(MainActivity.PREFS_NAME, MODE_PRIVATE);
-                SharedPreferences.Editor editor = mainPrefs.edit();
-                
-                // 保存最后阅读章节
-                editor.putString(bookUri.toString() + "_lastChapter", chapterTitle);
-                
-                // 提交保存
-                editor.apply();
-                
-                Log.d(TAG, "updateLastChapterInMainActivity: Updated last chapter for " + bookUri + " to " + chapterTitle);
-            } catch (Exception e) {
-                Log.e(TAG, "updateLastChapterInMainActivity: Error getting chapter title", e);
-            }
+    // 章节标题，没有标题时使用章节序号；TXT文件返回null，书架保持原值
+    private String getChapterTitle(int page) {
+        if (spineReferences == null || page < 0 || page >= spineReferences.size()) {
+            return null;
         }
+        String chapterTitle = spineReferences.get(page).getResource().getTitle();
+        if (chapterTitle == null || chapterTitle.isEmpty()) {
+            chapterTitle = "第" + (page + 1) + "章";
+        }
+        return chapterTitle;
     }
     
-    // 保存总章节数
+    // 保存总章节数，可以在后台线程调用
     private void saveTotalChapters(int totalPages) {
         Log.d(TAG, "saveTotalChapters: totalPages=" + totalPages);
         if (bookUri != null) {
             SharedPreferences.Editor editor = sharedPreferences.edit();
-            editor.putInt(bookUri.toString() + "_total", totalPages);
+            editor.putInt(stateKey + "_total", totalPages);
             editor.apply();
             
-            // 同时更新MainActivity中的总章节数
-            updateTotalChaptersInMainActivity(totalPages);
-        }
-    }
-    
-    // 将总章节数更新到MainActivity的SharedPreferences中
-    private void updateTotalChaptersInMainActivity(int totalPages) {
-        if (bookUri != null) {
-            try {
-                // 获取最后一章的标题
-                String finalChapterTitle = "";
-                if (spineReferences != null && !spineReferences.isEmpty()) {
-                    // 获取最后一章
-                    SpineReference lastChapter = spineReferences.get(spineReferences.size() - 1);
-                    finalChapterTitle = lastChapter.getResource().getTitle();
-                    if (finalChapterTitle == null || finalChapterTitle.isEmpty()) {
-                        // 如果章节没有标题，使用章节索引作为标题
-                        finalChapterTitle = "第" + spineReferences.size() + "章";
-                    }
-                }
-                
-                // 获取MainActivity使用的SharedPreferences
-                SharedPreferences mainPrefs = getSharedPreferences(MainActivity.PREFS_NAME, MODE_PRIVATE);
-                SharedPreferences.Editor editor = mainPrefs.edit();
-                
-                // 保存总章节数
-                editor.putInt(bookUri.toString() + "_total", totalPages);
-                // 保存最后一章信息
-                editor.putString(bookUri.toString() + "_finalChapter", finalChapterTitle);
-                
-                // 提交保存
-                editor.apply();
-                
-                Log.d(TAG, "updateTotalChaptersInMainActivity: Updated total chapters for " + bookUri + " to " + totalPages + ", final chapter: " + finalChapterTitle);
-            } catch (Exception e) {
-                Log.e(TAG, "updateTotalChaptersInMainActivity: Error getting final chapter title", e);
-            }
+            // 同时发布到书架，最后一章标题一并更新；EPUB在后台加载时调用，书架只能在主线程修改
+            String finalChapterTitle = spineReferences != null && !spineReferences.isEmpty()
+                    ? getChapterTitle(spineReferences.size() - 1) : null;
+            taskScope.postToUi(() -> libraryRepository.updateChapters(bookId, totalPages, finalChapterTitle));
         }
     }
     
     // 获取总章节数
     private int getTotalChapters() {
         if (bookUri != null) {
-            int totalPages = sharedPreferences.getInt(bookUri.toString() + "_total", 0);
+            int totalPages = sharedPreferences.getInt(stateKey + "_total", 0);
             Log.d(TAG, "getTotalChapters: totalPages=" + totalPages);
             return totalPages;
         }
@@ -1400,7 +2116,7 @@ public class ReadingActivity extends AppCompatActivity {
     // 获取保存的阅读进度
     private int getSavedProgress() {
         if (bookUri != null) {
-            int progress = sharedPreferences.getInt(bookUri.toString(), 0);
+            int progress = sharedPreferences.getInt(stateKey, 0);
             Log.d(TAG, "getSavedProgress: progress=" + progress);
             return progress;
         }
@@ -1408,6 +2124,16 @@ public class ReadingActivity extends AppCompatActivity {
         return 0;
     }
     
+    // 获取保存的章节内字符偏移
+    private int getSavedOffset() {
+        if (bookUri != null) {
+            int offset = sharedPreferences.getInt(stateKey + "_offset", 0);
+            Log.d(TAG, "getSavedOffset: offset=" + offset);
+            return offset;
+        }
+        return 0;
+    }
+    
     // 显示背景色选择对话框
     private void showBackgroundColorDialog() {
         Log.d(TAG, "showBackgroundColorDialog: Showing background color dialog");
@@ -1417,23 +2143,100 @@ public class ReadingActivity extends AppCompatActivity {
         // 使用颜色选择器
         ColorPickerDialog colorPickerDialog = new ColorPickerDialog(this, currentBackgroundColor);
         colorPickerDialog.setOnColorSelectedListener((color, changeTextColor) -> {
-            // 更新背景色
-            currentBackgroundColor = color;
-            updateBackgroundColor();
-            
-            // 如果需要同时修改字体颜色
-            if (changeTextColor) {
-                // 根据背景色计算对比度高的字体颜色（简单处理：亮背景用黑色字体，暗背景用白色字体）
-                currentTextColor = calculateContrastColor(color);
-                updateTextColor();
-            }
-            
-            // 保存背景色设置
-            saveBackgroundColor();
+            // 更新背景色，如果需要同时修改字体颜色，根据背景色计算对比度高的字体颜色（简单处理：亮背景用黑色字体，暗背景用白色字体）
+            applyTheme(color, changeTextColor ? calculateContrastColor(color) : currentTextColor);
             Log.d(TAG, "Background color changed to: #" + Integer.toHexString(color));
         });
+        colorPickerDialog.setOnColorPreviewListener(new ColorPickerDialog.OnColorPreviewListener() {
+            @Override
+            public void onColorPreview(int color, boolean changeTextColor) {
+                previewTheme(new ReaderTheme(color, changeTextColor ? calculateContrastColor(color) : currentTextColor));
+            }
+
+            @Override
+            public void onPreviewCancelled() {
+                clearThemePreview();
+            }
+        });
+        colorPickerDialog.setPresets(getThemePresets(), new ColorPickerDialog.OnPresetListener() {
+            @Override
+            public void onPresetSelected(ReaderTheme preset) {
+                Log.d(TAG, "onPresetSelected: Applying preset " + Integer.toHexString(preset.backgroundColor));
+                applyTheme(preset.backgroundColor, preset.textColor);
+            }
+
+            @Override
+            public void onSavePreset(int color, boolean changeTextColor) {
+                ReaderTheme preset = new ReaderTheme(color, changeTextColor ? calculateContrastColor(color) : currentTextColor);
+                if (themePresets.contains(preset)) {
+                    Toast.makeText(ReadingActivity.this, "预设已存在", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                themePresets.add(preset);
+                saveThemePresets();
+                colorPickerDialog.setPresets(themePresets, this);
+                Toast.makeText(ReadingActivity.this, "已保存为预设", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onPresetRemoved(ReaderTheme preset) {
+                themePresets.remove(preset);
+                saveThemePresets();
+                colorPickerDialog.setPresets(themePresets, this);
+                Toast.makeText(ReadingActivity.this, "已删除预设", Toast.LENGTH_SHORT).show();
+            }
+        });
         colorPickerDialog.show();
     }
+
+    // 应用并保存主题；背景色只需重绘，字体颜色只修改画笔颜色
+    private void applyTheme(int backgroundColor, int textColor) {
+        clearThemePreview();
+        currentBackgroundColor = backgroundColor;
+        updateBackgroundColor();
+        if (textColor != currentTextColor) {
+            currentTextColor = textColor;
+            updateTextColor();
+        }
+        // 保存背景色设置
+        saveBackgroundColor();
+    }
+
+    // 预览主题：只改变阅读视图硬件层的颜色滤镜，拖动时每帧只重新合成一次
+    // 硬件层设在与屏幕等大的滚动视图上，不受整章正文高度的纹理尺寸限制
+    private void previewTheme(ReaderTheme theme) {
+        ReaderTheme.setTransform(themePreviewMatrix, new ReaderTheme(currentBackgroundColor, currentTextColor), theme);
+        themePreviewPaint.setColorFilter(new ColorMatrixColorFilter(themePreviewMatrix));
+        for (View view : new View[]{contentScrollView, chapterStreamView}) {
+            if (view.getLayerType() != View.LAYER_TYPE_HARDWARE) {
+                view.setLayerType(View.LAYER_TYPE_HARDWARE, themePreviewPaint);
+            } else {
+                view.setLayerPaint(themePreviewPaint);
+            }
+        }
+    }
+
+    private void clearThemePreview() {
+        if (contentScrollView.getLayerType() == View.LAYER_TYPE_NONE) {
+            return;
+        }
+        Log.d(TAG, "clearThemePreview: Removing preview layer");
+        contentScrollView.setLayerType(View.LAYER_TYPE_NONE, null);
+        chapterStreamView.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+
+    // 主题预设，没有保存过时使用内置预设
+    private List<ReaderTheme> getThemePresets() {
+        if (themePresets == null) {
+            String saved = sharedPreferences.getString(THEME_PRESETS_PREF, null);
+            themePresets = saved != null ? ReaderTheme.decode(saved) : ReaderTheme.defaultPresets();
+        }
+        return themePresets;
+    }
+
+    private void saveThemePresets() {
+        sharedPreferences.edit().putString(THEME_PRESETS_PREF, ReaderTheme.encode(themePresets)).apply();
+    }
     
     // 根据背景色计算对比度高的字体颜色
     private int calculateContrastColor(int backgroundColor) {
@@ -1454,12 +2257,20 @@ public class ReadingActivity extends AppCompatActivity {
         Log.d(TAG, "updateBackgroundColor: Updating background color to " + String.format("#%06X", (0xFFFFFF & currentBackgroundColor)));
         contentScrollView.setBackgroundColor(currentBackgroundColor);
         contentTextView.setBackgroundColor(currentBackgroundColor);
+        chapterStreamView.setBackgroundColor(currentBackgroundColor);
     }
     
     // 更新字体颜色
     private void updateTextColor() {
         Log.d(TAG, "updateTextColor: Updating text color to " + String.format("#%06X", (0xFFFFFF & currentTextColor)));
         contentTextView.setTextColor(currentTextColor);
+        // 连续滚动列表中只更新屏幕上的章节，其余章节显示时从正文视图复制颜色
+        for (int i = 0; i < chapterStreamView.getChildCount(); i++) {
+            View child = chapterStreamView.getChildAt(i);
+            if (child instanceof TextView) {
+                ((TextView) child).setTextColor(currentTextColor);
+            }
+        }
     }
     
     // 保存背景色设置
@@ -1481,4 +2292,87 @@ public class ReadingActivity extends AppCompatActivity {
         updateTextColor();
         Log.d(TAG, "restoreBackgroundColor: Background color restored to " + String.format("#%06X", (0xFFFFFF & currentBackgroundColor)));
     }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // 还在等待的字体设置立即应用并保存
+        if (typographyPending) {
+            applyTypography();
+        }
+        // 离开页面时记录精确位置，下次打开回到同一行
+        saveReadingPosition();
+        // 合并等待中的书架进度立即写入，进程被回收也不会丢失
+        libraryRepository.flush();
+        // 输出本次阅读期间各阶段的耗时统计，便于从日志中收集性能数据
+        PerfMetrics.getInstance().logSummary();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        performanceHud.hide();
+        // 释放章节和插图缓存，位图归还到复用池
+        memoryGovernor.unregister(chapterCache);
+        memoryGovernor.unregister(imageCache);
+        chapterStreamAdapter.clear();
+        chapterCache.clear();
+        imageCache.clear();
+        releaseAcquiredBook();
+        closeTxtFile();
+    }
+    
+    // 记录从BookCache获取的书籍，加载完成前页面已销毁时立即释放
+    private synchronized void setAcquiredBook(Book book) {
+        acquiredBook = book;
+        if (isDestroyed()) {
+            releaseAcquiredBook();
+        }
+    }
+    
+    // 释放对共享书籍的引用，书籍留在BookCache中供下次打开复用
+    private synchronized void releaseAcquiredBook() {
+        if (acquiredBook != null && bookUri != null) {
+            BookCache.getInstance().release(stateKey, acquiredBook);
+            acquiredBook = null;
+        }
+    }
+    
+    // 记录阅读期间保持打开的TXT文件，加载完成前页面已销毁时立即关闭
+    private synchronized void setTxtFile(ParcelFileDescriptor descriptor, FileChannel channel, TxtCheckpointIndex index) {
+        txtDescriptor = descriptor;
+        txtChannel = channel;
+        txtIndex = index;
+        if (isDestroyed()) {
+            closeTxtFile();
+        }
+    }
+    
+    private synchronized void closeTxtFile() {
+        if (txtDescriptor != null) {
+            closeDescriptor(txtDescriptor);
+            txtDescriptor = null;
+            txtChannel = null;
+        }
+    }
+    
+    private static void closeDescriptor(ParcelFileDescriptor descriptor) {
+        if (descriptor != null) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                Log.w(TAG, "closeDescriptor: " + e.getMessage());
+            }
+        }
+    }
+    
+    private static void closeZipFile(ZipFile zipFile) {
+        if (zipFile != null) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                Log.w(TAG, "closeZipFile: " + e.getMessage());
+            }
+        }
+    }
 }
\ No newline at end of file
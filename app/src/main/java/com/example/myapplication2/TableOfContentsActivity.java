@@ -2,7 +2,6 @@ package com.example.myapplication2;
 
 import android.content.Intent;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -14,8 +13,6 @@ import android.widget.ImageButton;
 import android.widget.ListView;
 import android.widget.Toast;
 
-import java.lang.ref.WeakReference;
-
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.io.InputStream;
@@ -45,7 +42,7 @@ public class TableOfContentsActivity extends AppCompatActivity {
             hideProgressBar();
         }
     };
-    private LoadTableOfContentsTask loadTask; // 异步加载任务
+    private TaskScope taskScope; // 与页面生命周期绑定的后台任务
     private ImageButton backButton; // 返回按钮
 
     @Override
@@ -58,103 +55,86 @@ public class TableOfContentsActivity extends AppCompatActivity {
         currentChapterPosition = intent.getIntExtra("current_chapter", -1);
         Log.d(TAG, "Received currentChapterPosition: " + currentChapterPosition);
         
+        taskScope = new TaskScope(this);
         initViews();
         // 异步加载目录
-        loadTask = new LoadTableOfContentsTask(this);
-        loadTask.execute();
+        loadTableOfContents();
         setupListViewListener();
     }
     
-    private static class LoadTableOfContentsTask extends AsyncTask<Void, Void, List<TOCReference>> {
-        private final WeakReference<TableOfContentsActivity> activityReference;
-        private Exception exception;
-
-        LoadTableOfContentsTask(TableOfContentsActivity activity) {
-            activityReference = new WeakReference<>(activity);
-        }
-
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-            TableOfContentsActivity activity = activityReference.get();
-            if (activity == null || activity.isFinishing()) {
-                return;
-            }
-            // 显示加载进度
-            activity.showProgressBar();
-        }
-
-        @Override
-        protected List<TOCReference> doInBackground(Void... voids) {
-            TableOfContentsActivity activity = activityReference.get();
-            if (activity == null || activity.isFinishing()) {
-                return null;
-            }
-
+    // 在后台加载目录
+    private void loadTableOfContents() {
+        // 显示加载进度
+        showProgressBar();
+        String uriString = getIntent().getStringExtra("book_uri");
+        String bookKey = getBookKey();
+        taskScope.execute(TaskScheduler.Pool.IO, TaskScheduler.Priority.VISIBLE, () -> {
+            List<TOCReference> tocReferences = null;
+            Exception exception = null;
             try {
                 // 从URI加载EPUB书籍
-                Intent intent = activity.getIntent();
-                String uriString = intent.getStringExtra("book_uri");
-                
                 if (uriString == null) {
                     Log.e(TAG, "未接收到书籍URI");
-                    return null;
-                }
-                
-                Uri bookUri = Uri.parse(uriString);
-                try (InputStream epubInputStream = activity.getContentResolver().openInputStream(bookUri)) {
-                    activity.epubBook = new EpubReader().readEpub(epubInputStream);
-                }
+                } else {
+                    // 阅读页已解析过的书籍直接复用，不必重新读取整本书
+                    Book book = BookCache.getInstance().acquire(bookKey);
+                    if (book == null) {
+                        Uri bookUri = Uri.parse(uriString);
+                        try (InputStream epubInputStream = getContentResolver().openInputStream(bookUri)) {
+                            book = new EpubReader().readEpub(epubInputStream);
+                        }
+                        if (book != null) {
+                            BookCache.getInstance().putAndAcquire(bookKey, book, null);
+                        }
+                    }
+                    setEpubBook(book);
 
-                if (activity.epubBook == null) {
-                    Log.e(TAG, "无法加载EPUB书籍");
-                    return null;
+                    if (book == null) {
+                        Log.e(TAG, "无法加载EPUB书籍");
+                    } else {
+                        TableOfContents toc = book.getTableOfContents();
+                        tocReferences = toc != null ? toc.getTocReferences() : null;
+                    }
                 }
-
-                TableOfContents toc = activity.epubBook.getTableOfContents();
-                return toc != null ? toc.getTocReferences() : null;
             } catch (Exception e) {
                 Log.e(TAG, "加载目录时出错", e);
-                this.exception = e;
-                return null;
+                exception = e;
             }
+
+            List<TOCReference> result = tocReferences;
+            Exception error = exception;
+            taskScope.postToUi(() -> onTableOfContentsLoaded(result, error));
+        });
+    }
+
+    private void onTableOfContentsLoaded(List<TOCReference> tocReferences, Exception exception) {
+        hideProgressBar();
+
+        if (exception != null) {
+            Toast.makeText(this, "加载目录时出错: " + exception.getMessage(), Toast.LENGTH_LONG).show();
+            return;
         }
 
-        @Override
-        protected void onPostExecute(List<TOCReference> tocReferences) {
-            TableOfContentsActivity activity = activityReference.get();
-            if (activity == null || activity.isFinishing()) {
-                return;
-            }
+        if (tocReferences != null && !tocReferences.isEmpty()) {
+            chapters.addAll(tocReferences);
+            tocAdapter.notifyDataSetChanged();
 
-            activity.hideProgressBar();
-            
-            if (exception != null) {
-                Toast.makeText(activity, "加载目录时出错: " + exception.getMessage(), Toast.LENGTH_LONG).show();
-                return;
-            }
+            // 如果有当前章节位置，则滚动到该位置
+            if (currentChapterPosition >= 0 && currentChapterPosition < chapters.size()) {
+                tocListView.setSelection(currentChapterPosition);
 
-            if (tocReferences != null && !tocReferences.isEmpty()) {
-                activity.chapters.addAll(tocReferences);
-                activity.tocAdapter.notifyDataSetChanged();
-                
-                // 如果有当前章节位置，则滚动到该位置
-                if (activity.currentChapterPosition >= 0 && activity.currentChapterPosition < activity.chapters.size()) {
-                    activity.tocListView.setSelection(activity.currentChapterPosition);
-                    
-                    // 延迟更新进度条位置，确保列表已经布局完成
-                    activity.tocListView.post(() -> {
-                        float progress = (float) activity.currentChapterPosition / (activity.chapters.size() - 1);
-                        progress = Math.max(0, Math.min(1, progress));
-                        activity.updateProgressIndicator(progress);
-                    });
-                }
-                
-                Log.d(TAG, "成功加载 " + tocReferences.size() + " 个目录项");
-            } else {
-                Log.w(TAG, "书籍没有目录信息");
-                Toast.makeText(activity, "该书籍没有目录信息", Toast.LENGTH_SHORT).show();
+                // 延迟更新进度条位置，确保列表已经布局完成
+                tocListView.post(() -> {
+                    float progress = (float) currentChapterPosition / (chapters.size() - 1);
+                    progress = Math.max(0, Math.min(1, progress));
+                    updateProgressIndicator(progress);
+                });
             }
+
+            Log.d(TAG, "成功加载 " + tocReferences.size() + " 个目录项");
+        } else {
+            Log.w(TAG, "书籍没有目录信息");
+            Toast.makeText(this, "该书籍没有目录信息", Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -324,15 +304,32 @@ public class TableOfContentsActivity extends AppCompatActivity {
         });
     }
     
+    // 与阅读页相同的共享缓存键
+    private String getBookKey() {
+        String uriString = getIntent().getStringExtra("book_uri");
+        return uriString != null ? LibraryRepository.getStateKey(getIntent().getLongExtra("book_id", 0), Uri.parse(uriString)) : null;
+    }
+
+    // 记录从BookCache获取的书籍，加载完成前页面已销毁时立即释放
+    private synchronized void setEpubBook(Book book) {
+        epubBook = book;
+        if (isDestroyed()) {
+            releaseEpubBook();
+        }
+    }
+
+    private synchronized void releaseEpubBook() {
+        if (epubBook != null) {
+            BookCache.getInstance().release(getBookKey(), epubBook);
+            epubBook = null;
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // 清理Handler回调
+        // 清理Handler回调（后台任务由TaskScope随页面销毁自动取消）
         hideHandler.removeCallbacksAndMessages(null);
-        
-        // 取消异步任务
-        if (loadTask != null) {
-            loadTask.cancel(true);
-        }
+        releaseEpubBook();
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.example.myapplication2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 全应用统一的后台任务调度器
+// I/O任务和CPU密集任务分别进入两个线程池，同一线程池内按优先级排队：当前可见章节 > 预加载 > 建立索引
+public class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+
+    // 任务类型，决定进入哪个线程池
+    public enum Pool {
+        IO,  // 文件、压缩包读取
+        CPU  // HTML解析、图片解码、分页计算
+    }
+
+    // 任务优先级，数值越小越先执行
+    public enum Priority {
+        VISIBLE(Process.THREAD_PRIORITY_DEFAULT),       // 用户正在等待的内容
+        PREFETCH(Process.THREAD_PRIORITY_BACKGROUND),   // 预加载相邻章节
+        INDEXING(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE); // 建立索引等长时间任务
+
+        final int threadPriority;
+
+        Priority(int threadPriority) {
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    private static final int IO_POOL_SIZE = 4;
+
+    private static TaskScheduler instance;
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+
+    private TaskScheduler() {
+        int cpuPoolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ioExecutor = createExecutor("reader-io", IO_POOL_SIZE);
+        cpuExecutor = createExecutor("reader-cpu", cpuPoolSize);
+        Log.d(TAG, "TaskScheduler: ioPoolSize=" + IO_POOL_SIZE + ", cpuPoolSize=" + cpuPoolSize);
+    }
+
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            instance = new TaskScheduler();
+        }
+        return instance;
+    }
+
+    // 提交后台任务
+    public Task execute(Pool pool, Priority priority, Runnable work) {
+        Task task = new Task(work, priority, sequence.getAndIncrement());
+        (pool == Pool.IO ? ioExecutor : cpuExecutor).execute(task);
+        return task;
+    }
+
+    // 在主线程执行
+    public void postToUi(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    // 排队中和正在执行的任务总数
+    public int getPendingTaskCount() {
+        return ioExecutor.getQueue().size() + ioExecutor.getActiveCount()
+                + cpuExecutor.getQueue().size() + cpuExecutor.getActiveCount();
+    }
+
+    private static ThreadPoolExecutor createExecutor(String name, int poolSize) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // 使用优先级队列，核心线程数即最大线程数
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // 可取消的后台任务，按优先级和提交顺序排序
+    public static class Task extends FutureTask<Void> implements Comparable<Task> {
+        private final Priority priority;
+        private final long sequence;
+
+        Task(Runnable work, Priority priority, long sequence) {
+            super(work, null);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            // 低优先级任务降低线程调度优先级，减少与主线程的竞争
+            Process.setThreadPriority(priority.threadPriority);
+            try {
+                super.run();
+            } finally {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+            } catch (Exception e) {
+                Log.e(TAG, "Task failed", e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public int compareTo(@NonNull Task other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myapplication2;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// 绑定到Activity生命周期的任务作用域
+// 页面销毁时取消所有未完成的任务，并丢弃之后投递到主线程的回调
+public class TaskScope {
+    private final TaskScheduler scheduler;
+    private final Set<TaskScheduler.Task> tasks = new HashSet<>();
+    private volatile boolean cancelled = false;
+
+    public TaskScope(LifecycleOwner owner) {
+        this.scheduler = TaskScheduler.getInstance();
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancelAll();
+            }
+        });
+    }
+
+    // 在作用域内提交后台任务
+    public TaskScheduler.Task execute(TaskScheduler.Pool pool, TaskScheduler.Priority priority, Runnable work) {
+        TaskScheduler.Task[] holder = new TaskScheduler.Task[1];
+        synchronized (tasks) {
+            holder[0] = scheduler.execute(pool, priority, () -> {
+                try {
+                    if (!cancelled) {
+                        work.run();
+                    }
+                } finally {
+                    synchronized (tasks) {
+                        tasks.remove(holder[0]);
+                    }
+                }
+            });
+            if (!holder[0].isDone()) {
+                tasks.add(holder[0]);
+            }
+        }
+        return holder[0];
+    }
+
+    // 投递到主线程执行，作用域取消后不再执行
+    public void postToUi(Runnable runnable) {
+        scheduler.postToUi(() -> {
+            if (!cancelled) {
+                runnable.run();
+            }
+        });
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancelAll() {
+        cancelled = true;
+        List<TaskScheduler.Task> pending;
+        synchronized (tasks) {
+            pending = new ArrayList<>(tasks);
+            tasks.clear();
+        }
+        for (TaskScheduler.Task task : pending) {
+            task.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.myapplication2;
+
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.text.Html;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ImageSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+import android.util.Log;
+import android.util.Xml;
+
+import androidx.annotation.Nullable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nl.siegmann.epublib.domain.Resource;
+
+// 将EPUB章节的XHTML直接从资源输入流解析为Spanned
+// 按 BOM > XML声明 > 资源声明的编码 > UTF-8 的顺序确定字符集，边解码边解析，不再生成整章的byte[]和String副本
+public class XhtmlDecoder {
+    private static final String TAG = "XhtmlDecoder";
+
+    private static final String FEATURE_RELAXED = "http://xmlpull.org/v1/doc/features.html#relaxed";
+    // 探测编码时最多预读的字节数，足够覆盖XML声明
+    private static final int SNIFF_LIMIT = 1024;
+    private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+    // 与Html.fromHtml一致的标题字号
+    private static final float[] HEADING_SIZES = {1.5f, 1.4f, 1.3f, 1.2f, 1.1f, 1f};
+    // 常见的XHTML命名实体，EPUB中经常在没有DTD的情况下直接使用
+    private static final String[][] ENTITIES = {
+            {"nbsp", "\u00A0"}, {"ensp", "\u2002"}, {"emsp", "\u2003"}, {"thinsp", "\u2009"},
+            {"mdash", "\u2014"}, {"ndash", "\u2013"}, {"hellip", "\u2026"}, {"middot", "\u00B7"},
+            {"lsquo", "\u2018"}, {"rsquo", "\u2019"}, {"ldquo", "\u201C"}, {"rdquo", "\u201D"},
+            {"laquo", "\u00AB"}, {"raquo", "\u00BB"}, {"copy", "\u00A9"}, {"reg", "\u00AE"},
+            {"trade", "\u2122"}, {"times", "\u00D7"}, {"bull", "\u2022"}, {"deg", "\u00B0"}
+    };
+
+    private final Html.ImageGetter imageGetter;
+    private final SpannableStringBuilder builder = new SpannableStringBuilder();
+    private final Deque<Mark> openTags = new ArrayDeque<>();
+    // head、style、script等不显示内容的嵌套深度
+    private int hiddenDepth = 0;
+    private int preDepth = 0;
+
+    private XhtmlDecoder(@Nullable Html.ImageGetter imageGetter) {
+        this.imageGetter = imageGetter;
+    }
+
+    // 解析章节资源，imageGetter为null时忽略插图
+    public static Spanned decode(Resource resource, @Nullable Html.ImageGetter imageGetter) throws IOException {
+        try (PerfTrace.Section section = PerfTrace.begin(PerfTrace.CHAPTER_DECODE);
+             InputStream inputStream = new BufferedInputStream(resource.getInputStream(), 8192)) {
+            section.setBytes(resource.getSize());
+            Charset charset = detectCharset(inputStream, resource.getInputEncoding());
+            Log.d(TAG, "decode: href=" + resource.getHref() + ", charset=" + charset);
+            Reader reader = new InputStreamReader(inputStream, charset);
+            return new XhtmlDecoder(imageGetter).parse(reader);
+        } catch (XmlPullParserException e) {
+            throw new IOException("章节解析失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 确定字符集，输入流会被定位到正文第一个字符（跳过BOM）
+    static Charset detectCharset(InputStream inputStream, @Nullable String declaredEncoding) throws IOException {
+        inputStream.mark(SNIFF_LIMIT);
+        byte[] head = new byte[SNIFF_LIMIT];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = inputStream.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        inputStream.reset();
+
+        // BOM优先级最高
+        if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            skipFully(inputStream, 3);
+            return Charset.forName("UTF-8");
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            skipFully(inputStream, 2);
+            return Charset.forName("UTF-16BE");
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            skipFully(inputStream, 2);
+            return Charset.forName("UTF-16LE");
+        }
+
+        // 没有BOM的UTF-16通过 "<?" 的字节排列识别
+        if (length >= 4 && head[0] == '<' && head[1] == 0 && head[2] == '?' && head[3] == 0) {
+            return Charset.forName("UTF-16LE");
+        }
+        if (length >= 4 && head[0] == 0 && head[1] == '<' && head[2] == 0 && head[3] == '?') {
+            return Charset.forName("UTF-16BE");
+        }
+
+        // 其次读取XML声明中的encoding
+        Charset charset = forNameOrNull(parseXmlDeclaration(head, length));
+        if (charset == null) {
+            charset = forNameOrNull(declaredEncoding);
+        }
+        return charset != null ? charset : Charset.forName("UTF-8");
+    }
+
+    @Nullable
+    private static String parseXmlDeclaration(byte[] head, int length) {
+        // XML声明只包含ASCII字符，按ISO-8859-1解释不会出错
+        String prefix = new String(head, 0, length, Charset.forName("ISO-8859-1"));
+        if (!prefix.startsWith("<?xml")) {
+            return null;
+        }
+        int end = prefix.indexOf("?>");
+        if (end < 0) {
+            return null;
+        }
+        Matcher matcher = ENCODING_PATTERN.matcher(prefix.substring(0, end));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    @Nullable
+    private static Charset forNameOrNull(@Nullable String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (Exception e) {
+            Log.w(TAG, "forNameOrNull: Unsupported charset " + name);
+            return null;
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, int count) throws IOException {
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                return;
+            }
+            count -= (int) skipped;
+        }
+    }
+
+    private Spanned parse(Reader reader) throws XmlPullParserException, IOException {
+        XmlPullParser parser = Xml.newPullParser();
+        // 宽松模式兼容书中常见的不规范标记
+        try {
+            parser.setFeature(FEATURE_RELAXED, true);
+        } catch (XmlPullParserException e) {
+            Log.w(TAG, "parse: Relaxed mode not supported");
+        }
+        // 处理DOCTYPE时解析器不允许自定义实体，关闭后下面定义的命名实体才生效；章节中的DOCTYPE只是声明XHTML，不需要处理
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL, false);
+        } catch (XmlPullParserException e) {
+            Log.w(TAG, "parse: Cannot disable DOCTYPE processing");
+        }
+        parser.setInput(reader);
+        for (String[] entity : ENTITIES) {
+            try {
+                parser.defineEntityReplacementText(entity[0], entity[1]);
+            } catch (XmlPullParserException | IllegalStateException e) {
+                Log.w(TAG, "parse: Failed to define entity " + entity[0], e);
+                break;
+            }
+        }
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                handleStartTag(parser);
+            } else if (eventType == XmlPullParser.END_TAG) {
+                handleEndTag();
+            } else if (eventType == XmlPullParser.TEXT && hiddenDepth == 0) {
+                appendText(parser.getText());
+            }
+            eventType = parser.next();
+        }
+
+        // 去掉末尾多余的空行
+        int end = builder.length();
+        while (end > 0 && Character.isWhitespace(builder.charAt(end - 1))) {
+            end--;
+        }
+        builder.delete(end, builder.length());
+        return builder;
+    }
+
+    private void handleStartTag(XmlPullParser parser) {
+        String tag = localName(parser.getName());
+        Mark mark = new Mark(tag, builder.length());
+        openTags.push(mark);
+
+        switch (tag) {
+            case "head":
+            case "style":
+            case "script":
+            case "title":
+                hiddenDepth++;
+                break;
+            case "br":
+                builder.append('\n');
+                break;
+            case "p":
+            case "blockquote":
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                ensureLineBreaks(2);
+                mark.start = builder.length();
+                break;
+            case "div":
+            case "section":
+            case "article":
+            case "header":
+            case "footer":
+            case "figure":
+            case "figcaption":
+            case "ul":
+            case "ol":
+            case "dl":
+            case "dt":
+            case "dd":
+            case "tr":
+            case "hr":
+                ensureLineBreaks(1);
+                mark.start = builder.length();
+                break;
+            case "li":
+                ensureLineBreaks(1);
+                builder.append("• ");
+                mark.start = builder.length();
+                break;
+            case "pre":
+                ensureLineBreaks(2);
+                mark.start = builder.length();
+                preDepth++;
+                break;
+            case "a":
+                mark.href = parser.getAttributeValue(null, "href");
+                break;
+            case "img":
+                appendImage(parser.getAttributeValue(null, "src"));
+                break;
+            case "image":
+                // SVG封面中的<image xlink:href="...">
+                String href = parser.getAttributeValue(null, "xlink:href");
+                appendImage(href != null ? href : parser.getAttributeValue(null, "href"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleEndTag() {
+        Mark mark = openTags.poll();
+        if (mark == null) {
+            return;
+        }
+        int start = mark.start;
+        int end = builder.length();
+
+        switch (mark.tag) {
+            case "head":
+            case "style":
+            case "script":
+            case "title":
+                hiddenDepth--;
+                break;
+            case "b":
+            case "strong":
+                setSpan(new StyleSpan(Typeface.BOLD), start, end);
+                break;
+            case "i":
+            case "em":
+            case "cite":
+            case "dfn":
+                setSpan(new StyleSpan(Typeface.ITALIC), start, end);
+                break;
+            case "u":
+            case "ins":
+                setSpan(new UnderlineSpan(), start, end);
+                break;
+            case "s":
+            case "strike":
+            case "del":
+                setSpan(new StrikethroughSpan(), start, end);
+                break;
+            case "sup":
+                setSpan(new SuperscriptSpan(), start, end);
+                setSpan(new RelativeSizeSpan(0.8f), start, end);
+                break;
+            case "sub":
+                setSpan(new SubscriptSpan(), start, end);
+                setSpan(new RelativeSizeSpan(0.8f), start, end);
+                break;
+            case "big":
+                setSpan(new RelativeSizeSpan(1.25f), start, end);
+                break;
+            case "small":
+                setSpan(new RelativeSizeSpan(0.8f), start, end);
+                break;
+            case "tt":
+            case "code":
+                setSpan(new TypefaceSpan("monospace"), start, end);
+                break;
+            case "a":
+                if (mark.href != null) {
+                    setSpan(new URLSpan(mark.href), start, end);
+                }
+                break;
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                setSpan(new RelativeSizeSpan(HEADING_SIZES[mark.tag.charAt(1) - '1']), start, end);
+                setSpan(new StyleSpan(Typeface.BOLD), start, end);
+                ensureLineBreaks(2);
+                break;
+            case "p":
+                ensureLineBreaks(2);
+                break;
+            case "blockquote":
+                setSpan(new QuoteSpan(), start, end);
+                ensureLineBreaks(2);
+                break;
+            case "pre":
+                setSpan(new TypefaceSpan("monospace"), start, end);
+                preDepth--;
+                ensureLineBreaks(2);
+                break;
+            case "div":
+            case "section":
+            case "article":
+            case "header":
+            case "footer":
+            case "figure":
+            case "figcaption":
+            case "ul":
+            case "ol":
+            case "dl":
+            case "dt":
+            case "dd":
+            case "tr":
+            case "li":
+                ensureLineBreaks(1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // 追加文本，非<pre>中的连续空白合并为一个空格
+    private void appendText(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        if (preDepth > 0) {
+            builder.append(text);
+            return;
+        }
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f') {
+                int last = builder.length() - 1;
+                if (last >= 0 && builder.charAt(last) != ' ' && builder.charAt(last) != '\n') {
+                    builder.append(' ');
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private void appendImage(@Nullable String source) {
+        if (imageGetter == null || source == null || hiddenDepth > 0) {
+            return;
+        }
+        Drawable drawable = imageGetter.getDrawable(source);
+        if (drawable == null) {
+            return;
+        }
+        int start = builder.length();
+        builder.append('\uFFFC');
+        setSpan(new ImageSpan(drawable, source), start, builder.length());
+    }
+
+    // 保证末尾至少有指定数量的换行，用于分隔段落
+    private void ensureLineBreaks(int count) {
+        int length = builder.length();
+        if (length == 0) {
+            return;
+        }
+        // 行尾的空格没有意义，先去掉
+        while (length > 0 && builder.charAt(length - 1) == ' ') {
+            builder.delete(length - 1, length);
+            length--;
+        }
+        int existing = 0;
+        while (existing < length && builder.charAt(length - 1 - existing) == '\n') {
+            existing++;
+        }
+        for (int i = existing; i < count; i++) {
+            builder.append('\n');
+        }
+    }
+
+    private void setSpan(Object span, int start, int end) {
+        if (end > start) {
+            builder.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    // 去掉命名空间前缀并统一为小写
+    private static String localName(String name) {
+        int colonIndex = name.indexOf(':');
+        return (colonIndex >= 0 ? name.substring(colonIndex + 1) : name).toLowerCase(Locale.ROOT);
+    }
+
+    // 尚未闭合的标签及其内容起始位置
+    private static class Mark {
+        final String tag;
+        int start;
+        String href;
+
+        Mark(String tag, int start) {
+            this.tag = tag;
+            this.start = start;
+        }
+    }
+}
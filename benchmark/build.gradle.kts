@@ -0,0 +1,33 @@
+// :core 模块的JMH基准测试
+// 运行全部：./gradlew :benchmark:jmh
+// 只运行部分：./gradlew :benchmark:jmh -PjmhInclude=CharsetDetector
+// 结果（含gc.alloc.rate.norm每次操作分配字节数）输出到 build/results/jmh/results.json
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.add(it) }
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(2)
+    iterations.set(5)
+    // 500MB语料分页后全部驻留内存
+    jvmArgs.addAll("-Xms4g", "-Xmx4g")
+    resultFormat.set("JSON")
+}
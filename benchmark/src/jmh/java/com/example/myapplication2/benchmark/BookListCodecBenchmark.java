@@ -0,0 +1,65 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.BookListCodec;
+import com.example.myapplication2.BookRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 书架列表的序列化与解析，每次onResume都会完整解析一次
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BookListCodecBenchmark {
+    @Param({"100", "2000", "10000"})
+    public int books;
+
+    private List<BookRecord> records;
+    private String encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        records = SyntheticCorpus.library(books);
+        encoded = BookListCodec.encode(records);
+    }
+
+    @Benchmark
+    public String encode() {
+        return BookListCodec.encode(records);
+    }
+
+    @Benchmark
+    public List<BookRecord> decode() {
+        List<BookRecord> out = new ArrayList<>(books);
+        BookListCodec.decode(encoded, out);
+        return out;
+    }
+
+    // 原MainActivity.loadSavedBooks中基于String.split的解析方式，作为对照
+    @Benchmark
+    public List<BookRecord> decodeWithSplit() {
+        List<BookRecord> out = new ArrayList<>(books);
+        for (String bookString : encoded.split(";")) {
+            if (!bookString.isEmpty()) {
+                String[] parts = bookString.split("\\|");
+                if (parts.length >= 6) {
+                    out.add(new BookRecord(parts.length > 9 ? Long.parseLong(parts[9]) : 0, parts[0], parts[1], parts[2], Integer.parseInt(parts[3]), Integer.parseInt(parts[4]),
+                            Long.parseLong(parts[5]), parts.length > 6 ? parts[6] : "unknown.epub",
+                            parts.length > 7 ? parts[7] : "", parts.length > 8 ? parts[8] : ""));
+                }
+            }
+        }
+        return out;
+    }
+}
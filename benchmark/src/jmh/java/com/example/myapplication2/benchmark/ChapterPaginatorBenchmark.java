@@ -0,0 +1,47 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.ChapterPaginator;
+import com.example.myapplication2.CompactText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// BookReaderActivity中章节按字符数分页
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChapterPaginatorBenchmark {
+    // 普通章节、200KB长章节和整本书合成一章的极端情况
+    @Param({"20000", "200000", "2000000"})
+    public int chapterChars;
+
+    @Param({"600"})
+    public int charsPerPage;
+
+    // String的各页是复制出的子串，CompactText的各页共用整章存储
+    @Param({"string", "compact"})
+    public String storage;
+
+    private CharSequence content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String text = SyntheticCorpus.chapter(chapterChars);
+        content = "compact".equals(storage) ? CompactText.of(text) : text;
+    }
+
+    @Benchmark
+    public List<CharSequence> paginate() {
+        return ChapterPaginator.paginate(content, charsPerPage);
+    }
+}
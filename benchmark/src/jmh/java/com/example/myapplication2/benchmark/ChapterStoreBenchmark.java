@@ -0,0 +1,59 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.ChapterStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// 与ReadingActivity.decodeChapter读取预转换章节相同的流程：从映射的章节文件读取正文和样式区间
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChapterStoreBenchmark {
+    private static final int CHAPTERS = 20;
+
+    @Param({"5000", "50000"})
+    public int chapterChars;
+
+    private ChapterStore store;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File file = File.createTempFile("chapters", ".ecs");
+        file.deleteOnExit();
+        try (ChapterStore.Writer writer = new ChapterStore.Writer(file, 0, 0, CHAPTERS)) {
+            for (int i = 0; i < CHAPTERS; i++) {
+                String text = SyntheticCorpus.chapter(chapterChars);
+                ChapterStore.Chapter.Builder builder = new ChapterStore.Chapter.Builder();
+                // 每段开头一处粗体，大致相当于小标题和强调的密度
+                int start = 0;
+                while (start >= 0 && start < text.length()) {
+                    builder.addStyle(start, Math.min(start + 8, text.length()), ChapterStore.STYLE_BOLD, 0);
+                    int lineEnd = text.indexOf('\n', start);
+                    start = lineEnd < 0 ? -1 : lineEnd + 1;
+                }
+                writer.write(builder.build(text));
+            }
+            writer.commit();
+        }
+        store = ChapterStore.open(file, 0, 0);
+    }
+
+    @Benchmark
+    public ChapterStore.Chapter readChapter() throws IOException {
+        next = (next + 1) % CHAPTERS;
+        return store.readChapter(next);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.CharsetDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+// 编码检测只采样固定数量的片段，耗时应与文件大小基本无关
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CharsetDetectorBenchmark {
+    @Param({"10", "100", "500"})
+    public int sizeMb;
+
+    @Param({"UTF-8", "GB18030", "Big5", "UTF-16LE"})
+    public String charset;
+
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        channel = FileChannel.open(SyntheticCorpus.txtFile(sizeMb, charset).toPath(), StandardOpenOption.READ);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+    }
+
+    @Benchmark
+    public CharsetDetector.Result detect() throws IOException {
+        return CharsetDetector.detect(channel);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.ChapterPaginator;
+import com.example.myapplication2.CjkLineBreaker;
+import com.example.myapplication2.CompactText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// BookReaderActivity中中文章节按字宽断行后分页，2000000字相当于把整本书合成一章
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CjkLineBreakerBenchmark {
+    // 15sp、3倍密度下的字宽和1080像素宽屏幕减去边距后的行宽
+    private static final float ADVANCE = 45f;
+    private static final float LINE_WIDTH = 1020f;
+
+    @Param({"20000", "200000", "2000000"})
+    public int chapterChars;
+
+    @Param({"24"})
+    public int linesPerPage;
+
+    private CharSequence content;
+    private CjkLineBreaker lineBreaker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = CompactText.of(SyntheticCorpus.chapter(chapterChars));
+        // 拉丁字符大约半个字宽
+        lineBreaker = new CjkLineBreaker(ADVANCE, LINE_WIDTH, (text, start, end) -> (end - start) * ADVANCE * 0.55f);
+    }
+
+    @Benchmark
+    public List<CharSequence> breakAndPaginate() {
+        return ChapterPaginator.paginateLines(content, lineBreaker.breakLines(content), linesPerPage);
+    }
+}
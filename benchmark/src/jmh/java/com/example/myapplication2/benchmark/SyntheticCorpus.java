@@ -0,0 +1,107 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.BookRecord;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// 基准测试用的合成语料，使用固定随机种子保证每次生成的内容一致
+// 大文件生成一次后缓存在临时目录中，后续运行直接复用
+final class SyntheticCorpus {
+    // 同时存在于GB18030、Big5和Shift_JIS中的常用汉字，生成的文本可以用任一编码保存
+    private static final String HANZI = "的一是不在人有我他中大上年出生能子下自之後作用道行所方多去法如同起分面天心小"
+            + "日本月時見前間東今金入高外來氣山話女北午書先名川水半男西電語土木聞食車何南白母火右友左休父雨";
+    private static final String PUNCTUATION = "，。！？：、";
+    private static final long SEED = 20240601L;
+
+    private SyntheticCorpus() {
+    }
+
+    // 获取指定大小和编码的TXT语料文件
+    static File txtFile(int megabytes, String charsetName) throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "reader-benchmark");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        File file = new File(directory, "corpus-" + megabytes + "mb-" + charsetName + ".txt");
+        long targetBytes = (long) megabytes * 1024 * 1024;
+        if (file.length() >= targetBytes) {
+            return file;
+        }
+
+        Random random = new Random(SEED);
+        Charset charset = Charset.forName(charsetName);
+        // 按字节数估算字符数，写满后停止
+        float bytesPerChar = (float) "中".getBytes(charset).length;
+        long targetChars = (long) (targetBytes / bytesPerChar);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), charset), 1 << 16)) {
+            long written = 0;
+            while (written < targetChars) {
+                written += writeParagraph(writer, random);
+            }
+        }
+        return file;
+    }
+
+    // 生成指定字符数的章节纯文本
+    static String chapter(int chars) {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder(chars + 256);
+        while (builder.length() < chars) {
+            appendParagraph(builder, random);
+        }
+        builder.setLength(chars);
+        return builder.toString();
+    }
+
+    // 生成指定数量的书架记录
+    static List<BookRecord> library(int count) {
+        Random random = new Random(SEED);
+        List<BookRecord> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String fileName = "book-" + i + (i % 4 == 0 ? ".txt" : ".epub");
+            books.add(new BookRecord(i + 1, null,
+                    words(random, 4 + random.nextInt(8)), words(random, 2 + random.nextInt(3)),
+                    random.nextInt(200), 200 + random.nextInt(200), 1_700_000_000_000L + random.nextInt(1_000_000_000),
+                    fileName, "第" + (1 + random.nextInt(200)) + "章 " + words(random, 6), "第" + (200 + random.nextInt(200)) + "章 " + words(random, 6)));
+        }
+        return books;
+    }
+
+    private static int writeParagraph(Writer writer, Random random) throws IOException {
+        StringBuilder builder = new StringBuilder(512);
+        appendParagraph(builder, random);
+        writer.write(builder.toString());
+        return builder.length();
+    }
+
+    // 一个段落由若干句组成，句子长度随机，以换行结束
+    private static void appendParagraph(StringBuilder builder, Random random) {
+        builder.append("　　");
+        int sentences = 1 + random.nextInt(8);
+        for (int i = 0; i < sentences; i++) {
+            int length = 4 + random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                builder.append(HANZI.charAt(random.nextInt(HANZI.length())));
+            }
+            builder.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+        }
+        builder.append('\n');
+    }
+
+    private static String words(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(HANZI.charAt(random.nextInt(HANZI.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.CharsetDetector;
+import com.example.myapplication2.TxtCheckpointIndex;
+import com.example.myapplication2.TxtPaginator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+// 与ReadingActivity.loadTxtBook相同的流程：首次打开建立索引，之后读取保存的索引并跳转到73%处的页
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TxtCheckpointIndexBenchmark {
+    @Param({"10", "100", "300"})
+    public int sizeMb;
+
+    @Param({"UTF-8", "GB18030"})
+    public String charset;
+
+    private File file;
+    private File indexFile;
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = SyntheticCorpus.txtFile(sizeMb, charset);
+        indexFile = new File(file.getParentFile(), file.getName() + ".idx");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        buildIndex().writeTo(indexFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+    }
+
+    @Benchmark
+    public TxtCheckpointIndex detectAndBuild() throws IOException {
+        return buildIndex();
+    }
+
+    @Benchmark
+    public String reopenAndJump() throws IOException {
+        TxtCheckpointIndex index = TxtCheckpointIndex.readFrom(indexFile, channel, TxtPaginator.DEFAULT_PAGE_CHARS);
+        return index.readPage(channel, (int) (index.getPageCount() * 0.73));
+    }
+
+    private TxtCheckpointIndex buildIndex() throws IOException {
+        CharsetDetector.Result detected = CharsetDetector.detect(channel);
+        return TxtCheckpointIndex.build(channel, detected.charset, detected.bomLength, TxtPaginator.DEFAULT_PAGE_CHARS);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.CharsetDetector;
+import com.example.myapplication2.TxtPaginator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 与ReadingActivity.loadTxtBook相同的流程：检测编码后在同一通道上解码并分页
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TxtPaginatorBenchmark {
+    @Param({"10", "100", "500"})
+    public int sizeMb;
+
+    @Param({"UTF-8", "GB18030"})
+    public String charset;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = SyntheticCorpus.txtFile(sizeMb, charset);
+    }
+
+    @Benchmark
+    public List<String> detectAndPaginate() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CharsetDetector.Result detected = CharsetDetector.detect(channel);
+            channel.position(detected.bomLength);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, detected.charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+            return TxtPaginator.paginate(reader, TxtPaginator.DEFAULT_PAGE_CHARS);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+// 不依赖Android的纯Java逻辑（编码检测、分页、书架序列化），可以在JVM上直接测试和做基准测试
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,105 @@
+package com.example.myapplication2;
+
+import java.util.List;
+
+// 书架列表的序列化格式：字段之间用 | 分隔，书与书之间用 ; 分隔
+// uri|标题|作者|当前页|总页数|最后阅读时间|文件名|最后阅读章节|最后一章|编号;
+// 加载时按文件名重新构建URI，uri字段为空时不写入内容
+public class BookListCodec {
+    private static final char FIELD_SEPARATOR = '|';
+    private static final char RECORD_SEPARATOR = ';';
+    // 早期版本只保存前6个字段
+    private static final int MIN_FIELDS = 6;
+    private static final int MAX_FIELDS = 10;
+
+    public static String encode(List<BookRecord> books) {
+        StringBuilder builder = new StringBuilder(books.size() * 128);
+        for (BookRecord book : books) {
+            if (book == null) {
+                continue;
+            }
+            builder.append(book.uri != null ? book.uri : "")
+                    .append(FIELD_SEPARATOR)
+                    .append(book.title != null ? book.title : "未知标题")
+                    .append(FIELD_SEPARATOR)
+                    .append(book.author != null ? book.author : "未知作者")
+                    .append(FIELD_SEPARATOR)
+                    .append(book.currentPage)
+                    .append(FIELD_SEPARATOR)
+                    .append(book.totalPages)
+                    .append(FIELD_SEPARATOR)
+                    .append(book.lastReadTime)
+                    .append(FIELD_SEPARATOR)
+                    .append(book.fileName != null ? book.fileName : "unknown.epub")
+                    .append(FIELD_SEPARATOR)
+                    .append(book.lastChapter != null ? book.lastChapter : "") // 保存最后阅读章节
+                    .append(FIELD_SEPARATOR)
+                    .append(book.finalChapter != null ? book.finalChapter : "") // 保存最后一章
+                    .append(FIELD_SEPARATOR)
+                    .append(book.id)
+                    .append(RECORD_SEPARATOR);
+        }
+        return builder.toString();
+    }
+
+    // 解析书架列表，合法的记录追加到out中，返回无法解析而被丢弃的记录数
+    public static int decode(String data, List<BookRecord> out) {
+        int malformed = 0;
+        if (data == null || data.isEmpty()) {
+            return 0;
+        }
+        String[] fields = new String[MAX_FIELDS];
+        int length = data.length();
+        int recordStart = 0;
+        while (recordStart < length) {
+            int recordEnd = data.indexOf(RECORD_SEPARATOR, recordStart);
+            if (recordEnd < 0) {
+                recordEnd = length;
+            }
+            if (recordEnd > recordStart) {
+                // 逐个字段切分，不使用正则表达式
+                int fieldCount = 0;
+                int fieldStart = recordStart;
+                while (fieldCount < MAX_FIELDS) {
+                    int fieldEnd = data.indexOf(FIELD_SEPARATOR, fieldStart);
+                    if (fieldEnd < 0 || fieldEnd > recordEnd) {
+                        fieldEnd = recordEnd;
+                    }
+                    fields[fieldCount++] = data.substring(fieldStart, fieldEnd);
+                    if (fieldEnd == recordEnd) {
+                        break;
+                    }
+                    fieldStart = fieldEnd + 1;
+                }
+                // 与String.split一致，末尾的空字段不计入字段数
+                while (fieldCount > 0 && fields[fieldCount - 1].isEmpty()) {
+                    fieldCount--;
+                }
+
+                BookRecord record = fieldCount >= MIN_FIELDS ? parseRecord(fields, fieldCount) : null;
+                if (record != null) {
+                    out.add(record);
+                } else if (fieldCount > 0) {
+                    malformed++;
+                }
+            }
+            recordStart = recordEnd + 1;
+        }
+        return malformed;
+    }
+
+    private static BookRecord parseRecord(String[] fields, int fieldCount) {
+        try {
+            return new BookRecord(fieldCount > 9 ? Long.parseLong(fields[9]) : 0, // 早期版本没有编号，加载后分配
+                    fields[0], fields[1], fields[2],
+                    Integer.parseInt(fields[3]), // 保存的当前页
+                    Integer.parseInt(fields[4]), // 保存的总页数
+                    Long.parseLong(fields[5]),
+                    fieldCount > 6 ? fields[6] : "unknown.epub",
+                    fieldCount > 7 ? fields[7] : "", // 最后阅读章节
+                    fieldCount > 8 ? fields[8] : ""); // 最后一章
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.myapplication2;
+
+// 书架列表中保存的一本书，不依赖Android的Uri，便于在JVM上测试和基准测试
+public class BookRecord {
+    public long id; // 导入时分配的编号，阅读进度、缓存和附属文件都以此区分书籍；0表示尚未分配
+    public String uri;
+    public String title;
+    public String author;
+    public int currentPage;
+    public int totalPages;
+    public long lastReadTime;
+    public String fileName;
+    public String lastChapter;
+    public String finalChapter;
+
+    public BookRecord(long id, String uri, String title, String author, int currentPage, int totalPages, long lastReadTime,
+                      String fileName, String lastChapter, String finalChapter) {
+        this.id = id;
+        this.uri = uri;
+        this.title = title;
+        this.author = author;
+        this.currentPage = currentPage;
+        this.totalPages = totalPages;
+        this.lastReadTime = lastReadTime;
+        this.fileName = fileName;
+        this.lastChapter = lastChapter;
+        this.finalChapter = finalChapter;
+    }
+}
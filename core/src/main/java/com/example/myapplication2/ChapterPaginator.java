@@ -0,0 +1,83 @@
+package com.example.myapplication2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 章节纯文本按字符数分页，尽量在句号或段落结尾处断开
+// 各页通过subSequence截取，传入CompactText时各页与整章共用存储，不复制字符
+public class ChapterPaginator {
+
+    /**
+     * 将章节内容分页
+     * @param content 章节完整内容
+     * @param charsPerPage 每页最多字符数
+     * @return 分页后的内容列表，至少包含一页
+     */
+    public static List<CharSequence> paginate(CharSequence content, int charsPerPage) {
+        List<CharSequence> pages = new ArrayList<>();
+        if (content == null || content.length() == 0) {
+            pages.add("");
+            return pages;
+        }
+        if (charsPerPage <= 0) {
+            pages.add(content);
+            return pages;
+        }
+
+        int length = content.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = Math.min(start + charsPerPage, length);
+
+            // 尽量在句号或段落结尾处分页
+            if (end < length) {
+                // 向前查找句号或段落结尾
+                while (end > start && content.charAt(end) != '。' && content.charAt(end) != '\n') {
+                    end--;
+                }
+
+                // 如果找不到句号或段落结尾，则在原位置分页
+                if (end <= start) {
+                    end = start + charsPerPage;
+                } else {
+                    // 包含句号或换行符
+                    end++;
+                }
+            }
+
+            if (end > start) {
+                pages.add(content.subSequence(start, end));
+            }
+
+            start = end;
+        }
+
+        // 如果没有分页，则添加整个内容
+        if (pages.isEmpty()) {
+            pages.add(content);
+        }
+        return pages;
+    }
+
+    /**
+     * 按断行结果分页，每页放满指定行数
+     * @param lineEnds 每行的结束位置，见CjkLineBreaker.breakLines
+     * @param linesPerPage 每页行数
+     * @return 分页后的内容列表，至少包含一页
+     */
+    public static List<CharSequence> paginateLines(CharSequence content, int[] lineEnds, int linesPerPage) {
+        List<CharSequence> pages = new ArrayList<>();
+        if (lineEnds.length == 0 || linesPerPage <= 0) {
+            pages.add(content);
+            return pages;
+        }
+        int start = 0;
+        for (int line = linesPerPage - 1; start < content.length(); line += linesPerPage) {
+            int end = lineEnds[Math.min(line, lineEnds.length - 1)];
+            pages.add(content.subSequence(start, end));
+            start = end;
+        }
+        return pages;
+    }
+}
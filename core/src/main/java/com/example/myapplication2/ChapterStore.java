@@ -0,0 +1,427 @@
+package com.example.myapplication2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 预转换的章节文件：导入书籍时把每个spine章节解析一次，保存为UTF-8正文、样式区间表和字符串表，阅读时映射文件直接读取，不再解析XHTML
+// 文件结构：文件头（魔数、版本、源文件大小和修改时间、章节数）、偏移表（每章的起始位置和字节数）、各章节数据
+// 章节数据：正文UTF-8字节数和字节；插图数和各插图在正文中的位置；字符串数和各字符串（链接地址和插图路径）；样式区间数和各区间
+// 正文不含插图的占位字符，只需要文字时（如分页）可以直接使用，读取整章时再按位置插回
+// 样式区间按起始位置排序，每个区间依次保存与上一区间起始字符的差、字符数、类型和参数，整数都使用变长编码
+public class ChapterStore {
+    private static final int MAGIC = 0x45435331; // "ECS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // 插图在正文中的占位字符，与ImageSpan使用的字符相同
+    private static final char IMAGE_PLACEHOLDER = '\uFFFC';
+
+    // 样式类型，与XhtmlDecoder生成的样式一一对应
+    public static final int STYLE_BOLD = 1;
+    public static final int STYLE_ITALIC = 2;
+    public static final int STYLE_UNDERLINE = 3;
+    public static final int STYLE_STRIKETHROUGH = 4;
+    public static final int STYLE_SUPERSCRIPT = 5;
+    public static final int STYLE_SUBSCRIPT = 6;
+    public static final int STYLE_RELATIVE_SIZE = 7; // 参数为Float.floatToIntBits(比例)
+    public static final int STYLE_MONOSPACE = 8;
+    public static final int STYLE_URL = 9; // 参数为字符串表中的序号
+    public static final int STYLE_QUOTE = 10;
+    public static final int STYLE_IMAGE = 11; // 参数为字符串表中的序号
+
+    private final ByteBuffer buffer;
+    private final int chapterCount;
+
+    private ChapterStore(ByteBuffer buffer, int chapterCount) {
+        this.buffer = buffer;
+        this.chapterCount = chapterCount;
+    }
+
+    public int getChapterCount() {
+        return chapterCount;
+    }
+
+    /**
+     * 映射章节文件
+     * @return 文件不存在、已损坏或源文件已变化时返回null，需要重新转换
+     */
+    public static ChapterStore open(File file, long sourceSize, long sourceModified) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            // 关闭通道后映射仍然有效，由GC回收
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != sourceSize || buffer.getLong(16) != sourceModified) {
+                return null;
+            }
+            int chapterCount = buffer.getInt(24);
+            if (chapterCount < 0 || HEADER_SIZE + (long) chapterCount * 12 > buffer.capacity()) {
+                return null;
+            }
+            return new ChapterStore(buffer, chapterCount);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 读取一章，可以在多个线程同时调用
+    public Chapter readChapter(int index) throws IOException {
+        ByteBuffer chapter = chapterBuffer(index);
+        try {
+            int textBytes = readVarInt(chapter);
+            ByteBuffer textBuffer = chapter.slice();
+            textBuffer.limit(textBytes);
+            String plainText = UTF_8.decode(textBuffer).toString();
+            chapter.position(chapter.position() + textBytes);
+
+            int imageCount = readVarInt(chapter);
+            if (imageCount > chapter.remaining()) {
+                throw new IllegalArgumentException("插图数错误: " + imageCount);
+            }
+            int[] imagePositions = new int[imageCount];
+            int position = 0;
+            for (int i = 0; i < imageCount; i++) {
+                position += readVarInt(chapter);
+                imagePositions[i] = position;
+            }
+            String text = insertImages(plainText, imagePositions);
+
+            String[] strings = new String[readVarInt(chapter)];
+            for (int i = 0; i < strings.length; i++) {
+                int stringBytes = readVarInt(chapter);
+                ByteBuffer stringBuffer = chapter.slice();
+                stringBuffer.limit(stringBytes);
+                strings[i] = UTF_8.decode(stringBuffer).toString();
+                chapter.position(chapter.position() + stringBytes);
+            }
+
+            int styleCount = readVarInt(chapter);
+            int[] styles = new int[styleCount * 4];
+            int start = 0;
+            for (int i = 0; i < styleCount; i++) {
+                start += readVarInt(chapter);
+                styles[i * 4] = start;
+                styles[i * 4 + 1] = start + readVarInt(chapter);
+                styles[i * 4 + 2] = readVarInt(chapter);
+                styles[i * 4 + 3] = readVarInt(chapter);
+            }
+            return new Chapter(text, styles, strings);
+        } catch (RuntimeException e) {
+            // 越界或长度错误说明文件已损坏
+            throw new IOException("章节文件已损坏: " + index, e);
+        }
+    }
+
+    // 只读取一章的纯文本，不含插图的占位字符，与Chapter.getPlainText()相同；全部为ASCII时直接引用映射的字节，不占用堆内存
+    public CompactText readText(int index) throws IOException {
+        ByteBuffer chapter = chapterBuffer(index);
+        try {
+            int textBytes = readVarInt(chapter);
+            ByteBuffer textBuffer = chapter.slice();
+            textBuffer.limit(textBytes);
+            for (int i = 0; i < textBytes; i++) {
+                if (textBuffer.get(i) < 0) {
+                    return CompactText.of(UTF_8.decode(textBuffer));
+                }
+            }
+            return CompactText.latin1(textBuffer);
+        } catch (RuntimeException e) {
+            throw new IOException("章节文件已损坏: " + index, e);
+        }
+    }
+
+    // 定位到一章的数据，返回独立的缓冲区视图
+    private ByteBuffer chapterBuffer(int index) throws IOException {
+        if (index < 0 || index >= chapterCount) {
+            throw new IOException("章节序号超出范围: " + index);
+        }
+        int tableEntry = HEADER_SIZE + index * 12;
+        long offset = buffer.getLong(tableEntry);
+        int length = buffer.getInt(tableEntry + 8);
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+            throw new IOException("章节文件已损坏: " + index);
+        }
+        ByteBuffer chapter = buffer.duplicate();
+        chapter.limit((int) offset + length);
+        chapter.position((int) offset);
+        return chapter;
+    }
+
+    // 在纯文本中按整章的位置插回插图的占位字符，位置按升序排列
+    private static String insertImages(String plainText, int[] positions) {
+        if (positions.length == 0) {
+            return plainText;
+        }
+        StringBuilder builder = new StringBuilder(plainText.length() + positions.length);
+        int from = 0;
+        for (int i = 0; i < positions.length; i++) {
+            // 前面已插回i个占位字符
+            int to = positions[i] - i;
+            if (to < from || to > plainText.length()) {
+                throw new IllegalArgumentException("插图位置错误: " + positions[i]);
+            }
+            builder.append(plainText, from, to).append(IMAGE_PLACEHOLDER);
+            from = to;
+        }
+        return builder.append(plainText, from, plainText.length()).toString();
+    }
+
+    // 去掉指定位置的插图占位字符，位置按升序排列
+    private static String removeImages(String text, int[] positions) {
+        if (positions.length == 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length() - positions.length);
+        int from = 0;
+        for (int position : positions) {
+            builder.append(text, from, position);
+            from = position + 1;
+        }
+        return builder.append(text, from, text.length()).toString();
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    // 一个章节：正文、样式区间（每4个整数为一个区间：起始字符、结束字符、类型、参数）和字符串表
+    public static class Chapter {
+        public final String text;
+        public final int[] styles;
+        public final String[] strings;
+
+        public Chapter(String text, int[] styles, String[] strings) {
+            this.text = text;
+            this.styles = styles;
+            this.strings = strings;
+        }
+
+        public int getStyleCount() {
+            return styles.length / 4;
+        }
+
+        // 去掉插图占位字符后的正文
+        public String getPlainText() {
+            return removeImages(text, getImagePositions());
+        }
+
+        // 插图占位字符的位置：STYLE_IMAGE区间恰好覆盖一个占位字符，区间已按起始位置排序
+        int[] getImagePositions() {
+            int styleCount = getStyleCount();
+            int[] positions = new int[styleCount];
+            int count = 0;
+            for (int i = 0; i < styleCount; i++) {
+                int start = styles[i * 4];
+                if (styles[i * 4 + 2] == STYLE_IMAGE && styles[i * 4 + 1] == start + 1 && start < text.length()
+                        && text.charAt(start) == IMAGE_PLACEHOLDER && (count == 0 || start > positions[count - 1])) {
+                    positions[count++] = start;
+                }
+            }
+            return Arrays.copyOf(positions, count);
+        }
+
+        public static class Builder {
+            private int[] styles = new int[64];
+            private int styleCount = 0;
+            private final List<String> strings = new ArrayList<>();
+
+            public Builder addStyle(int start, int end, int type, int arg) {
+                if (end <= start) {
+                    return this;
+                }
+                if ((styleCount + 1) * 4 > styles.length) {
+                    styles = Arrays.copyOf(styles, styles.length * 2);
+                }
+                styles[styleCount * 4] = start;
+                styles[styleCount * 4 + 1] = end;
+                styles[styleCount * 4 + 2] = type;
+                styles[styleCount * 4 + 3] = arg;
+                styleCount++;
+                return this;
+            }
+
+            // 添加字符串并返回其序号，用作链接和插图样式的参数
+            public int addString(String value) {
+                int index = strings.indexOf(value);
+                if (index >= 0) {
+                    return index;
+                }
+                strings.add(value);
+                return strings.size() - 1;
+            }
+
+            // 区间按起始位置稳定排序，同一位置的样式保持添加顺序
+            public Chapter build(String text) {
+                Integer[] order = new Integer[styleCount];
+                for (int i = 0; i < styleCount; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Integer.compare(styles[a * 4], styles[b * 4]));
+                int[] sorted = new int[styleCount * 4];
+                for (int i = 0; i < styleCount; i++) {
+                    System.arraycopy(styles, order[i] * 4, sorted, i * 4, 4);
+                }
+                return new Chapter(text, sorted, strings.toArray(new String[0]));
+            }
+        }
+    }
+
+    // 逐章写入章节文件，先写入临时文件，全部完成后再替换，转换中途失败不会留下不完整的文件
+    public static class Writer implements AutoCloseable {
+        private final File file;
+        private final File tempFile;
+        private final RandomAccessFile output;
+        private final int chapterCount;
+        private final long[] offsets;
+        private final int[] lengths;
+        private int written = 0;
+        private boolean committed = false;
+        private final Encoder encoder = new Encoder();
+
+        public Writer(File file, long sourceSize, long sourceModified, int chapterCount) throws IOException {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("无法创建目录: " + parent);
+            }
+            this.file = file;
+            this.tempFile = new File(file.getPath() + ".tmp");
+            this.output = new RandomAccessFile(tempFile, "rw");
+            this.output.setLength(0);
+            this.chapterCount = chapterCount;
+            this.offsets = new long[chapterCount];
+            this.lengths = new int[chapterCount];
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(sourceSize);
+            output.writeLong(sourceModified);
+            output.writeInt(chapterCount);
+            // 偏移表在全部章节写入后回填
+            output.write(new byte[chapterCount * 12]);
+        }
+
+        // 按顺序写入下一章
+        public void write(Chapter chapter) throws IOException {
+            if (written >= chapterCount) {
+                throw new IOException("章节数超过声明的数量");
+            }
+            byte[] data = encoder.encode(chapter);
+            offsets[written] = output.getFilePointer();
+            lengths[written] = encoder.length;
+            output.write(data, 0, encoder.length);
+            written++;
+        }
+
+        // 回填偏移表并替换正式文件
+        public void commit() throws IOException {
+            if (written != chapterCount) {
+                throw new IOException("章节数不足: " + written + "/" + chapterCount);
+            }
+            output.seek(HEADER_SIZE);
+            ByteBuffer table = ByteBuffer.allocate(chapterCount * 12);
+            for (int i = 0; i < chapterCount; i++) {
+                table.putLong(offsets[i]);
+                table.putInt(lengths[i]);
+            }
+            output.write(table.array());
+            output.close();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("无法保存章节文件: " + file);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                output.close();
+                tempFile.delete();
+            }
+        }
+    }
+
+    // 章节编码到复用的字节数组
+    private static class Encoder {
+        private byte[] data = new byte[64 * 1024];
+        private int length;
+
+        byte[] encode(Chapter chapter) {
+            length = 0;
+            int[] imagePositions = chapter.getImagePositions();
+            byte[] text = removeImages(chapter.text, imagePositions).getBytes(UTF_8);
+            writeVarInt(text.length);
+            writeBytes(text);
+            writeVarInt(imagePositions.length);
+            int previousPosition = 0;
+            for (int position : imagePositions) {
+                writeVarInt(position - previousPosition);
+                previousPosition = position;
+            }
+            writeVarInt(chapter.strings.length);
+            for (String value : chapter.strings) {
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes);
+            }
+            int styleCount = chapter.getStyleCount();
+            writeVarInt(styleCount);
+            int previousStart = 0;
+            for (int i = 0; i < styleCount; i++) {
+                int start = chapter.styles[i * 4];
+                writeVarInt(start - previousStart);
+                writeVarInt(chapter.styles[i * 4 + 1] - start);
+                writeVarInt(chapter.styles[i * 4 + 2]);
+                writeVarInt(chapter.styles[i * 4 + 3]);
+                previousStart = start;
+            }
+            return data;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        // 无符号变长整数，每字节7位，负数（如浮点数的位）占5个字节
+        private void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+}
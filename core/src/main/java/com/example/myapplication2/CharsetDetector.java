@@ -0,0 +1,444 @@
+package com.example.myapplication2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+// TXT文件的统计式编码检测
+// 在同一个FileChannel上按位置读取文件头、中间和尾部的多个片段（不改变通道的读取位置），
+// 对 UTF-8、GB18030、Big5、Shift_JIS 和无BOM的UTF-16 分别打分，检测完成后通道可直接用于解码
+public class CharsetDetector {
+    // 每个采样片段的字节数
+    static final int SAMPLE_SIZE = 16 * 1024;
+    // 采样片段数（含文件头）
+    static final int SAMPLE_COUNT = 5;
+    // 片段开头寻找同步字节的最大范围
+    private static final int SYNC_LIMIT = 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // 检测结果：字符集和需要跳过的BOM长度
+    public static class Result {
+        public final Charset charset;
+        public final int bomLength;
+
+        Result(Charset charset, int bomLength) {
+            this.charset = charset;
+            this.bomLength = bomLength;
+        }
+
+        @Override
+        public String toString() {
+            return charset.name() + (bomLength > 0 ? " (BOM)" : "");
+        }
+    }
+
+    // 检测通道中文本的编码，只使用按位置读取，不修改channel.position()
+    public static Result detect(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return new Result(UTF_8, 0);
+        }
+
+        byte[][] samples = readSamples(channel, size);
+        long[] offsets = sampleOffsets(size);
+        byte[] head = samples[0];
+
+        // BOM优先，UTF-32的BOM需要在UTF-16之前判断
+        Result bomResult = detectBom(head);
+        if (bomResult != null) {
+            return bomResult;
+        }
+
+        // 8位编码的正文中不会出现0字节，出现0字节时按UTF-16的两种字节序检查
+        Charset utf16 = detectUtf16(samples, offsets);
+        if (utf16 != null) {
+            return new Result(utf16, 0);
+        }
+
+        Prober utf8 = new Utf8Prober();
+        Prober[] multiByteProbers = {new Gb18030Prober(), new Big5Prober(), new ShiftJisProber()};
+        for (int i = 0; i < samples.length; i++) {
+            // 文件头从0开始，其余片段从第一个同步字节之后开始，避免从多字节字符中间切入
+            int start = i == 0 ? 0 : syncOffset(samples[i]);
+            utf8.feed(samples[i], start, samples[i].length);
+            for (Prober prober : multiByteProbers) {
+                prober.feed(samples[i], start, samples[i].length);
+            }
+        }
+
+        // 纯ASCII或合法的UTF-8（允许极少量损坏）
+        if (utf8.chars == 0 && utf8.errors == 0) {
+            return new Result(UTF_8, 0);
+        }
+        if (utf8.errors * 100 <= utf8.chars) {
+            return new Result(UTF_8, 0);
+        }
+
+        // 按常用字命中率选择最可能的双字节编码
+        Prober best = null;
+        float bestScore = -Float.MAX_VALUE;
+        for (Prober prober : multiByteProbers) {
+            float score = prober.score();
+            if (score > bestScore) {
+                bestScore = score;
+                best = prober;
+            }
+        }
+        return new Result(best.charset(), 0);
+    }
+
+    // 计算各采样片段的起始位置，小文件只读一次整个文件
+    static long[] sampleOffsets(long size) {
+        if (size <= (long) SAMPLE_SIZE * SAMPLE_COUNT) {
+            return new long[]{0};
+        }
+        long[] offsets = new long[SAMPLE_COUNT];
+        long step = (size - SAMPLE_SIZE) / (SAMPLE_COUNT - 1);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            offsets[i] = step * i;
+        }
+        return offsets;
+    }
+
+    // 按文件顺序一次读取所有采样片段
+    private static byte[][] readSamples(FileChannel channel, long size) throws IOException {
+        long[] offsets = sampleOffsets(size);
+        int sampleLength = offsets.length == 1 ? (int) size : SAMPLE_SIZE;
+        byte[][] samples = new byte[offsets.length][];
+        for (int i = 0; i < offsets.length; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(sampleLength);
+            long position = offsets[i];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+            }
+            byte[] sample = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, sample, 0, sample.length);
+            samples[i] = sample;
+        }
+        return samples;
+    }
+
+    private static Result detectBom(byte[] head) {
+        int length = head.length;
+        if (length >= 4 && b(head, 0) == 0x00 && b(head, 1) == 0x00 && b(head, 2) == 0xFE && b(head, 3) == 0xFF) {
+            return resultOrNull("UTF-32BE", 4);
+        }
+        if (length >= 4 && b(head, 0) == 0xFF && b(head, 1) == 0xFE && b(head, 2) == 0x00 && b(head, 3) == 0x00) {
+            return resultOrNull("UTF-32LE", 4);
+        }
+        if (length >= 3 && b(head, 0) == 0xEF && b(head, 1) == 0xBB && b(head, 2) == 0xBF) {
+            return new Result(UTF_8, 3);
+        }
+        if (length >= 2 && b(head, 0) == 0xFE && b(head, 1) == 0xFF) {
+            return new Result(Charset.forName("UTF-16BE"), 2);
+        }
+        if (length >= 2 && b(head, 0) == 0xFF && b(head, 1) == 0xFE) {
+            return new Result(Charset.forName("UTF-16LE"), 2);
+        }
+        return null;
+    }
+
+    private static Charset detectUtf16(byte[][] samples, long[] offsets) {
+        long zeros = 0;
+        long total = 0;
+        for (byte[] sample : samples) {
+            for (byte value : sample) {
+                if (value == 0) {
+                    zeros++;
+                }
+            }
+            total += sample.length;
+        }
+        // 换行和空格在UTF-16中都带有0字节，至少应占千分之一
+        if (zeros == 0 || zeros * 1000 < total) {
+            return null;
+        }
+
+        // 按两种字节序统计常见码位（ASCII、拉丁字母、CJK及全角符号）所占比例
+        long littleEndianCommon = 0;
+        long bigEndianCommon = 0;
+        long units = 0;
+        for (int i = 0; i < samples.length; i++) {
+            byte[] sample = samples[i];
+            // 码元按文件中的绝对位置对齐
+            int start = (int) (offsets[i] & 1);
+            for (int j = start; j + 1 < sample.length; j += 2) {
+                if (isCommonCodeUnit(b(sample, j) | (b(sample, j + 1) << 8))) {
+                    littleEndianCommon++;
+                }
+                if (isCommonCodeUnit((b(sample, j) << 8) | b(sample, j + 1))) {
+                    bigEndianCommon++;
+                }
+                units++;
+            }
+        }
+        if (littleEndianCommon >= bigEndianCommon && littleEndianCommon * 100 >= units * 95) {
+            return Charset.forName("UTF-16LE");
+        }
+        if (bigEndianCommon > littleEndianCommon && bigEndianCommon * 100 >= units * 95) {
+            return Charset.forName("UTF-16BE");
+        }
+        return null;
+    }
+
+    private static boolean isCommonCodeUnit(int unit) {
+        return (unit >= 0x20 && unit < 0x7F) || unit == '\n' || unit == '\r' || unit == '\t'
+                || (unit >= 0xA0 && unit <= 0x24F)      // 拉丁字母
+                || (unit >= 0x2000 && unit <= 0x206F)   // 通用标点
+                || (unit >= 0x3000 && unit <= 0x30FF)   // CJK标点、假名
+                || (unit >= 0x4E00 && unit <= 0x9FFF)   // CJK统一汉字
+                || (unit >= 0xFF00 && unit <= 0xFFEF);  // 全角字符
+    }
+
+    // 找到片段中第一个一定位于字符边界之后的位置
+    // 小于0x30的字节（换行、空格、标点）在以上所有编码中都不会作为多字节字符的一部分出现
+    static int syncOffset(byte[] sample) {
+        int limit = Math.min(sample.length, SYNC_LIMIT);
+        for (int i = 0; i < limit; i++) {
+            if (b(sample, i) < 0x30) {
+                return i + 1;
+            }
+        }
+        // 找不到时跳过UTF-8的后续字节，双字节编码最多多记一次错误
+        int i = 0;
+        while (i < limit && (b(sample, i) & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Result resultOrNull(String name, int bomLength) {
+        try {
+            return new Result(Charset.forName(name), bomLength);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int b(byte[] bytes, int index) {
+        return bytes[index] & 0xFF;
+    }
+
+    // 对某种编码累计多字节字符数、常用字命中数和非法序列数
+    abstract static class Prober {
+        int chars = 0;
+        int hits = 0;
+        int errors = 0;
+
+        abstract Charset charset();
+
+        // 返回当前位置字符的字节数；0表示片段末尾被截断，-1表示非法
+        abstract int sequenceLength(byte[] bytes, int index, int end);
+
+        // 双字节字符是否属于常用字
+        boolean isFrequent(int code) {
+            return false;
+        }
+
+        void feed(byte[] bytes, int start, int end) {
+            int i = start;
+            while (i < end) {
+                int lead = b(bytes, i);
+                if (lead < 0x80) {
+                    i++;
+                    continue;
+                }
+                int length = sequenceLength(bytes, i, end);
+                if (length == 0) {
+                    // 片段末尾的不完整字符不计入统计
+                    break;
+                }
+                if (length < 0) {
+                    errors++;
+                    i++;
+                    continue;
+                }
+                chars++;
+                if (length == 2 && isFrequent((lead << 8) | b(bytes, i + 1))) {
+                    hits++;
+                }
+                i += length;
+            }
+        }
+
+        // 常用字命中率，非法序列按更高的权重扣分
+        float score() {
+            if (chars == 0) {
+                return errors > 0 ? -errors : 0f;
+            }
+            return (hits - 5f * errors) / chars;
+        }
+    }
+
+    static class Utf8Prober extends Prober {
+        @Override
+        Charset charset() {
+            return UTF_8;
+        }
+
+        @Override
+        int sequenceLength(byte[] bytes, int index, int end) {
+            int lead = b(bytes, index);
+            int length;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                length = 2;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                length = 3;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                length = 4;
+            } else {
+                return -1;
+            }
+            for (int k = 1; k < length; k++) {
+                if (index + k >= end) {
+                    return 0;
+                }
+                if ((b(bytes, index + k) & 0xC0) != 0x80) {
+                    return -1;
+                }
+            }
+            return length;
+        }
+    }
+
+    static class Gb18030Prober extends Prober {
+        private static final BitSet FREQUENT = frequentCodes(FrequentChars.SIMPLIFIED, "GB18030");
+
+        @Override
+        Charset charset() {
+            return Charset.forName("GB18030");
+        }
+
+        @Override
+        int sequenceLength(byte[] bytes, int index, int end) {
+            int lead = b(bytes, index);
+            if (lead < 0x81 || lead > 0xFE) {
+                return -1;
+            }
+            if (index + 1 >= end) {
+                return 0;
+            }
+            int second = b(bytes, index + 1);
+            if (second >= 0x30 && second <= 0x39) {
+                // 四字节序列
+                if (index + 3 >= end) {
+                    return 0;
+                }
+                int third = b(bytes, index + 2);
+                int fourth = b(bytes, index + 3);
+                return third >= 0x81 && third <= 0xFE && fourth >= 0x30 && fourth <= 0x39 ? 4 : -1;
+            }
+            return (second >= 0x40 && second <= 0x7E) || (second >= 0x80 && second <= 0xFE) ? 2 : -1;
+        }
+
+        @Override
+        boolean isFrequent(int code) {
+            return FREQUENT.get(code);
+        }
+    }
+
+    static class Big5Prober extends Prober {
+        private static final BitSet FREQUENT = frequentCodes(FrequentChars.TRADITIONAL, "Big5");
+
+        @Override
+        Charset charset() {
+            return Charset.forName("Big5");
+        }
+
+        @Override
+        int sequenceLength(byte[] bytes, int index, int end) {
+            int lead = b(bytes, index);
+            if (lead < 0x81 || lead > 0xFE) {
+                return -1;
+            }
+            if (index + 1 >= end) {
+                return 0;
+            }
+            int second = b(bytes, index + 1);
+            return (second >= 0x40 && second <= 0x7E) || (second >= 0xA1 && second <= 0xFE) ? 2 : -1;
+        }
+
+        @Override
+        boolean isFrequent(int code) {
+            return FREQUENT.get(code);
+        }
+    }
+
+    static class ShiftJisProber extends Prober {
+        private static final BitSet FREQUENT = frequentCodes(FrequentChars.JAPANESE, "Shift_JIS");
+
+        @Override
+        Charset charset() {
+            return Charset.forName("Shift_JIS");
+        }
+
+        @Override
+        int sequenceLength(byte[] bytes, int index, int end) {
+            int lead = b(bytes, index);
+            if (lead >= 0xA1 && lead <= 0xDF) {
+                // 半角片假名
+                return 1;
+            }
+            if (!((lead >= 0x81 && lead <= 0x9F) || (lead >= 0xE0 && lead <= 0xFC))) {
+                return -1;
+            }
+            if (index + 1 >= end) {
+                return 0;
+            }
+            int second = b(bytes, index + 1);
+            return (second >= 0x40 && second <= 0x7E) || (second >= 0x80 && second <= 0xFC) ? 2 : -1;
+        }
+
+        @Override
+        boolean isFrequent(int code) {
+            return FREQUENT.get(code);
+        }
+    }
+
+    // 把常用字表按指定编码转换为双字节码位集合
+    private static BitSet frequentCodes(String chars, String charsetName) {
+        BitSet codes = new BitSet(0x10000);
+        Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (Exception e) {
+            return codes;
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            byte[] encoded = String.valueOf(chars.charAt(i)).getBytes(charset);
+            if (encoded.length == 2) {
+                codes.set(((encoded[0] & 0xFF) << 8) | (encoded[1] & 0xFF));
+            }
+        }
+        return codes;
+    }
+
+    // 各语言中出现频率最高的字符和标点
+    static class FrequentChars {
+        static final String SIMPLIFIED = "的一是不了在人有我他这个们中来上大为和国地到以说时要就出会可也你对生能而子那得于着下自之年过发后作里用道行所然家种事成方多经么去法学如都同现没动起分面她看天还开把当心只好又些小"
+                + "，。！？“”：、《》…；（）";
+        static final String TRADITIONAL = "的一是不了在人有我他這個們中來上大為和國地到以說時要就出會可也你對生能而子那得於著下自之年過發後作裡用道行所然家種事成方多經麼去法學如都同現沒動起分面她看天還開把當心只好又些小"
+                + "，。！？「」：、《》…；（）";
+        static final String JAPANESE = hiraganaAndKatakana()
+                + "日一人年大十二本中長出三時行見月分後前生五間上東四今金九入学高円子外八六下来気小七山話女北午百書先名川千水半男西電校語土木聞食車何南万毎白天母火右読友左休父雨私彼"
+                + "、。「」！？…・ー";
+
+        private static String hiraganaAndKatakana() {
+            StringBuilder builder = new StringBuilder();
+            for (char c = 'ぁ'; c <= 'ん'; c++) {
+                builder.append(c);
+            }
+            for (char c = 'ァ'; c <= 'ヶ'; c++) {
+                builder.append(c);
+            }
+            return builder.toString();
+        }
+    }
+}
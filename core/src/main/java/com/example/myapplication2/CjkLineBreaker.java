@@ -0,0 +1,172 @@
+package com.example.myapplication2;
+
+import java.util.Arrays;
+
+// 以中日文为主的文本的快速断行：汉字、假名和全角标点宽度相同，直接按字宽计算每行放下的字数，只有拉丁文等其他字符才实际测量
+// 断行遵守避头尾规则：句读、右括号等不出现在行首，左括号不出现在行尾，与TextView的断行结果一致或更保守
+public class CjkLineBreaker {
+
+    // 测量一段非等宽文字的宽度，由调用方按界面上的字体实现
+    public interface RunMeasurer {
+        float measure(CharSequence text, int start, int end);
+    }
+
+    // 不能出现在行首的字符
+    private static final String NO_LINE_START = "，。、；：？！）］｝〕〉》」』】〗〙〞’”…‥·・ー々〻"
+            + "ぁぃぅぇぉっゃゅょゎゕゖァィゥェォッャュョヮヵヶ,.;:?!)]}%";
+    // 不能出现在行尾的字符
+    private static final String NO_LINE_END = "（［｛〔〈《「『【〖〘〝‘“([{";
+    // 为满足避头尾规则最多向前挪动的字数，超过时按原位置断开
+    private static final int MAX_KINSOKU_SHIFT = 3;
+    // 判断文本是否以中日文为主时最多检查的字符数
+    private static final int SAMPLE_CHARS = 4096;
+
+    private final float advance;
+    private final float lineWidth;
+    private final RunMeasurer measurer;
+
+    /**
+     * @param advance 一个汉字的宽度
+     * @param lineWidth 每行可用的宽度
+     * @param measurer 测量非等宽文字
+     */
+    public CjkLineBreaker(float advance, float lineWidth, RunMeasurer measurer) {
+        if (advance <= 0 || lineWidth <= 0) {
+            throw new IllegalArgumentException("advance=" + advance + ", lineWidth=" + lineWidth);
+        }
+        this.advance = advance;
+        this.lineWidth = lineWidth;
+        this.measurer = measurer;
+    }
+
+    // 按等宽计算的字符：CJK标点、假名、汉字和全角字符
+    public static boolean isFixedAdvance(char c) {
+        return (c >= 0x3000 && c <= 0x30FF)
+                || (c >= 0x3400 && c <= 0x4DBF)
+                || (c >= 0x4E00 && c <= 0x9FFF)
+                || (c >= 0xF900 && c <= 0xFAFF)
+                || (c >= 0xFF01 && c <= 0xFF60);
+    }
+
+    // 文本开头的非空白字符中一半以上按等宽计算时才值得走快速断行
+    public static boolean isCjkDominant(CharSequence text) {
+        int limit = Math.min(text.length(), SAMPLE_CHARS);
+        int counted = 0;
+        int fixed = 0;
+        for (int i = 0; i < limit; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            counted++;
+            if (isFixedAdvance(c)) {
+                fixed++;
+            }
+        }
+        return counted > 0 && fixed * 2 > counted;
+    }
+
+    /**
+     * 断行
+     * @return 每行的结束位置（不含），行尾的换行符计入本行，最后一个元素等于文本长度
+     */
+    public int[] breakLines(CharSequence text) {
+        int length = text.length();
+        int[] lineEnds = new int[(int) (length * advance / lineWidth) + 16];
+        int lineCount = 0;
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = findLineEnd(text, lineStart, length);
+            if (lineCount == lineEnds.length) {
+                lineEnds = Arrays.copyOf(lineEnds, lineEnds.length * 2);
+            }
+            lineEnds[lineCount++] = lineEnd;
+            lineStart = lineEnd;
+        }
+        return Arrays.copyOf(lineEnds, lineCount);
+    }
+
+    // 从lineStart开始放满一行，返回下一行的起点
+    private int findLineEnd(CharSequence text, int lineStart, int length) {
+        float x = 0;
+        int i = lineStart;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            if (isFixedAdvance(c)) {
+                if (x + advance > lineWidth && i > lineStart) {
+                    return applyKinsoku(text, lineStart, i);
+                }
+                x += advance;
+                i++;
+                continue;
+            }
+
+            // 其他字符按单词测量，单词后的空格可以悬挂在行尾
+            int wordEnd = i;
+            while (wordEnd < length && isWordChar(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            int spaceEnd = wordEnd;
+            while (spaceEnd < length && text.charAt(spaceEnd) == ' ') {
+                spaceEnd++;
+            }
+            if (wordEnd > i) {
+                float wordWidth = measurer.measure(text, i, wordEnd);
+                if (x + wordWidth > lineWidth) {
+                    if (i > lineStart) {
+                        return applyKinsoku(text, lineStart, i);
+                    }
+                    // 单词比整行还宽，只能在单词中间断开
+                    return i + fitChars(text, i, wordEnd);
+                }
+                x += wordWidth;
+            }
+            if (spaceEnd > wordEnd) {
+                x += measurer.measure(text, wordEnd, spaceEnd);
+            }
+            i = spaceEnd;
+        }
+        return length;
+    }
+
+    // 原定在breakAt处断行，违反避头尾规则时把前面的字挪到下一行
+    private int applyKinsoku(CharSequence text, int lineStart, int breakAt) {
+        int candidate = breakAt;
+        for (int shift = 0; shift <= MAX_KINSOKU_SHIFT && candidate > lineStart + 1; shift++) {
+            char next = text.charAt(candidate);
+            char previous = text.charAt(candidate - 1);
+            if (NO_LINE_START.indexOf(next) < 0 && NO_LINE_END.indexOf(previous) < 0
+                    && !(isWordChar(previous) && isWordChar(next))) {
+                return candidate;
+            }
+            candidate--;
+        }
+        return breakAt;
+    }
+
+    // 一行能放下的单词前缀字数，至少为1，不拆开代理对
+    private int fitChars(CharSequence text, int start, int end) {
+        int low = 1;
+        int high = end - start;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (measurer.measure(text, start, start + middle) <= lineWidth) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (low > 1 && Character.isHighSurrogate(text.charAt(start + low - 1))) {
+            low--;
+        }
+        return low;
+    }
+
+    // 需要连在一起测量的字符
+    private static boolean isWordChar(char c) {
+        return c != ' ' && c != '\n' && !isFixedAdvance(c);
+    }
+}
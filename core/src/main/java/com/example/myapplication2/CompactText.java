@@ -0,0 +1,125 @@
+package com.example.myapplication2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+// 紧凑存储的只读文本：全部字符都在Latin-1范围内时每个字符只占一个字节，否则使用char数组，也可以直接引用映射文件中的ASCII字节
+// subSequence只记录范围，不复制字符，分页后的各页与整章共用同一份存储
+// 可以直接交给StaticLayout绘制；TextView显示时仍会复制一份
+public final class CompactText implements CharSequence {
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    // 三种存储中只有一种不为null
+    private final byte[] latin1;
+    private final char[] chars;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    private CompactText(byte[] latin1, char[] chars, ByteBuffer buffer, int offset, int length) {
+        this.latin1 = latin1;
+        this.chars = chars;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // 复制文本到紧凑存储
+    public static CompactText of(CharSequence text) {
+        if (text instanceof CompactText) {
+            return (CompactText) text;
+        }
+        int length = text.length();
+        boolean isLatin1 = true;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) > 0xFF) {
+                isLatin1 = false;
+                break;
+            }
+        }
+        if (isLatin1) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) text.charAt(i);
+            }
+            return new CompactText(bytes, null, null, 0, length);
+        }
+        char[] chars = new char[length];
+        if (text instanceof String) {
+            ((String) text).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+        return new CompactText(null, chars, null, 0, length);
+    }
+
+    // 直接引用缓冲区中position到limit之间的Latin-1字节，不复制；调用方需保证这些字节不再改变
+    public static CompactText latin1(ByteBuffer bytes) {
+        ByteBuffer slice = bytes.slice();
+        return new CompactText(null, null, slice, 0, slice.remaining());
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+        }
+        if (latin1 != null) {
+            return (char) (latin1[offset + index] & 0xFF);
+        }
+        if (chars != null) {
+            return chars[offset + index];
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+        }
+        if (start == 0 && end == length) {
+            return this;
+        }
+        return new CompactText(latin1, chars, buffer, offset + start, end - start);
+    }
+
+    // 与String.getChars相同，把[start, end)的字符复制到dest
+    public void getChars(int start, int end, char[] dest, int destOffset) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+        }
+        if (chars != null) {
+            System.arraycopy(chars, offset + start, dest, destOffset, end - start);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            dest[destOffset++] = charAt(i);
+        }
+    }
+
+    // 是否每个字符只占一个字节
+    public boolean isLatin1() {
+        return chars == null;
+    }
+
+    @Override
+    public String toString() {
+        if (latin1 != null) {
+            return new String(latin1, offset, length, ISO_8859_1);
+        }
+        if (chars != null) {
+            return new String(chars, offset, length);
+        }
+        char[] copy = new char[length];
+        getChars(0, length, copy, 0);
+        return new String(copy);
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.myapplication2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// TXT文件的稀疏检查点索引：记录每页开头在文件中的字节偏移和在全文中的字符偏移，可以保存为单独的索引文件
+// 分页规则与TxtPaginator相同（按行累计字符数，超过每页字符数后另起一页），所以每个检查点都在行首，
+// 行首处解码器中没有未完成的多字节序列，从任意检查点用新的解码器开始解码即可，跳页和恢复进度不需要从文件开头重新扫描
+public class TxtCheckpointIndex {
+    private static final int MAGIC = 0x54584349; // "TXCI"
+    private static final int VERSION = 1;
+    // 建立索引时每次读取的字节数
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+    // 计算文件指纹时读取的文件头和文件尾的字节数
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    private final Charset charset;
+    private final int bomLength;
+    private final int pageChars;
+    private final long fileSize;
+    private final long fingerprint;
+    private final long[] byteOffsets; // 每页开头的字节偏移
+    private final long[] charOffsets; // 每页开头在全文中的字符偏移
+    private final long totalChars;
+
+    private TxtCheckpointIndex(Charset charset, int bomLength, int pageChars, long fileSize, long fingerprint,
+                               long[] byteOffsets, long[] charOffsets, long totalChars) {
+        this.charset = charset;
+        this.bomLength = bomLength;
+        this.pageChars = pageChars;
+        this.fileSize = fileSize;
+        this.fingerprint = fingerprint;
+        this.byteOffsets = byteOffsets;
+        this.charOffsets = charOffsets;
+        this.totalChars = totalChars;
+    }
+
+    public int getPageCount() {
+        return byteOffsets.length;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public long getTotalChars() {
+        return totalChars;
+    }
+
+    public long getPageByteOffset(int page) {
+        return byteOffsets[page];
+    }
+
+    // 指定页占用的字节数，最后一页到文件末尾
+    public long getPageByteLength(int page) {
+        return pageEnd(page) - byteOffsets[page];
+    }
+
+    public long getPageCharOffset(int page) {
+        return charOffsets[page];
+    }
+
+    /**
+     * 扫描整个文件建立索引，只统计每行的字符数，不保存文本
+     * @param channel 文件通道，只使用按位置读取
+     * @param charset 文件编码
+     * @param bomLength 正文前需要跳过的BOM字节数
+     * @param pageChars 每页字符数，与TxtPaginator的参数含义相同
+     */
+    public static TxtCheckpointIndex build(FileChannel channel, Charset charset, int bomLength, int pageChars) throws IOException {
+        long fileSize = channel.size();
+        int unit = codeUnitSize(charset);
+        boolean bigEndian = !charset.name().endsWith("LE");
+        CharsetDecoder decoder = newDecoder(charset);
+        CharBuffer chars = CharBuffer.allocate(8192);
+
+        LongArray byteOffsets = new LongArray();
+        LongArray charOffsets = new LongArray();
+        byteOffsets.add(bomLength);
+        charOffsets.add(0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        buffer.flip();
+        long readPosition = bomLength;
+        long totalChars = 0;
+        long lineChars = 0;     // 当前行已解码的字符数
+        long pageTotal = 0;     // 当前页已累计的字符数
+        boolean lineStarted = false;
+        boolean eof = false;
+
+        while (true) {
+            // 保留未处理的字节，继续从文件读取
+            buffer.compact();
+            while (!eof && buffer.hasRemaining()) {
+                int read = channel.read(buffer, readPosition);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    readPosition += read;
+                }
+            }
+            buffer.flip();
+            long bufferStart = readPosition - buffer.limit();
+            ByteBuffer view = buffer.duplicate();
+
+            int lineStart = buffer.position();
+            int limit = buffer.limit();
+            int i = lineStart;
+            boolean needMoreInput = false;
+            byte[] array = buffer.array();
+            while (i + unit <= limit) {
+                int codeUnit = unit == 1 ? array[i] : readCodeUnit(buffer, i, unit, bigEndian);
+                if (codeUnit != '\n' && codeUnit != '\r') {
+                    i += unit;
+                    continue;
+                }
+                int next = i + unit;
+                if (codeUnit == '\r') {
+                    // \r\n按一个换行处理，\r在缓冲区末尾时等读入下一段再判断
+                    if (next + unit <= limit) {
+                        if (readCodeUnit(buffer, next, unit, bigEndian) == '\n') {
+                            next += unit;
+                        }
+                    } else if (!eof) {
+                        lineChars += countChars(decoder, view, lineStart, i, chars, false);
+                        lineStart = view.position();
+                        lineStarted = true;
+                        needMoreInput = true;
+                        break;
+                    }
+                }
+                lineChars += countChars(decoder, view, lineStart, i, chars, true);
+                // 与BufferedReader.readLine()相同，每行末尾按一个\n计算
+                totalChars += lineChars + 1;
+                pageTotal += lineChars + 1;
+                lineChars = 0;
+                lineStarted = false;
+                if (pageTotal > pageChars) {
+                    byteOffsets.add(bufferStart + next);
+                    charOffsets.add(totalChars);
+                    pageTotal = 0;
+                }
+                lineStart = next;
+                i = next;
+            }
+
+            if (needMoreInput) {
+                buffer.position(lineStart);
+                continue;
+            }
+            if (eof) {
+                // 最后一行没有换行符
+                if (lineStart < limit || lineStarted) {
+                    lineChars += countChars(decoder, view, lineStart, limit, chars, true);
+                    totalChars += lineChars + 1;
+                }
+                break;
+            }
+            // 本段中没有换行的部分先解码计数，未完成的多字节序列留到下一段
+            int end = lineStart + (limit - lineStart) / unit * unit;
+            if (end > lineStart) {
+                lineChars += countChars(decoder, view, lineStart, end, chars, false);
+                lineStarted = true;
+                buffer.position(view.position());
+            } else {
+                buffer.position(lineStart);
+            }
+        }
+
+        // 文件恰好在页尾结束时不保留空的最后一页
+        if (byteOffsets.size() > 0 && charOffsets.get(charOffsets.size() - 1) >= totalChars) {
+            byteOffsets.removeLast();
+            charOffsets.removeLast();
+        }
+        return new TxtCheckpointIndex(charset, bomLength, pageChars, fileSize, fingerprint(channel),
+                byteOffsets.toArray(), charOffsets.toArray(), totalChars);
+    }
+
+    // 只读取并解码指定页的字节范围，结果与TxtPaginator分页得到的该页内容相同
+    public String readPage(FileChannel channel, int page) throws IOException {
+        long start = byteOffsets[page];
+        long end = pageEnd(page);
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("文件已被修改");
+            }
+        }
+
+        StringBuilder builder = new StringBuilder((int) Math.min(pageChars * 2L, bytes.length));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), newDecoder(charset)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.append(line).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private long pageEnd(int page) {
+        return page + 1 < byteOffsets.length ? byteOffsets[page + 1] : fileSize;
+    }
+
+    // 写入索引文件，先写临时文件再改名，写入中途失败不会留下损坏的索引
+    public void writeTo(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fileSize);
+            output.writeLong(fingerprint);
+            output.writeUTF(charset.name());
+            output.writeInt(bomLength);
+            output.writeInt(pageChars);
+            output.writeLong(totalChars);
+            output.writeInt(byteOffsets.length);
+            for (int i = 0; i < byteOffsets.length; i++) {
+                output.writeLong(byteOffsets[i]);
+                output.writeLong(charOffsets[i]);
+            }
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("无法保存索引文件: " + file);
+        }
+    }
+
+    /**
+     * 读取索引文件
+     * @return 索引文件不存在、已损坏、分页参数不同或对应的文件已变化时返回null，需要重新建立
+     */
+    public static TxtCheckpointIndex readFrom(File file, FileChannel channel, int pageChars) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            long fileSize = input.readLong();
+            long fingerprint = input.readLong();
+            if (fileSize != channel.size() || fingerprint != fingerprint(channel)) {
+                return null;
+            }
+            Charset charset = Charset.forName(input.readUTF());
+            int bomLength = input.readInt();
+            if (input.readInt() != pageChars) {
+                return null;
+            }
+            long totalChars = input.readLong();
+            int pageCount = input.readInt();
+            long[] byteOffsets = new long[pageCount];
+            long[] charOffsets = new long[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                byteOffsets[i] = input.readLong();
+                charOffsets[i] = input.readLong();
+            }
+            return new TxtCheckpointIndex(charset, bomLength, pageChars, fileSize, fingerprint, byteOffsets, charOffsets, totalChars);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // 文件大小加文件头尾内容的CRC，用于判断索引是否仍然对应这个文件
+    static long fingerprint(FileChannel channel) throws IOException {
+        long size = channel.size();
+        CRC32 crc = new CRC32();
+        updateCrc(crc, channel, 0, (int) Math.min(size, FINGERPRINT_BYTES));
+        if (size > FINGERPRINT_BYTES) {
+            long tailStart = Math.max(FINGERPRINT_BYTES, size - FINGERPRINT_BYTES);
+            updateCrc(crc, channel, tailStart, (int) (size - tailStart));
+        }
+        return crc.getValue() ^ (size << 32);
+    }
+
+    private static void updateCrc(CRC32 crc, FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        crc.update(buffer.array(), 0, buffer.position());
+    }
+
+    // 解码[from, to)范围内的字节并返回字符数，endOfInput为false时末尾未完成的多字节序列不会被消耗
+    private static long countChars(CharsetDecoder decoder, ByteBuffer view, int from, int to, CharBuffer chars, boolean endOfInput) {
+        view.limit(to);
+        view.position(from);
+        long count = 0;
+        while (true) {
+            chars.clear();
+            CoderResult result = decoder.decode(view, chars, endOfInput);
+            count += chars.position();
+            if (!result.isOverflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (true) {
+                chars.clear();
+                CoderResult result = decoder.flush(chars);
+                count += chars.position();
+                if (!result.isOverflow()) {
+                    break;
+                }
+            }
+            decoder.reset();
+        }
+        return count;
+    }
+
+    private static int readCodeUnit(ByteBuffer buffer, int index, int unit, boolean bigEndian) {
+        if (unit == 1) {
+            return buffer.get(index) & 0xFF;
+        }
+        int value = 0;
+        for (int k = 0; k < unit; k++) {
+            int b = buffer.get(index + (bigEndian ? k : unit - 1 - k)) & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    // 换行符在文件中占用的字节数；其余支持的编码中多字节字符都不会包含0x0A和0x0D
+    private static int codeUnitSize(Charset charset) {
+        String name = charset.name();
+        if (name.startsWith("UTF-16")) {
+            return 2;
+        }
+        if (name.startsWith("UTF-32")) {
+            return 4;
+        }
+        return 1;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // 可增长的long数组，避免装箱
+    private static class LongArray {
+        private long[] values = new long[64];
+        private int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
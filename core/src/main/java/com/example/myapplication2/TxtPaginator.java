@@ -0,0 +1,40 @@
+package com.example.myapplication2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// TXT文件按行读取并分页，每页累计超过指定字符数后另起一页
+public class TxtPaginator {
+    // 阅读页面默认每页约20000个字符（避免单页内容过多）
+    public static final int DEFAULT_PAGE_CHARS = 20000;
+
+    // 读取全部内容并分页，调用方负责关闭reader
+    public static List<String> paginate(Reader reader, int pageChars) throws IOException {
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<String> pages = new ArrayList<>();
+        StringBuilder currentPage = new StringBuilder();
+        String line;
+        long totalChars = 0;
+
+        while ((line = bufferedReader.readLine()) != null) {
+            currentPage.append(line).append('\n');
+            totalChars += line.length() + 1; // +1 for newline character
+
+            if (totalChars > pageChars) {
+                pages.add(currentPage.toString());
+                // 复用缓冲区，避免每页重新扩容
+                currentPage.setLength(0);
+                totalChars = 0;
+            }
+        }
+
+        // 添加最后一页（如果有内容）
+        if (currentPage.length() > 0) {
+            pages.add(currentPage.toString());
+        }
+        return pages;
+    }
+}
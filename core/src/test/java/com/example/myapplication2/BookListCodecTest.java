@@ -0,0 +1,96 @@
+package com.example.myapplication2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BookListCodecTest {
+
+    private static BookRecord record(long id, String title, String fileName) {
+        return new BookRecord(id, null, title, "作者", 3, 12, 1700000000000L + id, fileName, "第三章", "第十二章");
+    }
+
+    private static void assertRecordEquals(BookRecord expected, BookRecord actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.author, actual.author);
+        assertEquals(expected.currentPage, actual.currentPage);
+        assertEquals(expected.totalPages, actual.totalPages);
+        assertEquals(expected.lastReadTime, actual.lastReadTime);
+        assertEquals(expected.fileName, actual.fileName);
+        assertEquals(expected.lastChapter, actual.lastChapter);
+        assertEquals(expected.finalChapter, actual.finalChapter);
+    }
+
+    @Test
+    public void roundTripsAllFields() {
+        List<BookRecord> books = Arrays.asList(record(1, "三体", "三体.epub"), record(2, "Dune", "dune.txt"));
+        List<BookRecord> decoded = new ArrayList<>();
+
+        int malformed = BookListCodec.decode(BookListCodec.encode(books), decoded);
+
+        assertEquals(0, malformed);
+        assertEquals(books.size(), decoded.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertRecordEquals(books.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void roundTripsEmptyChapterTitles() {
+        BookRecord book = new BookRecord(7, null, "新书", "未知作者", 0, 0, 42L, "新书.epub", "", "");
+        List<BookRecord> decoded = new ArrayList<>();
+
+        BookListCodec.decode(BookListCodec.encode(Arrays.asList(book)), decoded);
+
+        assertEquals(1, decoded.size());
+        assertRecordEquals(book, decoded.get(0));
+    }
+
+    @Test
+    public void encodesEmptyList() {
+        List<BookRecord> decoded = new ArrayList<>();
+
+        assertEquals("", BookListCodec.encode(new ArrayList<BookRecord>()));
+        assertEquals(0, BookListCodec.decode("", decoded));
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void decodesLegacyRecordsWithoutId() {
+        List<BookRecord> decoded = new ArrayList<>();
+
+        int malformed = BookListCodec.decode("content://a|旧书|作者|5|20|123;", decoded);
+
+        assertEquals(0, malformed);
+        assertEquals(1, decoded.size());
+        BookRecord book = decoded.get(0);
+        assertEquals(0, book.id);
+        assertEquals("content://a", book.uri);
+        assertEquals(5, book.currentPage);
+        assertEquals(20, book.totalPages);
+        assertEquals("unknown.epub", book.fileName);
+        assertEquals("", book.lastChapter);
+    }
+
+    @Test
+    public void dropsMalformedRecordsAndKeepsTheRest() {
+        String data = BookListCodec.encode(Arrays.asList(record(1, "甲", "a.epub")))
+                + "|坏记录|作者|不是数字|1|2;"
+                + "太短|的记录;"
+                + BookListCodec.encode(Arrays.asList(record(2, "乙", "b.epub")));
+        List<BookRecord> decoded = new ArrayList<>();
+
+        int malformed = BookListCodec.decode(data, decoded);
+
+        assertEquals(2, malformed);
+        assertEquals(2, decoded.size());
+        assertEquals(1, decoded.get(0).id);
+        assertEquals(2, decoded.get(1).id);
+    }
+}
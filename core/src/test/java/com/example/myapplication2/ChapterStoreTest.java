@@ -0,0 +1,245 @@
+package com.example.myapplication2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChapterStoreTest {
+    private static final long SOURCE_SIZE = 123456;
+    private static final long SOURCE_MODIFIED = 1700000000000L;
+    // 文件头之后是偏移表，每章12字节
+    private static final int TABLE_OFFSET = 4 + 4 + 8 + 8 + 4;
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File newStoreFile() throws IOException {
+        File file = File.createTempFile("chapters", ".bin");
+        files.add(file);
+        return file;
+    }
+
+    private static ChapterStore.Chapter asciiChapter() {
+        ChapterStore.Chapter.Builder builder = new ChapterStore.Chapter.Builder();
+        builder.addStyle(0, 9, ChapterStore.STYLE_BOLD, 0);
+        builder.addStyle(10, 14, ChapterStore.STYLE_URL, builder.addString("#note1"));
+        return builder.build("Chapter 1\nCall me Ishmael.\n");
+    }
+
+    private static ChapterStore.Chapter cjkChapter() {
+        ChapterStore.Chapter.Builder builder = new ChapterStore.Chapter.Builder();
+        // 后添加的区间起始位置更靠前，读取时按起始位置排序
+        builder.addStyle(5, 8, ChapterStore.STYLE_RELATIVE_SIZE, Float.floatToIntBits(1.5f));
+        builder.addStyle(0, 3, ChapterStore.STYLE_ITALIC, 0);
+        builder.addStyle(0, 300, ChapterStore.STYLE_QUOTE, 0);
+        StringBuilder text = new StringBuilder("第一章\n天色渐渐暗了下来。\n");
+        for (int i = 0; i < 20; i++) {
+            text.append("村口的老槐树下坐着几个人。");
+        }
+        return builder.build(text.toString());
+    }
+
+    private File writeStore(ChapterStore.Chapter... chapters) throws IOException {
+        File file = newStoreFile();
+        try (ChapterStore.Writer writer = new ChapterStore.Writer(file, SOURCE_SIZE, SOURCE_MODIFIED, chapters.length)) {
+            for (ChapterStore.Chapter chapter : chapters) {
+                writer.write(chapter);
+            }
+            writer.commit();
+        }
+        return file;
+    }
+
+    @Test
+    public void roundTripsChapters() throws IOException {
+        ChapterStore.Chapter ascii = asciiChapter();
+        ChapterStore.Chapter cjk = cjkChapter();
+        ChapterStore store = ChapterStore.open(writeStore(ascii, cjk), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        assertNotNull(store);
+        assertEquals(2, store.getChapterCount());
+        for (int i = 0; i < 2; i++) {
+            ChapterStore.Chapter expected = i == 0 ? ascii : cjk;
+            ChapterStore.Chapter actual = store.readChapter(i);
+            assertEquals(expected.text, actual.text);
+            assertArrayEquals(expected.styles, actual.styles);
+            assertEquals(expected.strings.length, actual.strings.length);
+            for (int k = 0; k < expected.strings.length; k++) {
+                assertEquals(expected.strings[k], actual.strings[k]);
+            }
+        }
+        assertEquals(1.5f, Float.intBitsToFloat(store.readChapter(1).styles[11]), 0);
+    }
+
+    @Test
+    public void readTextMatchesChapterText() throws IOException {
+        ChapterStore store = ChapterStore.open(writeStore(asciiChapter(), cjkChapter()), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        CompactText ascii = store.readText(0);
+        CompactText cjk = store.readText(1);
+
+        assertEquals(asciiChapter().text, ascii.toString());
+        assertTrue(ascii.isLatin1());
+        assertEquals(cjkChapter().text, cjk.toString());
+        assertFalse(cjk.isLatin1());
+    }
+
+    // 插图前后各有一段文字，粗体区间跨过插图
+    private static ChapterStore.Chapter illustratedChapter() {
+        ChapterStore.Chapter.Builder builder = new ChapterStore.Chapter.Builder();
+        builder.addStyle(0, 12, ChapterStore.STYLE_BOLD, 0);
+        builder.addStyle(7, 8, ChapterStore.STYLE_IMAGE, builder.addString("images/map.png"));
+        builder.addStyle(15, 16, ChapterStore.STYLE_IMAGE, builder.addString("images/cover.jpg"));
+        builder.addStyle(16, 20, ChapterStore.STYLE_URL, builder.addString("#n1"));
+        return builder.build("Before \uFFFC after\n\uFFFCnote");
+    }
+
+    @Test
+    public void readTextSkipsImagePlaceholders() throws IOException {
+        ChapterStore.Chapter chapter = illustratedChapter();
+        ChapterStore store = ChapterStore.open(writeStore(chapter), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        CompactText text = store.readText(0);
+
+        assertEquals("Before  after\nnote", chapter.getPlainText());
+        assertEquals(chapter.getPlainText(), text.toString());
+        // 去掉占位字符后全部是ASCII，仍然直接引用映射的字节
+        assertTrue(text.isLatin1());
+    }
+
+    @Test
+    public void readChapterRestoresImagePlaceholders() throws IOException {
+        ChapterStore.Chapter chapter = illustratedChapter();
+        ChapterStore store = ChapterStore.open(writeStore(chapter), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        ChapterStore.Chapter restored = store.readChapter(0);
+
+        assertEquals(chapter.text, restored.text);
+        assertArrayEquals(chapter.styles, restored.styles);
+        assertEquals("images/cover.jpg", restored.strings[restored.styles[2 * 4 + 3]]);
+        assertEquals('\uFFFC', restored.text.charAt(restored.styles[2 * 4]));
+    }
+
+    @Test
+    public void keepsPlaceholderWithoutImageStyle() throws IOException {
+        ChapterStore.Chapter chapter = new ChapterStore.Chapter.Builder().build("a\uFFFCb");
+        ChapterStore store = ChapterStore.open(writeStore(chapter), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        assertEquals("a\uFFFCb", store.readText(0).toString());
+        assertEquals("a\uFFFCb", store.readChapter(0).text);
+    }
+
+    @Test
+    public void rejectsChangedSource() throws IOException {
+        File file = writeStore(asciiChapter());
+
+        assertNull(ChapterStore.open(file, SOURCE_SIZE + 1, SOURCE_MODIFIED));
+        assertNull(ChapterStore.open(file, SOURCE_SIZE, SOURCE_MODIFIED + 1));
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        File file = writeStore(asciiChapter());
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(10);
+        }
+
+        assertNull(ChapterStore.open(file, SOURCE_SIZE, SOURCE_MODIFIED));
+    }
+
+    @Test
+    public void outOfRangeIndexThrowsIOException() throws IOException {
+        ChapterStore store = ChapterStore.open(writeStore(asciiChapter()), SOURCE_SIZE, SOURCE_MODIFIED);
+
+        try {
+            store.readChapter(1);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 序号超出范围
+        }
+        try {
+            store.readText(-1);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 序号超出范围
+        }
+    }
+
+    @Test
+    public void corruptOffsetTableThrowsIOException() throws IOException {
+        File file = writeStore(asciiChapter(), cjkChapter());
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            // 第二章的起始位置指向文件之外
+            output.seek(TABLE_OFFSET + 12);
+            output.writeLong(file.length() + 100);
+        }
+        ChapterStore store = ChapterStore.open(file, SOURCE_SIZE, SOURCE_MODIFIED);
+
+        assertEquals(asciiChapter().text, store.readChapter(0).text);
+        try {
+            store.readChapter(1);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 偏移表已损坏
+        }
+    }
+
+    @Test
+    public void corruptChapterDataThrowsIOException() throws IOException {
+        File file = writeStore(asciiChapter());
+        long chapterOffset;
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(TABLE_OFFSET);
+            chapterOffset = output.readLong();
+            // 正文长度改成远超章节数据的值
+            output.seek(chapterOffset);
+            output.write(new byte[]{(byte) 0xFF, (byte) 0xFF, 0x7F});
+        }
+        ChapterStore store = ChapterStore.open(file, SOURCE_SIZE, SOURCE_MODIFIED);
+
+        try {
+            store.readChapter(0);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 章节数据已损坏
+        }
+        try {
+            store.readText(0);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 章节数据已损坏
+        }
+    }
+
+    @Test
+    public void uncommittedWriterLeavesNoFile() throws IOException {
+        File file = newStoreFile();
+        file.delete();
+
+        try (ChapterStore.Writer writer = new ChapterStore.Writer(file, SOURCE_SIZE, SOURCE_MODIFIED, 2)) {
+            writer.write(asciiChapter());
+        }
+
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CharsetDetectorTest {
+    private static final String CHINESE = "第一章　山村\n天色渐渐暗了下来，村口的老槐树下坐着几个人，他们一边说着今年的收成，"
+            + "一边等着从城里回来的孩子。远处的山路上，有人提着灯笼慢慢地走过来。\n";
+    private static final String TRADITIONAL = "第一章　山村\n天色漸漸暗了下來，村口的老槐樹下坐著幾個人，他們一邊說著今年的收成，"
+            + "一邊等著從城裡回來的孩子。遠處的山路上，有人提著燈籠慢慢地走過來。\n";
+    private static final String JAPANESE = "第一章　山の村\n日が暮れてきた。村の入り口にある古い木の下で、何人かが今年の収穫について話しながら、"
+            + "町から帰ってくる子供たちを待っていた。\n";
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File write(byte[] bom, String text, int repeat, String charsetName) throws IOException {
+        File file = File.createTempFile("charset", ".txt");
+        files.add(file);
+        byte[] bytes = text.getBytes(Charset.forName(charsetName));
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(bom);
+            for (int i = 0; i < repeat; i++) {
+                outputStream.write(bytes);
+            }
+        }
+        return file;
+    }
+
+    private CharsetDetector.Result detect(File file) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(file);
+             FileChannel channel = inputStream.getChannel()) {
+            CharsetDetector.Result result = CharsetDetector.detect(channel);
+            // 检测只按位置读取，不移动通道的位置
+            assertEquals(0, channel.position());
+            return result;
+        }
+    }
+
+    private void assertDetected(String expected, int bomLength, File file) throws IOException {
+        CharsetDetector.Result result = detect(file);
+        assertEquals(Charset.forName(expected), result.charset);
+        assertEquals(bomLength, result.bomLength);
+    }
+
+    @Test
+    public void emptyFileIsUtf8() throws IOException {
+        assertDetected("UTF-8", 0, write(new byte[0], "", 0, "UTF-8"));
+    }
+
+    @Test
+    public void detectsBoms() throws IOException {
+        assertDetected("UTF-8", 3, write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, CHINESE, 2, "UTF-8"));
+        assertDetected("UTF-16LE", 2, write(new byte[]{(byte) 0xFF, (byte) 0xFE}, CHINESE, 2, "UTF-16LE"));
+        assertDetected("UTF-16BE", 2, write(new byte[]{(byte) 0xFE, (byte) 0xFF}, CHINESE, 2, "UTF-16BE"));
+    }
+
+    @Test
+    public void detectsUtf16WithoutBom() throws IOException {
+        assertDetected("UTF-16LE", 0, write(new byte[0], CHINESE, 20, "UTF-16LE"));
+        assertDetected("UTF-16BE", 0, write(new byte[0], CHINESE, 20, "UTF-16BE"));
+    }
+
+    @Test
+    public void detectsUtf8AndAscii() throws IOException {
+        assertDetected("UTF-8", 0, write(new byte[0], CHINESE, 20, "UTF-8"));
+        assertDetected("UTF-8", 0, write(new byte[0], "Plain ASCII text.\n", 100, "UTF-8"));
+    }
+
+    @Test
+    public void detectsLegacyCjkEncodings() throws IOException {
+        assertDetected("GB18030", 0, write(new byte[0], CHINESE, 20, "GB18030"));
+        assertDetected("Big5", 0, write(new byte[0], TRADITIONAL, 20, "Big5"));
+        assertDetected("Shift_JIS", 0, write(new byte[0], JAPANESE, 20, "Shift_JIS"));
+    }
+
+    @Test
+    public void samplesLargeFiles() throws IOException {
+        // 超过全部采样片段总长度时按片段读取，片段可能从多字节字符中间开始
+        File file = write(new byte[0], CHINESE, 2000, "GB18030");
+        assertEquals(5, CharsetDetector.sampleOffsets(file.length()).length);
+        assertDetected("GB18030", 0, file);
+        assertDetected("UTF-8", 0, write(new byte[0], CHINESE, 2000, "UTF-8"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.myapplication2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CjkLineBreakerTest {
+    // 每个汉字宽10，每行放5个字；拉丁字符宽5
+    private static CjkLineBreaker breaker() {
+        return new CjkLineBreaker(10f, 50f, (text, start, end) -> (end - start) * 5f);
+    }
+
+    @Test
+    public void detectsCjkDominantText() {
+        assertTrue(CjkLineBreaker.isCjkDominant("天色渐渐暗了下来，abc"));
+        assertFalse(CjkLineBreaker.isCjkDominant("The quick brown fox 天"));
+        assertFalse(CjkLineBreaker.isCjkDominant("   "));
+    }
+
+    @Test
+    public void breaksAtFixedAdvance() {
+        assertArrayEquals(new int[]{5, 10, 12}, breaker().breakLines("一二三四五六七八九十甲乙"));
+    }
+
+    @Test
+    public void keepsNewlineOnItsLine() {
+        assertArrayEquals(new int[]{3, 6}, breaker().breakLines("一二\n三四五"));
+    }
+
+    @Test
+    public void doesNotStartLineWithClosingPunctuation() {
+        // 第六个字符是句号，不能出现在行首，把前一个字挪到下一行
+        assertArrayEquals(new int[]{4, 8}, breaker().breakLines("一二三四五。六七"));
+    }
+
+    @Test
+    public void keepsLatinWordsTogether() {
+        // "abcd"宽20，放不下时整个单词移到下一行
+        assertArrayEquals(new int[]{4, 8}, breaker().breakLines("一二三四abcd"));
+    }
+
+    @Test
+    public void splitsWordsWiderThanLine() {
+        assertArrayEquals(new int[]{10, 12}, breaker().breakLines("abcdefghijkl"));
+    }
+}
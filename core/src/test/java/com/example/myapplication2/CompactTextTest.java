@@ -0,0 +1,69 @@
+package com.example.myapplication2;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactTextTest {
+
+    @Test
+    public void storesLatin1TextInBytes() {
+        CompactText text = CompactText.of("Café au lait");
+
+        assertTrue(text.isLatin1());
+        assertEquals("Café au lait", text.toString());
+        assertEquals('é', text.charAt(3));
+    }
+
+    @Test
+    public void storesCjkTextInChars() {
+        CompactText text = CompactText.of("天色渐渐暗了下来");
+
+        assertFalse(text.isLatin1());
+        assertEquals(8, text.length());
+        assertEquals("天色渐渐暗了下来", text.toString());
+    }
+
+    @Test
+    public void subSequenceIsAView() {
+        CompactText text = CompactText.of("第一章。第二章。");
+        CharSequence second = text.subSequence(4, 8);
+
+        assertEquals("第二章。", second.toString());
+        assertEquals("二章", second.subSequence(1, 3).toString());
+        assertSame(text, text.subSequence(0, text.length()));
+    }
+
+    @Test
+    public void wrapsMappedAsciiBytes() {
+        ByteBuffer buffer = ByteBuffer.wrap("xxhello worldxx".getBytes(Charset.forName("US-ASCII")));
+        buffer.position(2);
+        buffer.limit(13);
+
+        CompactText text = CompactText.latin1(buffer);
+
+        assertEquals("hello world", text.toString());
+        assertEquals("world", text.subSequence(6, 11).toString());
+    }
+
+    @Test
+    public void getCharsCopiesRange() {
+        CompactText text = CompactText.of("abcdef");
+        char[] dest = new char[4];
+
+        text.getChars(1, 4, dest, 1);
+
+        assertEquals("\u0000bcd", new String(dest));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsOutOfRangeIndex() {
+        CompactText.of("abc").subSequence(1, 3).charAt(2);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myapplication2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TxtCheckpointIndexTest {
+    private static final int PAGE_CHARS = 500;
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    // 中英文混排、长短不一的行，混用\n和\r\n，总长度超过建立索引时的读取缓冲区
+    private static String sampleText(int lines) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("第").append(i).append("行 line ").append(i).append('：');
+            for (int k = 0; k < i % 37; k++) {
+                builder.append(k % 3 == 0 ? "天色渐渐暗了" : "abc ");
+            }
+            builder.append(i % 5 == 0 ? "\r\n" : "\n");
+        }
+        return builder.toString();
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = File.createTempFile("checkpoint", ".txt");
+        files.add(file);
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(bytes);
+        }
+        return file;
+    }
+
+    private void assertPagesMatchPaginator(String text, String charsetName) throws IOException {
+        Charset charset = Charset.forName(charsetName);
+        byte[] bytes = text.getBytes(charset);
+        List<String> expected = TxtPaginator.paginate(new InputStreamReader(new ByteArrayInputStream(bytes), charset), PAGE_CHARS);
+        File file = write(bytes);
+
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+            TxtCheckpointIndex index = TxtCheckpointIndex.build(channel, charset, 0, PAGE_CHARS);
+
+            assertEquals(expected.size(), index.getPageCount());
+            long chars = 0;
+            for (int page = 0; page < expected.size(); page++) {
+                assertEquals(chars, index.getPageCharOffset(page));
+                assertEquals("page " + page, expected.get(page), index.readPage(channel, page));
+                chars += expected.get(page).length();
+            }
+            assertEquals(chars, index.getTotalChars());
+        }
+    }
+
+    @Test
+    public void utf8PagesMatchPaginator() throws IOException {
+        String text = sampleText(6000);
+        // 多字节字符跨越读取缓冲区的边界
+        assertTrue(text.getBytes(Charset.forName("UTF-8")).length > 256 * 1024);
+        assertPagesMatchPaginator(text, "UTF-8");
+    }
+
+    @Test
+    public void gbkPagesMatchPaginator() throws IOException {
+        String text = sampleText(8000);
+        assertTrue(text.getBytes(Charset.forName("GBK")).length > 256 * 1024);
+        assertPagesMatchPaginator(text, "GBK");
+    }
+
+    @Test
+    public void lastLineWithoutNewline() throws IOException {
+        assertPagesMatchPaginator(sampleText(300) + "最后一行没有换行", "UTF-8");
+    }
+
+    @Test
+    public void skipsBom() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        String text = sampleText(200);
+        byte[] body = text.getBytes(utf8);
+        byte[] bytes = new byte[body.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(body, 0, bytes, 3, body.length);
+        File file = write(bytes);
+
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+            TxtCheckpointIndex index = TxtCheckpointIndex.build(channel, utf8, 3, PAGE_CHARS);
+            List<String> expected = TxtPaginator.paginate(new InputStreamReader(new ByteArrayInputStream(body), utf8), PAGE_CHARS);
+
+            assertEquals(expected.get(0), index.readPage(channel, 0));
+        }
+    }
+
+    @Test
+    public void indexFileRoundTrip() throws IOException {
+        Charset gbk = Charset.forName("GBK");
+        File file = write(sampleText(1000).getBytes(gbk));
+        File indexFile = File.createTempFile("checkpoint", ".idx");
+        files.add(indexFile);
+
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+            TxtCheckpointIndex index = TxtCheckpointIndex.build(channel, gbk, 0, PAGE_CHARS);
+            index.writeTo(indexFile);
+
+            TxtCheckpointIndex restored = TxtCheckpointIndex.readFrom(indexFile, channel, PAGE_CHARS);
+            assertNotNull(restored);
+            assertEquals(index.getPageCount(), restored.getPageCount());
+            assertEquals(index.getTotalChars(), restored.getTotalChars());
+            int last = index.getPageCount() - 1;
+            assertEquals(index.readPage(channel, last), restored.readPage(channel, last));
+            // 分页参数不同时需要重新建立
+            assertNull(TxtCheckpointIndex.readFrom(indexFile, channel, PAGE_CHARS + 1));
+        }
+    }
+
+    @Test
+    public void staleIndexIsRejected() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        File file = write(sampleText(100).getBytes(utf8));
+        File otherFile = write(sampleText(101).getBytes(utf8));
+        File indexFile = File.createTempFile("checkpoint", ".idx");
+        files.add(indexFile);
+
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+            TxtCheckpointIndex.build(channel, utf8, 0, PAGE_CHARS).writeTo(indexFile);
+        }
+        try (FileInputStream input = new FileInputStream(otherFile); FileChannel channel = input.getChannel()) {
+            assertNull(TxtCheckpointIndex.readFrom(indexFile, channel, PAGE_CHARS));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// 宏基准测试：冷启动、打开书籍、打开目录和连续翻页
+// 运行：./gradlew :macrobenchmark:connectedBenchmarkAndroidTest（需要连接真机，测试数据由应用在本地生成，不需要网络）
+plugins {
+    alias(libs.plugins.android.test)
+}
+
+android {
+    namespace = "com.example.myapplication2.macrobenchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 26
+        targetSdk = 34
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    buildTypes {
+        // 与app的benchmark构建类型对应
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
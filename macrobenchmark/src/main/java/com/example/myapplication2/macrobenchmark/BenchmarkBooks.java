@@ -0,0 +1,72 @@
+package com.example.myapplication2.macrobenchmark;
+
+import android.content.Intent;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+// 各宏基准测试共用的测试数据和页面操作
+// 数据由被测应用benchmark构建类型中的BenchmarkSeedReceiver在本地生成
+final class BenchmarkBooks {
+    static final String PACKAGE_NAME = "com.example.myapplication2";
+    static final int LIBRARY_SIZE = 2000;
+
+    // 与BenchmarkData中的常量保持一致
+    static final String EPUB_TITLE = "基准测试EPUB";
+    static final long EPUB_BOOK_ID = 1;
+    static final String EPUB_URI = "file:///data/user/0/" + PACKAGE_NAME + "/files/books/benchmark.epub";
+
+    static final long TIMEOUT_MS = 10_000;
+
+    private BenchmarkBooks() {
+    }
+
+    // 生成书架和合成书籍，并清除阅读进度；am broadcast会等待生成完成
+    static void seed(MacrobenchmarkScope scope) {
+        try {
+            scope.getDevice().executeShellCommand("am broadcast -a " + PACKAGE_NAME + ".benchmark.SEED -p " + PACKAGE_NAME
+                    + " --ei book_count " + LIBRARY_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法生成测试数据", e);
+        }
+    }
+
+    static Intent readingIntent() {
+        Intent intent = new Intent();
+        intent.setClassName(PACKAGE_NAME, PACKAGE_NAME + ".ReadingActivity");
+        intent.putExtra("book_uri", EPUB_URI);
+        intent.putExtra("book_id", EPUB_BOOK_ID);
+        intent.putExtra("book_title", EPUB_TITLE);
+        return intent;
+    }
+
+    static Intent tableOfContentsIntent() {
+        Intent intent = new Intent();
+        intent.setClassName(PACKAGE_NAME, PACKAGE_NAME + ".TableOfContentsActivity");
+        intent.putExtra("book_uri", EPUB_URI);
+        intent.putExtra("book_id", EPUB_BOOK_ID);
+        intent.putExtra("book_title", EPUB_TITLE);
+        intent.putExtra("current_chapter", 0);
+        return intent;
+    }
+
+    // 等待阅读页显示指定章节（合成章节以“第N章”标题开头）
+    static void waitForChapter(UiDevice device, int chapterNumber) {
+        if (!device.wait(Until.hasObject(By.res(PACKAGE_NAME, "contentTextView").textStartsWith("第" + chapterNumber + "章")), TIMEOUT_MS)) {
+            throw new AssertionError("第" + chapterNumber + "章未能在" + TIMEOUT_MS + "ms内显示");
+        }
+    }
+
+    static UiObject2 findById(UiDevice device, String id) {
+        UiObject2 object = device.wait(Until.findObject(By.res(PACKAGE_NAME, id)), TIMEOUT_MS);
+        if (object == null) {
+            throw new AssertionError("找不到控件: " + id);
+        }
+        return object;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.myapplication2.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+// 打开EPUB到第一章渲染完成，以及打开目录页
+@RunWith(AndroidJUnit4.class)
+public class BookOpenBenchmark {
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void openEpubFirstChapter() {
+        benchmarkRule.measureRepeated(
+                BenchmarkBooks.PACKAGE_NAME,
+                // 应用内PerfTrace埋点的各阶段耗时
+                Arrays.asList(new StartupTimingMetric(), new FrameTimingMetric(),
+                        new TraceSectionMetric("loadEpubBook"),
+                        new TraceSectionMetric("EpubReader.readEpub"),
+                        new TraceSectionMetric("chapterDecode"),
+                        new TraceSectionMetric("chapterStoreRead"),
+                        new TraceSectionMetric("chapterPrecompute"),
+                        new TraceSectionMetric("chapterSetText")),
+                CompilationMode.DEFAULT,
+                StartupMode.COLD,
+                10,
+                scope -> {
+                    BenchmarkBooks.seed(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(BenchmarkBooks.readingIntent());
+                    BenchmarkBooks.waitForChapter(scope.getDevice(), 1);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    @Test
+    public void openTableOfContents() {
+        benchmarkRule.measureRepeated(
+                BenchmarkBooks.PACKAGE_NAME,
+                Arrays.asList(new StartupTimingMetric(), new FrameTimingMetric()),
+                CompilationMode.DEFAULT,
+                StartupMode.COLD,
+                10,
+                scope -> {
+                    BenchmarkBooks.seed(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(BenchmarkBooks.tableOfContentsIntent());
+                    // 目录列表加载完成
+                    BenchmarkBooks.findById(scope.getDevice(), "chapterTitle");
+                    return Unit.INSTANCE;
+                });
+    }
+}
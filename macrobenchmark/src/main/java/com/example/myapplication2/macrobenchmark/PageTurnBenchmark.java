@@ -0,0 +1,50 @@
+package com.example.myapplication2.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+// 连续调用nextPage()翻过多个章节时的帧耗时和卡顿分布
+@RunWith(AndroidJUnit4.class)
+public class PageTurnBenchmark {
+    private static final int PAGE_TURNS = 30;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void sustainedNextPage() {
+        benchmarkRule.measureRepeated(
+                BenchmarkBooks.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                CompilationMode.DEFAULT,
+                null,
+                5,
+                scope -> {
+                    // 不测量启动，每次迭代从第一章重新打开
+                    scope.killProcess();
+                    BenchmarkBooks.seed(scope);
+                    scope.startActivityAndWait(BenchmarkBooks.readingIntent());
+                    BenchmarkBooks.waitForChapter(scope.getDevice(), 1);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    UiDevice device = scope.getDevice();
+                    for (int i = 0; i < PAGE_TURNS; i++) {
+                        BenchmarkBooks.findById(device, "nextPageButton").click();
+                        BenchmarkBooks.waitForChapter(device, i + 2);
+                    }
+                    return Unit.INSTANCE;
+                });
+    }
+}
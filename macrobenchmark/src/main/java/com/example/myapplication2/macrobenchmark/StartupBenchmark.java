@@ -0,0 +1,57 @@
+package com.example.myapplication2.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+// 书架中有2000本书时MainActivity的冷启动
+// 首帧显示书架快照（timeToInitialDisplay），完整列表加载后调用reportFullyDrawn（timeToFullDisplay）
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartWithLargeLibrary() {
+        benchmarkRule.measureRepeated(
+                BenchmarkBooks.PACKAGE_NAME,
+                Arrays.asList(new StartupTimingMetric(), new FrameTimingMetric(),
+                        new TraceSectionMetric("librarySnapshot"),
+                        new TraceSectionMetric("libraryLoad")),
+                CompilationMode.DEFAULT,
+                StartupMode.COLD,
+                10,
+                scope -> {
+                    BenchmarkBooks.seed(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    // 书架列表第一项出现才算首屏完成
+                    if (!scope.getDevice().wait(Until.hasObject(By.text(BenchmarkBooks.EPUB_TITLE)), BenchmarkBooks.TIMEOUT_MS)) {
+                        throw new AssertionError("书架未能在" + BenchmarkBooks.TIMEOUT_MS + "ms内显示");
+                    }
+                    // 添加按钮在完整列表加载后启用，此时已调用reportFullyDrawn
+                    if (!scope.getDevice().wait(Until.hasObject(By.res(BenchmarkBooks.PACKAGE_NAME, "addBookButton").enabled(true)),
+                            BenchmarkBooks.TIMEOUT_MS)) {
+                        throw new AssertionError("书架列表未能在" + BenchmarkBooks.TIMEOUT_MS + "ms内加载完成");
+                    }
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -22,4 +22,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "My Application2"
 include(":app")
+include(":core")
+include(":benchmark")
+include(":macrobenchmark")
  
\ No newline at end of file